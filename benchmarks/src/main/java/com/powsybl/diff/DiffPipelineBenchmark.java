@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.sld.NetworkGraphBuilder;
+import com.powsybl.sld.layout.HorizontalSubstationLayoutFactory;
+import com.powsybl.sld.layout.LayoutParameters;
+import com.powsybl.sld.layout.SmartVoltageLevelLayoutFactory;
+import com.powsybl.sld.library.ComponentLibrary;
+import com.powsybl.sld.model.Edge;
+import com.powsybl.sld.model.FeederNode;
+import com.powsybl.sld.model.Node;
+import com.powsybl.sld.model.SubstationGraph;
+import com.powsybl.sld.model.VoltageLevelGraph;
+import com.powsybl.sld.svg.DiagramLabelProvider;
+
+/**
+ * Benchmarks each stage of the rendering of the merged diff SVG of a substation, and the whole rendering:
+ * diffing, parsing of the diff results, styling, labelling and SVG writing.
+ * Each stage runs on the inputs prepared by the previous ones, computed once per trial.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffPipelineBenchmark {
+
+    private static final int SUBSTATIONS = 4;
+    private static final int VOLTAGE_LEVELS = 3;
+    private static final long SEED = 42L;
+    private static final String SUBSTATION_ID = SyntheticNetworkGenerator.substationId(0);
+
+    /**
+     * The number of load and generator bays of each voltage level. The SVG writing must scale linearly:
+     * {@link #writeSvg()} runs about 8 times slower with 400 bays than with 50, a quadratic writing 64 times slower.
+     */
+    @Param({"8", "50", "64", "256", "400"})
+    public int bays;
+
+    /**
+     * The ratio of switches, flows and voltages changed in the second network.
+     */
+    @Param({"0.01", "0.1", "0.5"})
+    public double changeRatio;
+
+    @Param({"1", "5", "20"})
+    public int levels;
+
+    private Network network1;
+    private NetworkDiffRenderer renderer;
+    private LevelsData levelsData;
+    private NetworkDiffResults diffResults;
+    private String jsonDiff;
+    private ColorsLevelsDiffData diffData;
+    private ComponentLibrary componentLibrary;
+    private LayoutParameters layoutParameters;
+    private SubstationGraph graph;
+    private List<Node> nodes;
+    private List<Edge> edges;
+    private List<FeederNode> feederNodes;
+    private MultipleColorsLevelsDiffStyleProvider styleProvider;
+    private DiagramLabelProvider labelProvider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(SUBSTATIONS)
+                .setVoltageLevels(VOLTAGE_LEVELS).setBays(bays).setSeed(SEED);
+        network1 = generator.create();
+        Network network2 = generator.createPerturbed(changeRatio);
+        renderer = new NetworkDiffRenderer(network1, network2);
+        levelsData = createLevelsData(levels);
+
+        diffResults = renderer.diffSubstationResults(SUBSTATION_ID, 0.0, 0.0);
+        jsonDiff = NetworkDiffRenderer.writeJson(diffResults);
+        diffData = new ColorsLevelsDiffData(diffResults, true);
+
+        componentLibrary = NetworkDiffRenderer.getDefaultComponentLibrary();
+        layoutParameters = NetworkDiffRenderer.createDefaultLayoutParameters();
+        graph = new NetworkGraphBuilder(network1).buildSubstationGraph(SUBSTATION_ID, false);
+        new HorizontalSubstationLayoutFactory().create(graph, new SmartVoltageLevelLayoutFactory(network1)).run(layoutParameters);
+        nodes = new ArrayList<>();
+        edges = new ArrayList<>();
+        feederNodes = new ArrayList<>();
+        for (VoltageLevelGraph vlGraph : graph.getNodes()) {
+            for (Node node : vlGraph.getNodes()) {
+                nodes.add(node);
+                if (node instanceof FeederNode) {
+                    feederNodes.add((FeederNode) node);
+                }
+            }
+            edges.addAll(vlGraph.getEdges());
+        }
+        styleProvider = new MultipleColorsLevelsDiffStyleProvider(diffData, levelsData, true);
+        labelProvider = new MergedDiffDiagramLabelProvider(network1, componentLibrary, layoutParameters, diffData, true, true);
+    }
+
+    //increasing current and voltage thresholds, from 1% to 100%
+    static LevelsData createLevelsData(int levels) {
+        List<LevelData> levelsList = new ArrayList<>(levels);
+        for (int k = 1; k <= levels; k++) {
+            double threshold = 100.0 * k / levels;
+            levelsList.add(new LevelData(k, threshold, threshold, String.format("#%06x", (k * 0x0f0f0f) & 0xffffff)));
+        }
+        return new LevelsData(levelsList);
+    }
+
+    @Benchmark
+    public NetworkDiffResults diff() {
+        return renderer.diffSubstationResults(SUBSTATION_ID, 0.0, 0.0);
+    }
+
+    @Benchmark
+    public ColorsLevelsDiffData parseDiffResults() throws IOException {
+        return new ColorsLevelsDiffData(diffResults, true);
+    }
+
+    @Benchmark
+    public ColorsLevelsDiffData parseJsonDiff() throws IOException {
+        return ColorsLevelsDiffData.parseData(new StringReader(jsonDiff), true);
+    }
+
+    @Benchmark
+    public void style(Blackhole blackhole) {
+        MultipleColorsLevelsDiffStyleProvider provider = new MultipleColorsLevelsDiffStyleProvider(diffData, levelsData, true);
+        for (Node node : nodes) {
+            blackhole.consume(provider.getSvgNodeStyles(node, componentLibrary, false));
+        }
+        for (Edge edge : edges) {
+            blackhole.consume(provider.getSvgWireStyles(edge, false));
+        }
+        for (FeederNode feederNode : feederNodes) {
+            blackhole.consume(provider.getArrowsActiveStyle(feederNode, componentLibrary));
+            blackhole.consume(provider.getArrowsReactiveStyle(feederNode, componentLibrary));
+        }
+    }
+
+    @Benchmark
+    public void label(Blackhole blackhole) {
+        DiagramLabelProvider provider = new MergedDiffDiagramLabelProvider(network1, componentLibrary, layoutParameters, diffData, true, true);
+        for (Node node : nodes) {
+            blackhole.consume(provider.getNodeLabels(node));
+        }
+        for (FeederNode feederNode : feederNodes) {
+            blackhole.consume(provider.getInitialValue(feederNode));
+        }
+    }
+
+    @Benchmark
+    public Object writeSvg() {
+        DiffSVGWriter svgWriter = new DiffSVGWriter(componentLibrary, layoutParameters, styleProvider, false, true);
+        return svgWriter.write("", graph, labelProvider, styleProvider, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String substationMergedSvgDiff() {
+        return renderer.getSubstationMergedSvgDiff(SUBSTATION_ID, 0.0, 0.0, levelsData, true);
+    }
+}
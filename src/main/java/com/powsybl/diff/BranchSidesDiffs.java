@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.sld.model.FeederWithSideNode;
+import com.powsybl.sld.model.Node;
+
+/**
+ * P, Q and I deltas (absolute and percent) of the two sides of the branches, stored column-wise in primitive arrays.
+ * A branch side is addressed by an index, returned by the {@code indexOf} methods; the index of side ONE of a branch
+ * is followed by the index of its side TWO.
+ * In sparse mode, branches whose deltas are all zero on both sides are not stored.
+ *
+ * @author Massimo Ferraro <massimo.ferraro@soft.it>
+ */
+public final class BranchSidesDiffs {
+
+    private static final int SIDES = 2;
+    private static final int INITIAL_CAPACITY = 16 * SIDES;
+
+    private final boolean sparse;
+    private final EquipmentIndex branchesIndex = new EquipmentIndex();
+
+    private double[] pDelta = new double[INITIAL_CAPACITY];
+    private double[] qDelta = new double[INITIAL_CAPACITY];
+    private double[] iDelta = new double[INITIAL_CAPACITY];
+    private double[] pDeltaP = new double[INITIAL_CAPACITY];
+    private double[] qDeltaP = new double[INITIAL_CAPACITY];
+    private double[] iDeltaP = new double[INITIAL_CAPACITY];
+
+    BranchSidesDiffs(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * @return the number of stored branch sides
+     */
+    public int size() {
+        return SIDES * branchesIndex.size();
+    }
+
+    public boolean isEmpty() {
+        return branchesIndex.size() == 0;
+    }
+
+    /**
+     * Adds the deltas of a branch, values are given side by side in the order p, q, i, p percent, q percent, i percent.
+     */
+    void add(String branchId, double[] side1Values, double[] side2Values) {
+        Objects.requireNonNull(branchId);
+        if (sparse && isZero(side1Values) && isZero(side2Values)) {
+            return;
+        }
+        int index = SIDES * branchesIndex.add(branchId);
+        if (index >= pDelta.length) {
+            grow();
+        }
+        set(index, side1Values);
+        set(index + 1, side2Values);
+    }
+
+    /**
+     * Adds the deltas of the branch of the given side index, copied from other branches diffs.
+     */
+    void copy(BranchSidesDiffs from, int index) {
+        int fromIndex = index - index % SIDES;
+        int toIndex = SIDES * branchesIndex.add(from.getBranchId(fromIndex));
+        if (toIndex >= pDelta.length) {
+            grow();
+        }
+        System.arraycopy(from.pDelta, fromIndex, pDelta, toIndex, SIDES);
+        System.arraycopy(from.qDelta, fromIndex, qDelta, toIndex, SIDES);
+        System.arraycopy(from.iDelta, fromIndex, iDelta, toIndex, SIDES);
+        System.arraycopy(from.pDeltaP, fromIndex, pDeltaP, toIndex, SIDES);
+        System.arraycopy(from.qDeltaP, fromIndex, qDeltaP, toIndex, SIDES);
+        System.arraycopy(from.iDeltaP, fromIndex, iDeltaP, toIndex, SIDES);
+    }
+
+    private void set(int index, double[] values) {
+        pDelta[index] = values[0];
+        qDelta[index] = values[1];
+        iDelta[index] = values[2];
+        pDeltaP[index] = values[3];
+        qDeltaP[index] = values[4];
+        iDeltaP[index] = values[5];
+    }
+
+    private void grow() {
+        int capacity = 2 * pDelta.length;
+        pDelta = Arrays.copyOf(pDelta, capacity);
+        qDelta = Arrays.copyOf(qDelta, capacity);
+        iDelta = Arrays.copyOf(iDelta, capacity);
+        pDeltaP = Arrays.copyOf(pDeltaP, capacity);
+        qDeltaP = Arrays.copyOf(qDeltaP, capacity);
+        iDeltaP = Arrays.copyOf(iDeltaP, capacity);
+    }
+
+    private static boolean isZero(double[] values) {
+        for (double value : values) {
+            //NaN compares unequal to zero, so it is kept
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String branchId, int side) {
+        int branchIndex = branchesIndex.indexOf(branchId);
+        return branchIndex < 0 ? -1 : SIDES * branchIndex + side;
+    }
+
+    /**
+     * @return the index of the branch side, -1 if it is not stored
+     */
+    public int indexOf(String branchId, Branch.Side side) {
+        return indexOf(branchId, side == Branch.Side.ONE ? 0 : 1);
+    }
+
+    /**
+     * @return the index of the branch side, -1 if it is not stored (branches have no side THREE)
+     */
+    public int indexOf(String branchId, FeederWithSideNode.Side side) {
+        switch (side) {
+            case ONE:
+                return indexOf(branchId, 0);
+            case TWO:
+                return indexOf(branchId, 1);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return the index of the branch side drawn by the node, -1 if the node is not a feeder with a side or if it is not stored
+     */
+    public int indexOf(Node node) {
+        if (node instanceof FeederWithSideNode) {
+            return indexOf(node.getEquipmentId(), ((FeederWithSideNode) node).getSide());
+        }
+        return -1;
+    }
+
+    public boolean contains(String branchId, Branch.Side side) {
+        return indexOf(branchId, side) >= 0;
+    }
+
+    public String getBranchId(int index) {
+        return branchesIndex.getId(index / SIDES);
+    }
+
+    public Branch.Side getSide(int index) {
+        Objects.checkIndex(index, size());
+        return index % SIDES == 0 ? Branch.Side.ONE : Branch.Side.TWO;
+    }
+
+    public double getpDelta(int index) {
+        return pDelta[Objects.checkIndex(index, size())];
+    }
+
+    public double getqDelta(int index) {
+        return qDelta[Objects.checkIndex(index, size())];
+    }
+
+    public double getiDelta(int index) {
+        return iDelta[Objects.checkIndex(index, size())];
+    }
+
+    public double getpDeltaP(int index) {
+        return pDeltaP[Objects.checkIndex(index, size())];
+    }
+
+    public double getqDeltaP(int index) {
+        return qDeltaP[Objects.checkIndex(index, size())];
+    }
+
+    public double getiDeltaP(int index) {
+        return iDeltaP[Objects.checkIndex(index, size())];
+    }
+
+    public double getpDelta(int index, boolean percentage) {
+        return percentage ? getpDeltaP(index) : getpDelta(index);
+    }
+
+    public double getqDelta(int index, boolean percentage) {
+        return percentage ? getqDeltaP(index) : getqDelta(index);
+    }
+
+    public double getiDelta(int index, boolean percentage) {
+        return percentage ? getiDeltaP(index) : getiDelta(index);
+    }
+}
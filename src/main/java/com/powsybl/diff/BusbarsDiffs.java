@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Voltage deltas (absolute and percent) of the busbar sections, stored column-wise in primitive arrays.
+ * A busbar section is addressed by an index, returned by {@link #indexOf(String)}; as absolute and percent
+ * deltas are listed separately in the diff, each of them may be missing for a stored busbar section.
+ * In sparse mode, zero deltas are not stored.
+ *
+ * @author Massimo Ferraro <massimo.ferraro@soft.it>
+ */
+public final class BusbarsDiffs {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final boolean sparse;
+    private final EquipmentIndex busbarsIndex = new EquipmentIndex();
+
+    private double[] vDelta = new double[INITIAL_CAPACITY];
+    private double[] vDeltaP = new double[INITIAL_CAPACITY];
+    private final BitSet withDelta = new BitSet();
+    private final BitSet withDeltaP = new BitSet();
+
+    BusbarsDiffs(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    public int size() {
+        return busbarsIndex.size();
+    }
+
+    public boolean isEmpty() {
+        return busbarsIndex.size() == 0;
+    }
+
+    private int add(String busbarId) {
+        int index = busbarsIndex.add(Objects.requireNonNull(busbarId));
+        if (index >= vDelta.length) {
+            vDelta = Arrays.copyOf(vDelta, 2 * vDelta.length);
+            vDeltaP = Arrays.copyOf(vDeltaP, 2 * vDeltaP.length);
+        }
+        return index;
+    }
+
+    void putDelta(String busbarId, double delta) {
+        if (sparse && delta == 0) {
+            return;
+        }
+        int index = add(busbarId);
+        vDelta[index] = delta;
+        withDelta.set(index);
+    }
+
+    void putDeltaP(String busbarId, double deltaP) {
+        if (sparse && deltaP == 0) {
+            return;
+        }
+        int index = add(busbarId);
+        vDeltaP[index] = deltaP;
+        withDeltaP.set(index);
+    }
+
+    /**
+     * Adds the deltas of the busbar section of the given index, copied from other busbars diffs.
+     */
+    void copy(BusbarsDiffs from, int index) {
+        int toIndex = add(from.getBusbarId(index));
+        vDelta[toIndex] = from.vDelta[index];
+        vDeltaP[toIndex] = from.vDeltaP[index];
+        withDelta.set(toIndex, from.withDelta.get(index));
+        withDeltaP.set(toIndex, from.withDeltaP.get(index));
+    }
+
+    /**
+     * @return the index of the busbar section, -1 if it is not stored
+     */
+    public int indexOf(String busbarId) {
+        return busbarsIndex.indexOf(busbarId);
+    }
+
+    public String getBusbarId(int index) {
+        return busbarsIndex.getId(index);
+    }
+
+    public boolean hasDelta(int index) {
+        return index >= 0 && withDelta.get(index);
+    }
+
+    public boolean hasDeltaP(int index) {
+        return index >= 0 && withDeltaP.get(index);
+    }
+
+    public boolean hasDelta(int index, boolean percentage) {
+        return percentage ? hasDeltaP(index) : hasDelta(index);
+    }
+
+    public double getDelta(int index) {
+        return vDelta[Objects.checkIndex(index, size())];
+    }
+
+    public double getDeltaP(int index) {
+        return vDeltaP[Objects.checkIndex(index, size())];
+    }
+
+    public double getDelta(int index, boolean percentage) {
+        return percentage ? getDeltaP(index) : getDelta(index);
+    }
+}
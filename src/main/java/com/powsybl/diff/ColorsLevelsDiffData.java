@@ -7,124 +7,213 @@
 package com.powsybl.diff;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.powsybl.iidm.network.Branch.Side;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.powsybl.iidm.diff.NetworkDiffResults;
 
 /**
  * @author Massimo Ferraro <massimo.ferraro@soft.it>
  */
 public class ColorsLevelsDiffData {
 
-    final List<String> switchesDiff;
-    final Map<String, BranchSideDiff> branchesSideDiffs;
-    final Map<String, Double> busbarsDiffs;
-    final Map<String, Double> busbarsDiffsP;
-
-    class BranchSideDiff {
-        final double pDelta;
-        final double qDelta;
-        final double iDelta;
-        final double pDeltaP;
-        final double qDeltaP;
-        final double iDeltaP;
-
-        BranchSideDiff(double pDelta, double qDelta, double iDelta, double pDeltaP, double qDeltaP, double iDeltaP) {
-            this.pDelta = pDelta;
-            this.qDelta = qDelta;
-            this.iDelta = iDelta;
-            this.pDeltaP = pDeltaP;
-            this.qDeltaP = qDeltaP;
-            this.iDeltaP = iDeltaP;
+    //fields of a branch side, in the order expected by BranchSidesDiffs
+    private static final String[] BRANCH_SIDE_FIELDS = {"p-delta", "q-delta", "i-delta", "p-delta-percent", "q-delta-percent", "i-delta-percent"};
+    private static final Map<String, Integer> BRANCH_FIELDS_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < BRANCH_SIDE_FIELDS.length; i++) {
+            BRANCH_FIELDS_INDEXES.put("branch.terminal1." + BRANCH_SIDE_FIELDS[i], i);
+            BRANCH_FIELDS_INDEXES.put("branch.terminal2." + BRANCH_SIDE_FIELDS[i], BRANCH_SIDE_FIELDS.length + i);
         }
+    }
+
+    final List<String> switchesDiff = new ArrayList<>();
+    final BranchSidesDiffs branchesSideDiffs;
+    final BusbarsDiffs busbarsDiffs;
+
+    ColorsLevelsDiffData(String jsonDiff) throws IOException {
+        this(jsonDiff, false);
+    }
 
-        public double getpDelta() {
-            return pDelta;
+    ColorsLevelsDiffData(String jsonDiff, boolean sparse) throws IOException {
+        this(sparse);
+        try (JsonParser parser = DiffJsonReader.createParser(jsonDiff)) {
+            DiffJsonReader.read(parser, new DiffHandler());
         }
+    }
+
+    ColorsLevelsDiffData(NetworkDiffResults diffResults) throws IOException {
+        this(diffResults, false);
+    }
 
-        public double getqDelta() {
-            return qDelta;
+    /**
+     * Builds the diff data straight from the diff results: the results are written into a token buffer
+     * and read back as-is, without going through a JSON string.
+     * Non finite values (NaN, Infinity) are kept as doubles, no string replacement is needed.
+     */
+    ColorsLevelsDiffData(NetworkDiffResults diffResults, boolean sparse) throws IOException {
+        this(sparse);
+        Objects.requireNonNull(diffResults);
+        TokenBuffer tokenBuffer = new TokenBuffer(null, false);
+        diffResults.writeJson(tokenBuffer);
+        try (JsonParser parser = tokenBuffer.asParser()) {
+            DiffJsonReader.read(parser, new DiffHandler());
         }
+    }
+
+    ColorsLevelsDiffData(JsonParser parser, boolean sparse) throws IOException {
+        this(sparse);
+        DiffJsonReader.read(parser, new DiffHandler());
+    }
 
-        public double getiDelta() {
-            return iDelta;
+    ColorsLevelsDiffData(boolean sparse) {
+        branchesSideDiffs = new BranchSidesDiffs(sparse);
+        busbarsDiffs = new BusbarsDiffs(sparse);
+    }
+
+    public static ColorsLevelsDiffData parseData(Reader reader) throws IOException {
+        return parseData(reader, false);
+    }
+
+    /**
+     * @param sparse if true, only non-zero deltas are kept in memory
+     */
+    public static ColorsLevelsDiffData parseData(Reader reader, boolean sparse) throws IOException {
+        try (JsonParser parser = DiffJsonReader.createParser(reader)) {
+            return new ColorsLevelsDiffData(parser, sparse);
         }
+    }
 
-        public double getpDeltaP() {
-            return pDeltaP;
+    public static ColorsLevelsDiffData parseData(InputStream inputStream) throws IOException {
+        return parseData(inputStream, false);
+    }
+
+    /**
+     * @param sparse if true, only non-zero deltas are kept in memory
+     */
+    public static ColorsLevelsDiffData parseData(InputStream inputStream, boolean sparse) throws IOException {
+        try (JsonParser parser = DiffJsonReader.createParser(inputStream)) {
+            return new ColorsLevelsDiffData(parser, sparse);
         }
+    }
 
-        public double getqDeltaP() {
-            return qDeltaP;
+    /**
+     * @return a handler filling this diff data, from the JSON format or from a binary diff
+     */
+    DiffCodec.Handler createHandler() {
+        return new DiffHandler();
+    }
+
+    //non finite values are written as strings in the JSON format, where they are read as NaN: a binary diff is read the same way
+    private static double fromBinary(double value) {
+        return Double.isInfinite(value) ? Double.NaN : value;
+    }
+
+    private class DiffHandler implements DiffCodec.Handler {
+
+        private String branchId;
+        private final double[] side1Values = new double[BRANCH_SIDE_FIELDS.length];
+        private final double[] side2Values = new double[BRANCH_SIDE_FIELDS.length];
+
+        DiffHandler() {
+            Arrays.fill(side1Values, Double.NaN);
+            Arrays.fill(side2Values, Double.NaN);
         }
 
-        public double getiDeltaP() {
-            return iDeltaP;
+        @Override
+        public void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            switch (fieldName) {
+                case DiffJsonReader.VL_SWITCHES_STATUS_DELTA:
+                    DiffJsonReader.readStrings(parser, switchesDiff::add);
+                    break;
+                case DiffJsonReader.VL_BUSBARS_VOLTAGE_DELTA:
+                    DiffJsonReader.readDoubles(parser, busbarsDiffs::putDelta);
+                    break;
+                case DiffJsonReader.VL_BUSBARS_VOLTAGE_DELTA_PERCENT:
+                    DiffJsonReader.readDoubles(parser, busbarsDiffs::putDeltaP);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
         }
-    }
 
-    ColorsLevelsDiffData(String jsonDiff) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> jsonMap = objectMapper.readValue(jsonDiff, new TypeReference<Map<String, Object>>() { });
-        switchesDiff = (List<String>) ((List) jsonMap.get("diff.VoltageLevels")).stream()
-                                                                                .map(t -> ((Map) t).get("vl.switchesStatus-delta"))
-                                                                                .flatMap(t -> ((List<String>) t).stream())
-                                                                                .collect(Collectors.toList());
-        branchesSideDiffs = new HashMap<String, ColorsLevelsDiffData.BranchSideDiff>();
-        ((List) jsonMap.get("diff.Branches")).stream().forEach(branch -> {
-            branchesSideDiffs.put(((Map) branch).get("branch.branchId1") + "_" + Side.ONE,
-                                  new BranchSideDiff((((Map) branch).get("branch.terminal1.p-delta") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal1.p-delta"),
-                                                     (((Map) branch).get("branch.terminal1.q-delta") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal1.q-delta"),
-                                                     (((Map) branch).get("branch.terminal1.i-delta") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal1.i-delta"),
-                                                     (((Map) branch).get("branch.terminal1.p-delta-percent") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal1.p-delta-percent"),
-                                                     (((Map) branch).get("branch.terminal1.q-delta-percent") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal1.q-delta-percent"),
-                                                     (((Map) branch).get("branch.terminal1.i-delta-percent") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal1.i-delta-percent")));
-            branchesSideDiffs.put(((Map) branch).get("branch.branchId1") + "_" + Side.TWO,
-                                  new BranchSideDiff((((Map) branch).get("branch.terminal2.p-delta") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal2.p-delta"),
-                                                     (((Map) branch).get("branch.terminal2.q-delta") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal2.q-delta"),
-                                                     (((Map) branch).get("branch.terminal2.i-delta") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal2.i-delta"),
-                                                     (((Map) branch).get("branch.terminal2.p-delta-percent") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal2.p-delta-percent"),
-                                                     (((Map) branch).get("branch.terminal2.q-delta-percent") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal2.q-delta-percent"),
-                                                     (((Map) branch).get("branch.terminal2.i-delta-percent") instanceof String) ? Double.NaN : (Double) ((Map) branch).get("branch.terminal2.i-delta-percent")));
-        });
-        busbarsDiffs = new HashMap<String, Double>();
-        ((List) jsonMap.get("diff.VoltageLevels"))
-                       .stream()
-                       .map(t -> ((Map) t).get("vl.busbarsVoltage-delta"))
-                       .forEach(t -> {
-                           ((Map) t).forEach((key, value) -> {
-                               busbarsDiffs.put((String) key, (Double) value);
-                           });
-                       });
-        busbarsDiffsP = new HashMap<String, Double>();
-        ((List) jsonMap.get("diff.VoltageLevels"))
-                       .stream()
-                       .map(t -> ((Map) t).get("vl.busbarsVoltage-delta-percent"))
-                       .forEach(t -> {
-                           ((Map) t).forEach((key, value) -> {
-                               busbarsDiffsP.put((String) key, (Double) value);
-                           });
-                       });
+        @Override
+        public void branchField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.BRANCH_ID.equals(fieldName)) {
+                branchId = DiffJsonReader.readText(parser);
+                return;
+            }
+            Integer index = BRANCH_FIELDS_INDEXES.get(fieldName);
+            if (index == null) {
+                parser.skipChildren();
+            } else {
+                setBranchValue(index, DiffJsonReader.readDouble(parser));
+            }
+        }
+
+        private void setBranchValue(int index, double value) {
+            if (index < BRANCH_SIDE_FIELDS.length) {
+                side1Values[index] = value;
+            } else {
+                side2Values[index - BRANCH_SIDE_FIELDS.length] = value;
+            }
+        }
+
+        @Override
+        public void switchStatus(String switchId) {
+            switchesDiff.add(switchId);
+        }
+
+        @Override
+        public void busbarVoltage(String busbarId, double delta) {
+            busbarsDiffs.putDelta(busbarId, fromBinary(delta));
+        }
+
+        @Override
+        public void busbarVoltagePercent(String busbarId, double deltaPercent) {
+            busbarsDiffs.putDeltaP(busbarId, fromBinary(deltaPercent));
+        }
+
+        @Override
+        public void branch(String id) {
+            branchId = id;
+        }
+
+        @Override
+        public void branchValue(String fieldName, double value) {
+            Integer index = BRANCH_FIELDS_INDEXES.get(fieldName);
+            if (index != null) {
+                setBranchValue(index, fromBinary(value));
+            }
+        }
+
+        @Override
+        public void endBranch() {
+            branchesSideDiffs.add(branchId, side1Values, side2Values);
+            branchId = null;
+            Arrays.fill(side1Values, Double.NaN);
+            Arrays.fill(side2Values, Double.NaN);
+        }
     }
 
     public List<String> getSwitchesDiff() {
         return switchesDiff;
     }
 
-    public Map<String, BranchSideDiff> getBranchesSideDiffs() {
+    public BranchSidesDiffs getBranchesSideDiffs() {
         return branchesSideDiffs;
     }
 
-    public Map<String, Double> getBusbarsDiffs() {
+    public BusbarsDiffs getBusbarsDiffs() {
         return busbarsDiffs;
     }
-
-    public Map<String, Double> getBusbarsDiffsP() {
-        return busbarsDiffsP;
-    }
 }
@@ -49,35 +49,36 @@ public class ColorsLevelsDiffStyleProvider extends DefaultDiagramStyleProvider i
         List<String> nodeStyles = super.getSvgNodeStyles(node, componentLibrary, showInternalNodes);
         //LOGGER.debug("node before: id {} node_type {} componenttype {}, styles {}", node.getId(), node.getType(), node.getComponentType(), nodeStyles);
         String diffSuffix = LEVEL_0_SUFFIX;
+        boolean usePercentage = colorsLevelsDiffConfig.isUsePercentage();
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
         if (Node.NodeType.SWITCH.equals(node.getType()) && diffData.getSwitchesDiff().contains(node.getId())) {
             diffSuffix = LEVEL_2_SUFFIX;
         } else if (ComponentTypeName.TWO_WINDINGS_TRANSFORMER.equals(node.getComponentType())) {
-            List<String> edgesNodesIds = node.getAdjacentEdges()
-                                             .stream()
-                                             .map(e -> e.getNodes()
-                                                        .stream()
-                                                        .map(n -> n.getId())
-                                                        .filter(nId -> !nId.equals(node.getId()))
-                                                        .collect(Collectors.toList()))
-                                             .flatMap(List::stream)
-                                             .collect(Collectors.toList());
-            if (diffData.getBranchesSideDiffs().keySet().containsAll(edgesNodesIds) || diffData.getBranchesSideDiffs().containsKey(node.getId())) {
-                double iDelta = 0;
-                if (diffData.getBranchesSideDiffs().containsKey(node.getId())) {
-                    iDelta = colorsLevelsDiffConfig.isUsePercentage()
-                             ? diffData.getBranchesSideDiffs().get(node.getId()).getiDeltaP()
-                             : diffData.getBranchesSideDiffs().get(node.getId()).getiDelta();
-                } else {
-                    iDelta = edgesNodesIds.stream()
-                                          .mapToDouble(nodeId -> {
-                                              return colorsLevelsDiffConfig.isUsePercentage()
-                                                     ? diffData.getBranchesSideDiffs().get(nodeId).getiDeltaP()
-                                                     : diffData.getBranchesSideDiffs().get(nodeId).getiDelta();
-                                          })
-                                          .max()
-                                          .orElse(0);
+            int nodeIndex = branchesSideDiffs.indexOf(node);
+            if (nodeIndex >= 0) {
+                diffSuffix = getLevel(branchesSideDiffs.getiDelta(nodeIndex, usePercentage));
+            } else {
+                //max delta of the adjacent nodes, when they all have a diff
+                boolean allAdjacentNodesDiff = true;
+                double iDelta = Double.NEGATIVE_INFINITY;
+                for (Edge edge : node.getAdjacentEdges()) {
+                    if (!allAdjacentNodesDiff) {
+                        break;
+                    }
+                    for (Node adjacentNode : edge.getNodes()) {
+                        if (!adjacentNode.getId().equals(node.getId())) {
+                            int adjacentNodeIndex = branchesSideDiffs.indexOf(adjacentNode);
+                            if (adjacentNodeIndex < 0) {
+                                allAdjacentNodesDiff = false;
+                                break;
+                            }
+                            iDelta = Math.max(iDelta, branchesSideDiffs.getiDelta(adjacentNodeIndex, usePercentage));
+                        }
+                    }
+                }
+                if (allAdjacentNodesDiff) {
+                    diffSuffix = getLevel(iDelta == Double.NEGATIVE_INFINITY ? 0 : iDelta);
                 }
-                diffSuffix = getLevel(iDelta);
             }
         }
         Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + diffSuffix);
@@ -89,22 +90,12 @@ public class ColorsLevelsDiffStyleProvider extends DefaultDiagramStyleProvider i
     public List<String> getSvgWireStyles(Edge edge, boolean highlightLineState) {
         List<String> style = super.getSvgWireStyles(edge, highlightLineState);
         //LOGGER.debug("edge before: Id1='{}', id2='{}', styles= '{}'", edge.getNode1().getId(), edge.getNode2().getId(), style);
-        Node node1 = edge.getNode1();
-        Node node2 = edge.getNode2();
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (diffData.getBranchesSideDiffs().containsKey(node1.getId()) || diffData.getBranchesSideDiffs().containsKey(node2.getId())) {
-            double iDelta = 0;
-            if (diffData.getBranchesSideDiffs().containsKey(node1.getId())) {
-                iDelta = colorsLevelsDiffConfig.isUsePercentage()
-                         ? diffData.getBranchesSideDiffs().get(node1.getId()).getiDeltaP()
-                         : diffData.getBranchesSideDiffs().get(node1.getId()).getiDelta();
-            } else if (diffData.getBranchesSideDiffs().containsKey(node2.getId())) {
-                iDelta = colorsLevelsDiffConfig.isUsePercentage()
-                         ? diffData.getBranchesSideDiffs().get(node2.getId()).getiDeltaP()
-                         : diffData.getBranchesSideDiffs().get(node2.getId()).getiDelta();
-            }
-            diffSuffix = getLevel(iDelta);
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        int index = branchesSideDiffs.indexOf(edge.getNode1());
+        if (index < 0) {
+            index = branchesSideDiffs.indexOf(edge.getNode2());
         }
+        String diffSuffix = index >= 0 ? getLevel(branchesSideDiffs.getiDelta(index, colorsLevelsDiffConfig.isUsePercentage())) : LEVEL_0_SUFFIX;
         Collections.replaceAll(style, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + diffSuffix);
         //LOGGER.debug("edge after:  Id1='{}', id2='{}', styles= '{}'", edge.getNode1().getId(), edge.getNode2().getId(), style);
         return style;
@@ -116,24 +107,16 @@ public class ColorsLevelsDiffStyleProvider extends DefaultDiagramStyleProvider i
     }
 
     public String getArrowsActiveStyle(FeederNode feederNode, ComponentLibrary componentLibrary) {
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (diffData.getBranchesSideDiffs().containsKey(feederNode.getId())) {
-            double pDelta = colorsLevelsDiffConfig.isUsePercentage()
-                            ? diffData.getBranchesSideDiffs().get(feederNode.getId()).getpDeltaP()
-                            : diffData.getBranchesSideDiffs().get(feederNode.getId()).getpDelta();
-            diffSuffix = getLevel(pDelta);
-        }
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        int index = branchesSideDiffs.indexOf(feederNode);
+        String diffSuffix = index >= 0 ? getLevel(branchesSideDiffs.getpDelta(index, colorsLevelsDiffConfig.isUsePercentage())) : LEVEL_0_SUFFIX;
         return ARROW_ACTIVE_CLASS + diffSuffix;
     }
 
     public String getArrowsReactiveStyle(FeederNode feederNode, ComponentLibrary componentLibrary) {
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (diffData.getBranchesSideDiffs().containsKey(feederNode.getId())) {
-            double qDelta = colorsLevelsDiffConfig.isUsePercentage()
-                            ? diffData.getBranchesSideDiffs().get(feederNode.getId()).getqDeltaP()
-                            : diffData.getBranchesSideDiffs().get(feederNode.getId()).getqDelta();
-            diffSuffix = getLevel(qDelta);
-        }
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        int index = branchesSideDiffs.indexOf(feederNode);
+        String diffSuffix = index >= 0 ? getLevel(branchesSideDiffs.getqDelta(index, colorsLevelsDiffConfig.isUsePercentage())) : LEVEL_0_SUFFIX;
         return ARROW_REACTIVE_CLASS + diffSuffix;
     }
 
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Objects;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The current and voltage classifiers of a {@link LevelsData}, built once per distinct levels and shared by the style
+ * providers: they are cached under the fingerprint of the levels, so a levels instance modified after a first use
+ * is compiled again. The stylesheet of the levels is cached by {@link LevelsStylesheet#of}.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class CompiledLevels {
+
+    private static final int MAXIMUM_SIZE = 256;
+
+    private static final Cache<String, CompiledLevels> CACHE = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+    private final LevelsClassifier currentLevels;
+    private final LevelsClassifier voltageLevels;
+
+    private CompiledLevels(LevelsData levelsData) {
+        this.currentLevels = LevelsClassifier.ofCurrent(levelsData.getLevels());
+        this.voltageLevels = LevelsClassifier.ofVoltage(levelsData.getLevels());
+    }
+
+    static CompiledLevels of(LevelsData levelsData) {
+        Objects.requireNonNull(levelsData);
+        String fingerprint = DiffFingerprints.fingerprint(levelsData);
+        CompiledLevels compiledLevels = CACHE.getIfPresent(fingerprint);
+        if (compiledLevels == null) {
+            //compiling twice the same levels concurrently is harmless
+            compiledLevels = new CompiledLevels(levelsData);
+            CACHE.put(fingerprint, compiledLevels);
+        }
+        return compiledLevels;
+    }
+
+    LevelsClassifier getCurrentLevels() {
+        return currentLevels;
+    }
+
+    LevelsClassifier getVoltageLevels() {
+        return voltageLevels;
+    }
+}
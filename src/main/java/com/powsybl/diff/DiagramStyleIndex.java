@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import static com.powsybl.sld.svg.DiagramStyles.ARROW_ACTIVE_CLASS;
+import static com.powsybl.sld.svg.DiagramStyles.ARROW_REACTIVE_CLASS;
+import static com.powsybl.sld.svg.DiagramStyles.CONSTANT_COLOR_CLASS;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.powsybl.sld.model.Edge;
+import com.powsybl.sld.model.FeederNode;
+import com.powsybl.sld.model.Node;
+import com.powsybl.sld.model.VoltageLevelGraph;
+
+/**
+ * The diff classes of the nodes, wires and arrows of the diagram graphs styled by a provider.
+ * <p>
+ * The first time a node or an edge of a voltage level graph is styled, the classes of all the nodes and edges of the graph
+ * are computed in a single traversal; the following style callbacks are then identity map lookups.
+ * The classes are built once per diff suffix and shared. An index is filled while writing a diagram and is not thread safe.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class DiagramStyleIndex {
+
+    /**
+     * Computes the diff suffixes of the nodes, wires and arrows.
+     */
+    interface Styler {
+
+        String getNodeSuffix(Node node);
+
+        String getWireSuffix(Edge edge);
+
+        String getArrowActiveSuffix(FeederNode feederNode);
+
+        String getArrowReactiveSuffix(FeederNode feederNode);
+    }
+
+    private final Styler styler;
+    private final Set<VoltageLevelGraph> indexedGraphs = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Node, String> nodeClasses = new IdentityHashMap<>();
+    private final Map<Edge, String> wireClasses = new IdentityHashMap<>();
+    private final Map<Node, String> arrowActiveClasses = new IdentityHashMap<>();
+    private final Map<Node, String> arrowReactiveClasses = new IdentityHashMap<>();
+    //class of each suffix, for each class prefix
+    private final Map<String, String> constantColorClasses = new HashMap<>();
+    private final Map<String, String> activeClasses = new HashMap<>();
+    private final Map<String, String> reactiveClasses = new HashMap<>();
+
+    DiagramStyleIndex(Styler styler) {
+        this.styler = Objects.requireNonNull(styler);
+    }
+
+    private void index(VoltageLevelGraph graph) {
+        if (graph == null || !indexedGraphs.add(graph)) {
+            return;
+        }
+        for (Node node : graph.getNodes()) {
+            nodeClasses.put(node, constantColorClass(styler.getNodeSuffix(node)));
+            if (node instanceof FeederNode) {
+                FeederNode feederNode = (FeederNode) node;
+                arrowActiveClasses.put(node, activeClass(styler.getArrowActiveSuffix(feederNode)));
+                arrowReactiveClasses.put(node, reactiveClass(styler.getArrowReactiveSuffix(feederNode)));
+            }
+        }
+        for (Edge edge : graph.getEdges()) {
+            wireClasses.put(edge, constantColorClass(styler.getWireSuffix(edge)));
+        }
+    }
+
+    private String constantColorClass(String suffix) {
+        return constantColorClasses.computeIfAbsent(suffix, s -> CONSTANT_COLOR_CLASS + s);
+    }
+
+    private String activeClass(String suffix) {
+        return activeClasses.computeIfAbsent(suffix, s -> ARROW_ACTIVE_CLASS + s);
+    }
+
+    private String reactiveClass(String suffix) {
+        return reactiveClasses.computeIfAbsent(suffix, s -> ARROW_REACTIVE_CLASS + s);
+    }
+
+    //nodes and edges out of any voltage level graph are styled on each call
+
+    String getNodeClass(Node node) {
+        index(node.getGraph());
+        String nodeClass = nodeClasses.get(node);
+        return nodeClass != null ? nodeClass : constantColorClass(styler.getNodeSuffix(node));
+    }
+
+    String getWireClass(Edge edge) {
+        index(edge.getNode1().getGraph());
+        String wireClass = wireClasses.get(edge);
+        return wireClass != null ? wireClass : constantColorClass(styler.getWireSuffix(edge));
+    }
+
+    String getArrowActiveClass(FeederNode feederNode) {
+        index(feederNode.getGraph());
+        String arrowClass = arrowActiveClasses.get(feederNode);
+        return arrowClass != null ? arrowClass : activeClass(styler.getArrowActiveSuffix(feederNode));
+    }
+
+    String getArrowReactiveClass(FeederNode feederNode) {
+        index(feederNode.getGraph());
+        String arrowClass = arrowReactiveClasses.get(feederNode);
+        return arrowClass != null ? arrowClass : reactiveClass(styler.getArrowReactiveSuffix(feederNode));
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * File archive of a network diff, split in sections: one per voltage level and one per substation, each section being
+ * the {@link DiffCodec binary diff} of its voltage levels and of the branches connected to them.
+ * <p>
+ * The sections are followed by an index of their offsets, read when the archive is opened. A section is memory mapped
+ * when it is read, so reading the diff of a voltage level touches only the pages of its section, whatever the size
+ * of the archive. An open archive can be read by concurrent threads.
+ * <p>
+ * Layout, version 1: magic, version, index offset, sections, index. An index entry is the kind of the section
+ * (voltage level or substation), its id, its offset and its length.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class DiffArchive implements Closeable {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4e444152; //NDAR
+    private static final int HEADER_SIZE = 16;
+    private static final byte VOLTAGE_LEVEL = 0;
+    private static final byte SUBSTATION = 1;
+
+    private final FileChannel channel;
+    //offset and length of the sections
+    private final Map<String, long[]> voltageLevelsSections;
+    private final Map<String, long[]> substationsSections;
+
+    private DiffArchive(FileChannel channel, Map<String, long[]> voltageLevelsSections, Map<String, long[]> substationsSections) {
+        this.channel = channel;
+        this.voltageLevelsSections = voltageLevelsSections;
+        this.substationsSections = substationsSections;
+    }
+
+    /**
+     * Writes the archive of a diff of the whole network, or of a part of it.
+     *
+     * @param network the network the diff was computed on, to group the voltage levels and branches by substation;
+     *                branches missing from the network are not archived
+     */
+    public static void write(Path file, Network network, String jsonDiff, DiffCodec codec) {
+        try (JsonParser parser = DiffJsonReader.createParser(jsonDiff)) {
+            write(file, network, parser, codec);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void write(Path file, Network network, NetworkDiffResults diffResults, DiffCodec codec) {
+        Objects.requireNonNull(diffResults);
+        TokenBuffer tokenBuffer = new TokenBuffer(null, false);
+        try {
+            diffResults.writeJson(tokenBuffer);
+            try (JsonParser parser = tokenBuffer.asParser()) {
+                write(file, network, parser, codec);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Section {
+
+        private final List<DiffCodec.VoltageLevelDiff> voltageLevels = new ArrayList<>();
+        private final Set<DiffCodec.BranchDiff> branches = new LinkedHashSet<>();
+    }
+
+    private static Section section(Map<String, Section> sections, String id) {
+        return sections.computeIfAbsent(id, k -> new Section());
+    }
+
+    private static void write(Path file, Network network, JsonParser parser, DiffCodec codec) throws IOException {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(network);
+        Objects.requireNonNull(codec);
+        DiffCodec.DiffCollector collector = new DiffCodec.DiffCollector();
+        DiffJsonReader.read(parser, collector);
+
+        Map<String, Section> voltageLevelsSections = new LinkedHashMap<>();
+        Map<String, Section> substationsSections = new LinkedHashMap<>();
+        for (DiffCodec.VoltageLevelDiff vl : collector.getVoltageLevels()) {
+            section(voltageLevelsSections, vl.getId()).voltageLevels.add(vl);
+            VoltageLevel voltageLevel = network.getVoltageLevel(vl.getId());
+            if (voltageLevel != null) {
+                section(substationsSections, voltageLevel.getSubstation().getId()).voltageLevels.add(vl);
+            }
+        }
+        for (DiffCodec.BranchDiff branchDiff : collector.getBranches()) {
+            Branch<?> branch = network.getBranch(branchDiff.getId());
+            if (branch != null) {
+                for (VoltageLevel voltageLevel : new VoltageLevel[] {branch.getTerminal1().getVoltageLevel(), branch.getTerminal2().getVoltageLevel()}) {
+                    section(voltageLevelsSections, voltageLevel.getId()).branches.add(branchDiff);
+                    section(substationsSections, voltageLevel.getSubstation().getId()).branches.add(branchDiff);
+                }
+            }
+        }
+
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.position(HEADER_SIZE);
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOutput = new DataOutputStream(index);
+            indexOutput.writeInt(voltageLevelsSections.size() + substationsSections.size());
+            writeSections(out, codec, VOLTAGE_LEVEL, voltageLevelsSections, indexOutput);
+            writeSections(out, codec, SUBSTATION, substationsSections, indexOutput);
+            long indexOffset = out.position();
+            writeFully(out, ByteBuffer.wrap(index.toByteArray()));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(indexOffset).flip();
+            out.position(0);
+            writeFully(out, header);
+        }
+    }
+
+    private static void writeSections(FileChannel out, DiffCodec codec, byte kind, Map<String, Section> sections,
+                                      DataOutputStream indexOutput) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Map.Entry<String, Section> e : sections.entrySet()) {
+            bytes.reset();
+            codec.encode(e.getValue().voltageLevels, new ArrayList<>(e.getValue().branches), bytes);
+            indexOutput.writeByte(kind);
+            indexOutput.writeUTF(e.getKey());
+            indexOutput.writeLong(out.position());
+            indexOutput.writeLong(bytes.size());
+            writeFully(out, ByteBuffer.wrap(bytes.toByteArray()));
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Opens an archive: only its index is read.
+     */
+    public static DiffArchive open(Path file) {
+        Objects.requireNonNull(file);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new PowsyblException("Not a diff archive: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new PowsyblException("Unsupported diff archive version " + version + ": " + file);
+            }
+            long indexOffset = header.getLong();
+            DataInputStream index = new DataInputStream(new ByteBufferInputStream(
+                    channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, channel.size() - indexOffset)));
+            Map<String, long[]> voltageLevelsSections = new HashMap<>();
+            Map<String, long[]> substationsSections = new HashMap<>();
+            int count = index.readInt();
+            for (int i = 0; i < count; i++) {
+                byte kind = index.readByte();
+                String id = index.readUTF();
+                long[] section = {index.readLong(), index.readLong()};
+                (kind == VOLTAGE_LEVEL ? voltageLevelsSections : substationsSections).put(id, section);
+            }
+            return new DiffArchive(channel, voltageLevelsSections, substationsSections);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel, e);
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel, Exception e) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+        }
+    }
+
+    /**
+     * Reads a memory mapped buffer, without copying it.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    private InputStream section(Map<String, long[]> sections, String id, String type) {
+        long[] section = sections.get(Objects.requireNonNull(id));
+        if (section == null) {
+            throw new PowsyblException(type + " '" + id + "' not found in diff archive");
+        }
+        try {
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, section[0], section[1]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Set<String> getVoltageLevelIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(voltageLevelsSections.keySet()));
+    }
+
+    public Set<String> getSubstationIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(substationsSections.keySet()));
+    }
+
+    public boolean containsVoltageLevel(String vlId) {
+        return voltageLevelsSections.containsKey(vlId);
+    }
+
+    public boolean containsSubstation(String substationId) {
+        return substationsSections.containsKey(substationId);
+    }
+
+    public ColorsLevelsDiffData getVoltageLevelDiffData(String vlId) {
+        return DiffCodec.decodeColorsLevelsDiffData(section(voltageLevelsSections, vlId, "Voltage level"), false);
+    }
+
+    public ColorsLevelsDiffData getSubstationDiffData(String substationId) {
+        return DiffCodec.decodeColorsLevelsDiffData(section(substationsSections, substationId, "Substation"), false);
+    }
+
+    public DiffData2 getVoltageLevelDiffData2(String vlId) {
+        return DiffCodec.decodeDiffData2(section(voltageLevelsSections, vlId, "Voltage level"));
+    }
+
+    public DiffData2 getSubstationDiffData2(String substationId) {
+        return DiffCodec.decodeDiffData2(section(substationsSections, substationId, "Substation"));
+    }
+
+    //a voltage level or a substation without a diff has no section
+    private ColorsLevelsDiffData voltageLevelDiffData(String vlId) {
+        return containsVoltageLevel(vlId) ? getVoltageLevelDiffData(vlId) : new ColorsLevelsDiffData(false);
+    }
+
+    private ColorsLevelsDiffData substationDiffData(String substationId) {
+        return containsSubstation(substationId) ? getSubstationDiffData(substationId) : new ColorsLevelsDiffData(false);
+    }
+
+    /**
+     * Renders the archived diff of a voltage level, on the first network of the renderer.
+     */
+    public String getVoltageLevelSvgDiff(NetworkDiffRenderer renderer, String vlId, LevelsData levelsData) {
+        return renderer.writeVoltageLevelSvg(vlId, voltageLevelDiffData(vlId), levelsData, false, false);
+    }
+
+    public String getVoltageLevelMergedSvgDiff(NetworkDiffRenderer renderer, String vlId, LevelsData levelsData, boolean showCurrent) {
+        return renderer.writeVoltageLevelSvg(vlId, voltageLevelDiffData(vlId), levelsData, true, showCurrent);
+    }
+
+    public String getSubstationSvgDiff(NetworkDiffRenderer renderer, String substationId, LevelsData levelsData) {
+        return renderer.writeSubstationSvg(substationId, substationDiffData(substationId), levelsData, false, false);
+    }
+
+    public String getSubstationMergedSvgDiff(NetworkDiffRenderer renderer, String substationId, LevelsData levelsData, boolean showCurrent) {
+        return renderer.writeSubstationSvg(substationId, substationDiffData(substationId), levelsData, true, showCurrent);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
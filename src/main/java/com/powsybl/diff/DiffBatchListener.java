@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+/**
+ * Receives the outcome of each item of a batch rendering.
+ * Methods are called from the threads of the batch executor, implementations must be thread-safe.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public interface DiffBatchListener {
+
+    default void onSuccess(String id, String svg) {
+    }
+
+    default void onFailure(String id, Exception e) {
+    }
+
+    /**
+     * Called after each item, whether it succeeded or failed.
+     */
+    default void onProgress(int completed, int total) {
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterables;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Identifiable;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * Renders the diff SVGs of many substations or voltage levels of a pair of networks.
+ * <p>
+ * The networks are diffed once, on all the equipments of the requested substations or voltage levels,
+ * then the diagrams are rendered in parallel on the executor, once the bus views of their voltage levels
+ * have been built: the networks must not be modified during the rendering. A failing diagram is reported to the listener
+ * and does not abort the batch.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public class DiffBatchRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiffBatchRenderer.class);
+
+    private final NetworkDiffRenderer renderer;
+    private final Executor executor;
+
+    public DiffBatchRenderer(NetworkDiffRenderer renderer) {
+        this(renderer, ForkJoinPool.commonPool());
+    }
+
+    public DiffBatchRenderer(NetworkDiffRenderer renderer, Executor executor) {
+        this.renderer = Objects.requireNonNull(renderer);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * @param substationIds the substations to render, all the substations of the first network if null
+     */
+    public DiffBatchResult getSubstationsSvgDiff(List<String> substationIds, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                                 boolean merged, boolean showCurrent) {
+        List<String> ids = substationIds != null ? substationIds : getIds(renderer.getNetwork1().getSubstationStream());
+        CollectingListener listener = new CollectingListener();
+        renderSubstations(ids, epsilon, voltageEpsilon, levelsData, merged, showCurrent, listener);
+        return listener.getResult(ids);
+    }
+
+    /**
+     * Streams the SVGs to the listener, as soon as they are rendered; returns when the whole batch is done.
+     *
+     * @param substationIds the substations to render, all the substations of the first network if null
+     */
+    public void renderSubstations(List<String> substationIds, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                  boolean merged, boolean showCurrent, DiffBatchListener listener) {
+        Network network1 = renderer.getNetwork1();
+        List<String> ids = substationIds != null ? substationIds : getIds(network1.getSubstationStream());
+        Set<String> voltageLevels = new LinkedHashSet<>();
+        Set<String> branches = new LinkedHashSet<>();
+        for (String id : ids) {
+            Substation substation = network1.getSubstation(id);
+            if (substation != null) {
+                voltageLevels.addAll(NetworkDiffRenderer.getVoltageLevels(substation));
+                branches.addAll(NetworkDiffRenderer.getBranches(substation));
+            }
+        }
+        NetworkDiffIndex diffIndex = diff(voltageLevels, branches, epsilon, voltageEpsilon);
+        buildTopologies(network1, voltageLevels, branches);
+        render(ids, id -> renderer.writeSubstationSvg(id, diffIndex.sliceSubstation(id), levelsData, merged, showCurrent), listener);
+    }
+
+    /**
+     * @param vlIds the voltage levels to render, all the voltage levels of the first network if null
+     */
+    public DiffBatchResult getVoltageLevelsSvgDiff(List<String> vlIds, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                                   boolean merged, boolean showCurrent) {
+        List<String> ids = vlIds != null ? vlIds : getIds(renderer.getNetwork1().getVoltageLevelStream());
+        CollectingListener listener = new CollectingListener();
+        renderVoltageLevels(ids, epsilon, voltageEpsilon, levelsData, merged, showCurrent, listener);
+        return listener.getResult(ids);
+    }
+
+    /**
+     * Streams the SVGs to the listener, as soon as they are rendered; returns when the whole batch is done.
+     *
+     * @param vlIds the voltage levels to render, all the voltage levels of the first network if null
+     */
+    public void renderVoltageLevels(List<String> vlIds, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                    boolean merged, boolean showCurrent, DiffBatchListener listener) {
+        Network network1 = renderer.getNetwork1();
+        List<String> ids = vlIds != null ? vlIds : getIds(network1.getVoltageLevelStream());
+        Set<String> voltageLevels = new LinkedHashSet<>();
+        Set<String> branches = new LinkedHashSet<>();
+        for (String id : ids) {
+            VoltageLevel voltageLevel = network1.getVoltageLevel(id);
+            if (voltageLevel != null) {
+                voltageLevels.add(id);
+                branches.addAll(NetworkDiffRenderer.getBranches(voltageLevel));
+            }
+        }
+        NetworkDiffIndex diffIndex = diff(voltageLevels, branches, epsilon, voltageEpsilon);
+        buildTopologies(network1, voltageLevels, branches);
+        render(ids, id -> renderer.writeVoltageLevelSvg(id, diffIndex.sliceVoltageLevel(id), levelsData, merged, showCurrent), listener);
+    }
+
+    private static List<String> getIds(Stream<? extends Identifiable<?>> identifiables) {
+        return identifiables.map(Identifiable::getId).collect(Collectors.toList());
+    }
+
+    //each diagram is rendered from the slice of its own equipments: its SVG cache key fingerprints the slice only,
+    //as the key of the same diagram rendered alone
+    private NetworkDiffIndex diff(Set<String> voltageLevels, Set<String> branches, double epsilon, double voltageEpsilon) {
+        try {
+            NetworkDiffResults diffResults = renderer.diffNetworksResults(new ArrayList<>(voltageLevels), new ArrayList<>(branches),
+                                                                          epsilon, voltageEpsilon);
+            return new NetworkDiffIndex(renderer.getNetwork1(), diffResults, epsilon, voltageEpsilon);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+            throw new PowsyblException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * IIDM builds the bus and bus breaker views of a voltage level lazily, on first access, without synchronization:
+     * they are built here for the rendered voltage levels and the other ends of their branches, so that the concurrent
+     * renderings only read them.
+     */
+    private static void buildTopologies(Network network, Set<String> voltageLevels, Set<String> branches) {
+        Set<VoltageLevel> rendered = new LinkedHashSet<>();
+        for (String vlId : voltageLevels) {
+            VoltageLevel voltageLevel = network.getVoltageLevel(vlId);
+            if (voltageLevel != null) {
+                rendered.add(voltageLevel);
+            }
+        }
+        for (String branchId : branches) {
+            Branch<?> branch = network.getBranch(branchId);
+            if (branch != null) {
+                rendered.add(branch.getTerminal1().getVoltageLevel());
+                rendered.add(branch.getTerminal2().getVoltageLevel());
+            }
+        }
+        for (VoltageLevel voltageLevel : rendered) {
+            //iterating the buses builds the views
+            Iterables.size(voltageLevel.getBusBreakerView().getBuses());
+            Iterables.size(voltageLevel.getBusView().getBuses());
+        }
+    }
+
+    private void render(List<String> ids, Function<String, String> svgWriter, DiffBatchListener listener) {
+        Objects.requireNonNull(listener);
+        int total = ids.size();
+        AtomicInteger completed = new AtomicInteger();
+        CompletableFuture<?>[] futures = ids.stream().map(id -> CompletableFuture.runAsync(() -> {
+            try {
+                listener.onSuccess(id, svgWriter.apply(id));
+            } catch (Exception e) {
+                LOGGER.error("Diff rendering of '{}' failed: {}", id, e.getMessage());
+                listener.onFailure(id, e);
+            } finally {
+                listener.onProgress(completed.incrementAndGet(), total);
+            }
+        }, executor)).toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private static final class CollectingListener implements DiffBatchListener {
+
+        private final Map<String, String> svgs = new ConcurrentHashMap<>();
+        private final Map<String, Exception> failures = new ConcurrentHashMap<>();
+
+        @Override
+        public void onSuccess(String id, String svg) {
+            svgs.put(id, svg);
+        }
+
+        @Override
+        public void onFailure(String id, Exception e) {
+            failures.put(id, e);
+        }
+
+        //reorders the results as the requested ids
+        DiffBatchResult getResult(List<String> ids) {
+            Map<String, String> orderedSvgs = new LinkedHashMap<>();
+            Map<String, Exception> orderedFailures = new LinkedHashMap<>();
+            for (String id : ids) {
+                if (svgs.containsKey(id)) {
+                    orderedSvgs.put(id, svgs.get(id));
+                } else if (failures.containsKey(id)) {
+                    orderedFailures.put(id, failures.get(id));
+                }
+            }
+            return new DiffBatchResult(orderedSvgs, orderedFailures);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SVGs and failures of a batch rendering, by substation or voltage level id, in the order of the requested ids.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public class DiffBatchResult {
+
+    private final Map<String, String> svgs;
+    private final Map<String, Exception> failures;
+
+    DiffBatchResult(Map<String, String> svgs, Map<String, Exception> failures) {
+        this.svgs = Collections.unmodifiableMap(new LinkedHashMap<>(svgs));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    public Map<String, String> getSvgs() {
+        return svgs;
+    }
+
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+}
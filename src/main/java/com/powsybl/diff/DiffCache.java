@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.function.Supplier;
+
+import com.google.common.cache.CacheStats;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+
+/**
+ * Cache of network diff results. Implementations must be thread-safe.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public interface DiffCache {
+
+    /**
+     * A cache that keeps nothing: every diff is computed.
+     */
+    DiffCache NONE = new DiffCache() {
+        @Override
+        public NetworkDiffResults get(DiffCacheKey key, Supplier<NetworkDiffResults> diff) {
+            return diff.get();
+        }
+
+        @Override
+        public void invalidate(String networkId) {
+        }
+
+        @Override
+        public void invalidateAll() {
+        }
+
+        @Override
+        public CacheStats getStats() {
+            return new CacheStats(0, 0, 0, 0, 0, 0);
+        }
+    };
+
+    /**
+     * @return the cached results of the key, computed by the supplier if they are not cached
+     */
+    NetworkDiffResults get(DiffCacheKey key, Supplier<NetworkDiffResults> diff);
+
+    /**
+     * Discards the results of the diffs involving a network, e.g. when it has been modified.
+     */
+    void invalidate(String networkId);
+
+    void invalidateAll();
+
+    CacheStats getStats();
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.powsybl.iidm.network.Network;
+
+/**
+ * Identifies a diff: the compared networks and variants, the diff thresholds and the diffed equipments.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class DiffCacheKey {
+
+    private final String networkId1;
+    private final String variantId1;
+    private final String networkId2;
+    private final String variantId2;
+    private final double epsilon;
+    private final double voltageEpsilon;
+    private final List<String> voltageLevels;
+    private final List<String> branches;
+    private final int hashCode;
+
+    public DiffCacheKey(String networkId1, String variantId1, String networkId2, String variantId2, double epsilon, double voltageEpsilon,
+                        List<String> voltageLevels, List<String> branches) {
+        this.networkId1 = Objects.requireNonNull(networkId1);
+        this.variantId1 = Objects.requireNonNull(variantId1);
+        this.networkId2 = Objects.requireNonNull(networkId2);
+        this.variantId2 = Objects.requireNonNull(variantId2);
+        this.epsilon = epsilon;
+        this.voltageEpsilon = voltageEpsilon;
+        this.voltageLevels = Collections.unmodifiableList(new ArrayList<>(voltageLevels));
+        this.branches = Collections.unmodifiableList(new ArrayList<>(branches));
+        this.hashCode = Objects.hash(networkId1, variantId1, networkId2, variantId2, epsilon, voltageEpsilon, this.voltageLevels, this.branches);
+    }
+
+    /**
+     * Key of a diff between the working variants of the networks.
+     */
+    public static DiffCacheKey of(Network network1, Network network2, double epsilon, double voltageEpsilon,
+                                  List<String> voltageLevels, List<String> branches) {
+        return new DiffCacheKey(network1.getId(), network1.getVariantManager().getWorkingVariantId(),
+                                network2.getId(), network2.getVariantManager().getWorkingVariantId(),
+                                epsilon, voltageEpsilon, voltageLevels, branches);
+    }
+
+    public String getNetworkId1() {
+        return networkId1;
+    }
+
+    public String getVariantId1() {
+        return variantId1;
+    }
+
+    public String getNetworkId2() {
+        return networkId2;
+    }
+
+    public String getVariantId2() {
+        return variantId2;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getVoltageEpsilon() {
+        return voltageEpsilon;
+    }
+
+    public List<String> getVoltageLevels() {
+        return voltageLevels;
+    }
+
+    public List<String> getBranches() {
+        return branches;
+    }
+
+    public boolean involves(String networkId) {
+        return networkId1.equals(networkId) || networkId2.equals(networkId);
+    }
+
+    public boolean involves(String networkId, String variantId) {
+        return networkId1.equals(networkId) && variantId1.equals(variantId) || networkId2.equals(networkId) && variantId2.equals(variantId);
+    }
+
+    /**
+     * @return the number of diffed equipments, an estimation of the size of the diff
+     */
+    public int getScopeSize() {
+        return voltageLevels.size() + branches.size();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DiffCacheKey)) {
+            return false;
+        }
+        DiffCacheKey other = (DiffCacheKey) obj;
+        return hashCode == other.hashCode
+                && Double.compare(epsilon, other.epsilon) == 0
+                && Double.compare(voltageEpsilon, other.voltageEpsilon) == 0
+                && networkId1.equals(other.networkId1)
+                && variantId1.equals(other.variantId1)
+                && networkId2.equals(other.networkId2)
+                && variantId2.equals(other.variantId2)
+                && voltageLevels.equals(other.voltageLevels)
+                && branches.equals(other.branches);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "DiffCacheKey(" + networkId1 + "/" + variantId1 + ", " + networkId2 + "/" + variantId2 + ", " + epsilon + ", " + voltageEpsilon
+                + ", " + voltageLevels.size() + " voltage levels, " + branches.size() + " branches)";
+    }
+}
@@ -0,0 +1,554 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.ObjDoubleConsumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+
+/**
+ * Compact binary encoding of a network diff, an alternative to the JSON format to ship diffs between processes.
+ * <p>
+ * The equipments ids are written once, in a dictionary, and referenced by index; counts and indexes are varints.
+ * The deltas are written either as raw doubles, or quantised: rounded to a multiple of a quantum and written as varints.
+ * The fields of the diff that are not read by {@link ColorsLevelsDiffData} and {@link DiffData2}
+ * (network ids, second equipment ids) are not encoded.
+ * <p>
+ * The decoder feeds the decoded diff directly to the handlers building the diff data, without going through JSON.
+ * <p>
+ * Layout, version 1: magic, version, flags (quantised), quantum if quantised, dictionary, voltage levels, branches.
+ * A voltage level is its id, the mask of its min/max voltage deltas, the deltas, the switches and the busbars deltas;
+ * a branch is its id, the terminals status changes, the mask of its terminal deltas and the deltas.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class DiffCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4e444946; //NDIF
+    private static final int QUANTISED = 1;
+
+    private static final String[] VL_FIELDS = {
+        DiffJsonReader.VL_MIN_V_DELTA, DiffJsonReader.VL_MAX_V_DELTA, DiffJsonReader.VL_MIN_V_DELTA_PERCENT, DiffJsonReader.VL_MAX_V_DELTA_PERCENT
+    };
+    private static final String[] BRANCH_FIELDS = {
+        "branch.terminal1.p-delta", "branch.terminal1.q-delta", "branch.terminal1.i-delta",
+        "branch.terminal1.p-delta-percent", "branch.terminal1.q-delta-percent", "branch.terminal1.i-delta-percent",
+        "branch.terminal2.p-delta", "branch.terminal2.q-delta", "branch.terminal2.i-delta",
+        "branch.terminal2.p-delta-percent", "branch.terminal2.q-delta-percent", "branch.terminal2.i-delta-percent"
+    };
+    private static final Map<String, Integer> VL_FIELDS_INDEXES = indexes(VL_FIELDS);
+    private static final Map<String, Integer> BRANCH_FIELDS_INDEXES = indexes(BRANCH_FIELDS);
+
+    //quantised values: non finite values first, then the zigzag encoded multiples of the quantum
+    private static final long QUANTISED_NAN = 0;
+    private static final long QUANTISED_POSITIVE_INFINITY = 1;
+    private static final long QUANTISED_NEGATIVE_INFINITY = 2;
+    private static final long QUANTISED_OFFSET = 3;
+    private static final double QUANTISED_MAX = (double) (1L << 61);
+
+    private static final DiffCodec RAW = new DiffCodec(0);
+
+    private final double quantum;
+
+    private DiffCodec(double quantum) {
+        this.quantum = quantum;
+    }
+
+    /**
+     * @return a codec writing the deltas as raw doubles: the decoded diff is exactly the encoded one
+     */
+    public static DiffCodec raw() {
+        return RAW;
+    }
+
+    /**
+     * @param quantum the precision of the written deltas, e.g. 0.001 for the precision displayed by {@link DiffData2}
+     */
+    public static DiffCodec quantised(double quantum) {
+        if (!(quantum > 0) || Double.isInfinite(quantum)) {
+            throw new IllegalArgumentException("Invalid quantum: " + quantum);
+        }
+        return new DiffCodec(quantum);
+    }
+
+    private static Map<String, Integer> indexes(String[] fields) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            indexes.put(fields[i], i);
+        }
+        return indexes;
+    }
+
+    static final class VoltageLevelDiff {
+        private String id;
+        private int mask;
+        private final double[] values = new double[VL_FIELDS.length];
+        private final List<String> switches = new ArrayList<>();
+        private final List<String> busbars = new ArrayList<>();
+        private double[] busbarsValues = new double[4];
+        private final List<String> busbarsP = new ArrayList<>();
+        private double[] busbarsPValues = new double[4];
+
+        String getId() {
+            return id;
+        }
+    }
+
+    static final class BranchDiff {
+        private String id;
+        private final List<String> terminalsStatus = new ArrayList<>();
+        private int mask;
+        private final double[] values = new double[BRANCH_FIELDS.length];
+
+        String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Receives the voltage levels and branches diffs of a binary diff, in encoding order; the end of a voltage level
+     * and of a branch is notified by the callbacks of {@link DiffJsonReader.Handler}, so that a handler can be fed
+     * both by the JSON reader and by the decoder.
+     */
+    interface Handler extends DiffJsonReader.Handler {
+
+        default void voltageLevel(String vlId) {
+        }
+
+        //fieldName is one of the min/max voltage delta fields of the JSON format
+        default void voltageLevelValue(String fieldName, double value) {
+        }
+
+        default void switchStatus(String switchId) {
+        }
+
+        default void busbarVoltage(String busbarId, double delta) {
+        }
+
+        default void busbarVoltagePercent(String busbarId, double deltaPercent) {
+        }
+
+        default void branch(String branchId) {
+        }
+
+        default void terminalStatus(String terminalId) {
+        }
+
+        //fieldName is one of the terminal delta fields of the JSON format
+        default void branchValue(String fieldName, double value) {
+        }
+    }
+
+    private static double[] add(List<String> ids, double[] values, String id, double value) {
+        double[] newValues = ids.size() < values.length ? values : Arrays.copyOf(values, 2 * values.length);
+        newValues[ids.size()] = value;
+        ids.add(id);
+        return newValues;
+    }
+
+    /**
+     * The voltage levels and branches diffs of a diff, as read from the network diff JSON format.
+     */
+    static final class DiffCollector implements DiffJsonReader.Handler {
+
+        private final List<VoltageLevelDiff> voltageLevels = new ArrayList<>();
+        private final List<BranchDiff> branches = new ArrayList<>();
+        private VoltageLevelDiff voltageLevel = new VoltageLevelDiff();
+        private BranchDiff branch = new BranchDiff();
+
+        List<VoltageLevelDiff> getVoltageLevels() {
+            return voltageLevels;
+        }
+
+        List<BranchDiff> getBranches() {
+            return branches;
+        }
+
+        @Override
+        public void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            VoltageLevelDiff vl = voltageLevel;
+            switch (fieldName) {
+                case DiffJsonReader.VL_ID:
+                    vl.id = DiffJsonReader.readText(parser);
+                    break;
+                case DiffJsonReader.VL_SWITCHES_STATUS_DELTA:
+                    DiffJsonReader.readStrings(parser, vl.switches::add);
+                    break;
+                case DiffJsonReader.VL_BUSBARS_VOLTAGE_DELTA:
+                    DiffJsonReader.readDoubles(parser, (busbarId, value) -> vl.busbarsValues = add(vl.busbars, vl.busbarsValues, busbarId, value));
+                    break;
+                case DiffJsonReader.VL_BUSBARS_VOLTAGE_DELTA_PERCENT:
+                    DiffJsonReader.readDoubles(parser, (busbarId, value) -> vl.busbarsPValues = add(vl.busbarsP, vl.busbarsPValues, busbarId, value));
+                    break;
+                default:
+                    Integer index = VL_FIELDS_INDEXES.get(fieldName);
+                    if (index != null) {
+                        vl.values[index] = readValue(parser);
+                        vl.mask |= 1 << index;
+                    } else {
+                        parser.skipChildren();
+                    }
+            }
+        }
+
+        @Override
+        public void endVoltageLevel() {
+            if (voltageLevel.id == null) {
+                throw new PowsyblException("Voltage level diff without id");
+            }
+            voltageLevels.add(voltageLevel);
+            voltageLevel = new VoltageLevelDiff();
+        }
+
+        @Override
+        public void branchField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.BRANCH_ID.equals(fieldName)) {
+                branch.id = DiffJsonReader.readText(parser);
+            } else if (DiffJsonReader.BRANCH_TERMINAL_STATUS_DELTA.equals(fieldName)) {
+                DiffJsonReader.readStrings(parser, branch.terminalsStatus::add);
+            } else {
+                Integer index = BRANCH_FIELDS_INDEXES.get(fieldName);
+                if (index != null) {
+                    branch.values[index] = readValue(parser);
+                    branch.mask |= 1 << index;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        @Override
+        public void endBranch() {
+            if (branch.id == null) {
+                throw new PowsyblException("Branch diff without id");
+            }
+            branches.add(branch);
+            branch = new BranchDiff();
+        }
+    }
+
+    //numbers, and the "Nan" and "Infinity" placeholders
+    private static double readValue(JsonParser parser) throws IOException {
+        if (parser.currentToken().isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        String text = DiffJsonReader.readText(parser);
+        if ("Infinity".equals(text)) {
+            return Double.POSITIVE_INFINITY;
+        } else if ("-Infinity".equals(text)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.NaN;
+    }
+
+    public byte[] encode(String jsonDiff) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (JsonParser parser = DiffJsonReader.createParser(jsonDiff)) {
+            encode(parser, os);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return os.toByteArray();
+    }
+
+    public void encode(InputStream jsonDiff, OutputStream os) {
+        try (JsonParser parser = DiffJsonReader.createParser(jsonDiff)) {
+            encode(parser, os);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encodes the diff results, without going through a JSON string.
+     */
+    public byte[] encode(NetworkDiffResults diffResults) {
+        Objects.requireNonNull(diffResults);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        TokenBuffer tokenBuffer = new TokenBuffer(null, false);
+        try {
+            diffResults.writeJson(tokenBuffer);
+            try (JsonParser parser = tokenBuffer.asParser()) {
+                encode(parser, os);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return os.toByteArray();
+    }
+
+    private void encode(JsonParser parser, OutputStream os) throws IOException {
+        Objects.requireNonNull(os);
+        DiffCollector collector = new DiffCollector();
+        DiffJsonReader.read(parser, collector);
+        encode(collector.voltageLevels, collector.branches, os);
+    }
+
+    private static void id(Map<String, Integer> dictionary, String id) {
+        dictionary.putIfAbsent(id, dictionary.size());
+    }
+
+    /**
+     * Encodes the given voltage levels and branches diffs, e.g. a part of a collected diff.
+     */
+    void encode(List<VoltageLevelDiff> voltageLevels, List<BranchDiff> branches, OutputStream os) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (VoltageLevelDiff vl : voltageLevels) {
+            id(dictionary, vl.id);
+            vl.switches.forEach(id -> id(dictionary, id));
+            vl.busbars.forEach(id -> id(dictionary, id));
+            vl.busbarsP.forEach(id -> id(dictionary, id));
+        }
+        for (BranchDiff branch : branches) {
+            id(dictionary, branch.id);
+            branch.terminalsStatus.forEach(id -> id(dictionary, id));
+        }
+
+        //the caller's stream may be unbuffered, and the varints are written byte by byte
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(os));
+        output.writeInt(MAGIC);
+        writeVarLong(output, VERSION);
+        output.writeByte(quantum > 0 ? QUANTISED : 0);
+        if (quantum > 0) {
+            output.writeDouble(quantum);
+        }
+        writeVarLong(output, dictionary.size());
+        for (String id : dictionary.keySet()) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(output, bytes.length);
+            output.write(bytes);
+        }
+        writeVarLong(output, voltageLevels.size());
+        for (VoltageLevelDiff vl : voltageLevels) {
+            writeVarLong(output, dictionary.get(vl.id));
+            writeValues(output, vl.mask, vl.values);
+            writeIds(output, dictionary, vl.switches);
+            writeIdsValues(output, dictionary, vl.busbars, vl.busbarsValues);
+            writeIdsValues(output, dictionary, vl.busbarsP, vl.busbarsPValues);
+        }
+        writeVarLong(output, branches.size());
+        for (BranchDiff branch : branches) {
+            writeVarLong(output, dictionary.get(branch.id));
+            writeIds(output, dictionary, branch.terminalsStatus);
+            writeValues(output, branch.mask, branch.values);
+        }
+        output.flush();
+    }
+
+    private static void writeVarLong(DataOutput output, long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            output.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        output.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new PowsyblException("Malformed varint in binary diff");
+    }
+
+    private static int readCount(DataInput input) throws IOException {
+        long count = readVarLong(input);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new PowsyblException("Invalid count in binary diff: " + count);
+        }
+        return (int) count;
+    }
+
+    private void writeValue(DataOutput output, double value) throws IOException {
+        if (quantum == 0) {
+            output.writeDouble(value);
+        } else if (Double.isNaN(value)) {
+            writeVarLong(output, QUANTISED_NAN);
+        } else if (Double.isInfinite(value)) {
+            writeVarLong(output, value > 0 ? QUANTISED_POSITIVE_INFINITY : QUANTISED_NEGATIVE_INFINITY);
+        } else {
+            double multiple = Math.rint(value / quantum);
+            if (Math.abs(multiple) >= QUANTISED_MAX) {
+                throw new PowsyblException("Value " + value + " out of the range of quantum " + quantum);
+            }
+            long q = (long) multiple;
+            writeVarLong(output, ((q << 1) ^ (q >> 63)) + QUANTISED_OFFSET);
+        }
+    }
+
+    private static double readValue(DataInput input, double quantum) throws IOException {
+        if (quantum == 0) {
+            return input.readDouble();
+        }
+        long value = readVarLong(input);
+        if (value == QUANTISED_NAN) {
+            return Double.NaN;
+        } else if (value == QUANTISED_POSITIVE_INFINITY) {
+            return Double.POSITIVE_INFINITY;
+        } else if (value == QUANTISED_NEGATIVE_INFINITY) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        long zigzag = value - QUANTISED_OFFSET;
+        return ((zigzag >>> 1) ^ -(zigzag & 1)) * quantum;
+    }
+
+    private void writeValues(DataOutput output, int mask, double[] values) throws IOException {
+        writeVarLong(output, mask);
+        for (int i = 0; i < values.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                writeValue(output, values[i]);
+            }
+        }
+    }
+
+    private static void writeIds(DataOutput output, Map<String, Integer> dictionary, List<String> ids) throws IOException {
+        writeVarLong(output, ids.size());
+        for (String id : ids) {
+            writeVarLong(output, dictionary.get(id));
+        }
+    }
+
+    private void writeIdsValues(DataOutput output, Map<String, Integer> dictionary, List<String> ids, double[] values) throws IOException {
+        writeIds(output, dictionary, ids);
+        for (int i = 0; i < ids.size(); i++) {
+            writeValue(output, values[i]);
+        }
+    }
+
+    /**
+     * Decodes a binary diff into a handler.
+     */
+    static void decode(InputStream is, Handler handler) throws IOException {
+        Objects.requireNonNull(handler);
+        DataInputStream input = new DataInputStream(Objects.requireNonNull(is));
+        if (input.readInt() != MAGIC) {
+            throw new PowsyblException("Not a binary diff");
+        }
+        long version = readVarLong(input);
+        if (version != VERSION) {
+            throw new PowsyblException("Unsupported binary diff version " + version);
+        }
+        double quantum = (input.readByte() & QUANTISED) != 0 ? input.readDouble() : 0;
+        String[] dictionary = new String[readCount(input)];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[readCount(input)];
+            input.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int vlCount = readCount(input);
+        for (int k = 0; k < vlCount; k++) {
+            handler.voltageLevel(id(dictionary, input));
+            readValues(input, quantum, VL_FIELDS, handler::voltageLevelValue);
+            readIds(input, dictionary, handler::switchStatus);
+            readIdsValues(input, quantum, dictionary, handler::busbarVoltage);
+            readIdsValues(input, quantum, dictionary, handler::busbarVoltagePercent);
+            handler.endVoltageLevel();
+        }
+        int branchCount = readCount(input);
+        for (int k = 0; k < branchCount; k++) {
+            handler.branch(id(dictionary, input));
+            readIds(input, dictionary, handler::terminalStatus);
+            readValues(input, quantum, BRANCH_FIELDS, handler::branchValue);
+            handler.endBranch();
+        }
+    }
+
+    private static String id(String[] dictionary, DataInput input) throws IOException {
+        int index = readCount(input);
+        if (index >= dictionary.length) {
+            throw new PowsyblException("Invalid id reference in binary diff: " + index);
+        }
+        return dictionary[index];
+    }
+
+    private static void readValues(DataInput input, double quantum, String[] fields, ObjDoubleConsumer<String> consumer) throws IOException {
+        long mask = readVarLong(input);
+        for (int i = 0; i < fields.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                consumer.accept(fields[i], readValue(input, quantum));
+            }
+        }
+    }
+
+    private static void readIds(DataInput input, String[] dictionary, Consumer<String> consumer) throws IOException {
+        int count = readCount(input);
+        for (int i = 0; i < count; i++) {
+            consumer.accept(id(dictionary, input));
+        }
+    }
+
+    private static void readIdsValues(DataInput input, double quantum, String[] dictionary, ObjDoubleConsumer<String> consumer) throws IOException {
+        int count = readCount(input);
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = id(dictionary, input);
+        }
+        for (int i = 0; i < count; i++) {
+            consumer.accept(ids[i], readValue(input, quantum));
+        }
+    }
+
+    /**
+     * @param sparse if true, only non-zero deltas are kept in memory
+     */
+    public static ColorsLevelsDiffData decodeColorsLevelsDiffData(InputStream is, boolean sparse) {
+        ColorsLevelsDiffData diffData = new ColorsLevelsDiffData(sparse);
+        try {
+            decode(is, diffData.createHandler());
+            return diffData;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static ColorsLevelsDiffData decodeColorsLevelsDiffData(byte[] bytes, boolean sparse) {
+        return decodeColorsLevelsDiffData(new ByteArrayInputStream(bytes), sparse);
+    }
+
+    public static DiffData2 decodeDiffData2(InputStream is) {
+        try {
+            return DiffData2.decode(is);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static DiffData2 decodeDiffData2(byte[] bytes) {
+        return decodeDiffData2(new ByteArrayInputStream(bytes));
+    }
+}
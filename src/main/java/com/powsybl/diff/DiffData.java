@@ -7,32 +7,62 @@
 package com.powsybl.diff;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
 
 /**
  * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
  */
 public class DiffData {
 
-    final List<String> switchesDiff;
-    final List<String> branchesDiff;
+    final List<String> switchesDiff = new ArrayList<>();
+    final List<String> branchesDiff = new ArrayList<>();
 
     DiffData(String jsonDiff) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> jsonMap = objectMapper.readValue(jsonDiff, new TypeReference<Map<String, Object>>() { });
-        switchesDiff = (List<String>) ((List) jsonMap.get("diff.VoltageLevels")).stream()
-                .map(t -> ((Map) t).get("vl.switchesStatus-delta"))
-                .flatMap(t -> ((List<String>) t).stream())
-                .collect(Collectors.toList());
-        branchesDiff = (List<String>) ((List) jsonMap.get("diff.Branches")).stream()
-                .map(t -> ((Map) t).get("branch.terminalStatus-delta"))
-                .flatMap(t -> ((List<String>) t).stream())
-                .collect(Collectors.toList());
+        try (JsonParser parser = DiffJsonReader.createParser(jsonDiff)) {
+            DiffJsonReader.read(parser, new DiffHandler());
+        }
+    }
+
+    DiffData(JsonParser parser) throws IOException {
+        DiffJsonReader.read(parser, new DiffHandler());
+    }
+
+    public static DiffData parseData(Reader reader) throws IOException {
+        try (JsonParser parser = DiffJsonReader.createParser(reader)) {
+            return new DiffData(parser);
+        }
+    }
+
+    public static DiffData parseData(InputStream inputStream) throws IOException {
+        try (JsonParser parser = DiffJsonReader.createParser(inputStream)) {
+            return new DiffData(parser);
+        }
+    }
+
+    private class DiffHandler implements DiffJsonReader.Handler {
+
+        @Override
+        public void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.VL_SWITCHES_STATUS_DELTA.equals(fieldName)) {
+                DiffJsonReader.readStrings(parser, switchesDiff::add);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        @Override
+        public void branchField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.BRANCH_TERMINAL_STATUS_DELTA.equals(fieldName)) {
+                DiffJsonReader.readStrings(parser, branchesDiff::add);
+            } else {
+                parser.skipChildren();
+            }
+        }
     }
 
     public List<String> getSwitchesIds() {
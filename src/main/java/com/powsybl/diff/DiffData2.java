@@ -6,13 +6,16 @@
  */
 package com.powsybl.diff;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
@@ -47,48 +50,192 @@ public final class DiffData2 {
     }
 
     public static DiffData2 parseData(String jsonDiff) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> jsonMap = objectMapper.readValue(jsonDiff, new TypeReference<Map<String, Object>>() {
-        });
-        List<String> switchesDiff = (List<String>) ((List) jsonMap.get("diff.VoltageLevels")).stream()
-                .map(t -> ((Map) t).get("vl.switchesStatus-delta"))
-                .flatMap(t -> ((List<String>) t).stream())
-                .collect(Collectors.toList());
-        List<String> branchesDiff = (List<String>) ((List) jsonMap.get("diff.Branches")).stream()
-                .map(t -> ((Map) t).get("branch.terminalStatus-delta"))
-                .flatMap(t -> ((List<String>) t).stream())
-                .collect(Collectors.toList());
-        List<LineDiffData> linesDiffData = (List<LineDiffData>) ((List) jsonMap.get("diff.Branches")).stream()
-                .map(t -> {
-                    Map<String, Object> branchMap = (Map) t;
-                    return new LineDiffData(
-                            Utils.formatNum(branchMap.get("branch.branchId1").toString()),
-                            Utils.formatNum(branchMap.get("branch.terminal1.p-delta").toString()),
-                            Utils.formatNum(branchMap.get("branch.terminal1.q-delta").toString()),
-                            Utils.formatNum(branchMap.get("branch.terminal1.i-delta").toString()),
-                            Utils.formatNum(branchMap.get("branch.terminal2.p-delta").toString()),
-                            Utils.formatNum(branchMap.get("branch.terminal2.q-delta").toString()),
-                            Utils.formatNum(branchMap.get("branch.terminal2.i-delta").toString()),
-                            Utils.formatPerc(branchMap.get("branch.terminal1.p-delta-percent").toString()),
-                            Utils.formatPerc(branchMap.get("branch.terminal1.q-delta-percent").toString()),
-                            Utils.formatPerc(branchMap.get("branch.terminal1.i-delta-percent").toString()),
-                            Utils.formatPerc(branchMap.get("branch.terminal2.p-delta-percent").toString()),
-                            Utils.formatPerc(branchMap.get("branch.terminal2.q-delta-percent").toString()),
-                            Utils.formatPerc(branchMap.get("branch.terminal2.i-delta-percent").toString())
-                    );
-                })
-                .collect(Collectors.toList());
-
-        Map<String, VlDiffData> vlDiffData = (Map<String, VlDiffData>) ((List) jsonMap.get("diff.VoltageLevels")).stream()
-                .map(t -> {
-                    Map<String, Object> vlMap = (Map) t;
-                    return new VlDiffData(
-                            Utils.formatNum(vlMap.get("vl.vlId1").toString()),
-                            Utils.formatNum(vlMap.get("vl.minV-delta").toString()),
-                            Utils.formatNum(vlMap.get("vl.maxV-delta").toString()),
-                            Utils.formatPerc(vlMap.get("vl.minV-delta-percent").toString()),
-                            Utils.formatPerc(vlMap.get("vl.maxV-delta-percent").toString()));
-                }).collect(Collectors.toMap(VlDiffData::getVlId, vd -> vd));
-        return new DiffData2(switchesDiff, branchesDiff, linesDiffData, vlDiffData);
+        try (JsonParser parser = DiffJsonReader.createParser(jsonDiff)) {
+            return parseData(parser);
+        }
+    }
+
+    public static DiffData2 parseData(Reader reader) throws IOException {
+        try (JsonParser parser = DiffJsonReader.createParser(reader)) {
+            return parseData(parser);
+        }
+    }
+
+    public static DiffData2 parseData(InputStream inputStream) throws IOException {
+        try (JsonParser parser = DiffJsonReader.createParser(inputStream)) {
+            return parseData(parser);
+        }
+    }
+
+    static DiffData2 parseData(JsonParser parser) throws IOException {
+        DiffHandler handler = new DiffHandler();
+        DiffJsonReader.read(parser, handler);
+        return handler.getDiffData();
+    }
+
+    /**
+     * Reads a binary diff, written by {@link DiffCodec}.
+     */
+    static DiffData2 decode(InputStream inputStream) throws IOException {
+        DiffHandler handler = new DiffHandler();
+        DiffCodec.decode(inputStream, handler);
+        return handler.getDiffData();
+    }
+
+    private static final class DiffHandler implements DiffCodec.Handler {
+
+        //fields of a line, in the order expected by the LineDiffData constructor
+        private static final String[] LINE_FIELDS = {
+            "branch.terminal1.p-delta", "branch.terminal1.q-delta", "branch.terminal1.i-delta",
+            "branch.terminal2.p-delta", "branch.terminal2.q-delta", "branch.terminal2.i-delta",
+            "branch.terminal1.p-delta-percent", "branch.terminal1.q-delta-percent", "branch.terminal1.i-delta-percent",
+            "branch.terminal2.p-delta-percent", "branch.terminal2.q-delta-percent", "branch.terminal2.i-delta-percent"
+        };
+        private static final int FIRST_PERCENT_FIELD = 6;
+        private static final Map<String, Integer> LINE_FIELDS_INDEXES = new HashMap<>();
+
+        static {
+            for (int i = 0; i < LINE_FIELDS.length; i++) {
+                LINE_FIELDS_INDEXES.put(LINE_FIELDS[i], i);
+            }
+        }
+
+        private final List<String> switchesDiff = new ArrayList<>();
+        private final List<String> branchesDiff = new ArrayList<>();
+        private final List<LineDiffData> linesDiffData = new ArrayList<>();
+        private final Map<String, VlDiffData> vlDiffData = new HashMap<>();
+
+        private String vlId;
+        private String minVDelta;
+        private String maxVDelta;
+        private String minVDeltaPerc;
+        private String maxVDeltaPerc;
+
+        private String lineId;
+        private final String[] lineValues = new String[LINE_FIELDS.length];
+
+        //the text of a binary diff value, as written in the JSON format
+        private static String toText(double value) {
+            if (Double.isNaN(value)) {
+                return "Nan";
+            } else if (Double.isInfinite(value)) {
+                return value > 0 ? "Infinity" : "-Infinity";
+            }
+            return Double.toString(value);
+        }
+
+        private DiffData2 getDiffData() {
+            return new DiffData2(switchesDiff, branchesDiff, linesDiffData, vlDiffData);
+        }
+
+        @Override
+        public void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            switch (fieldName) {
+                case DiffJsonReader.VL_SWITCHES_STATUS_DELTA:
+                    DiffJsonReader.readStrings(parser, switchesDiff::add);
+                    break;
+                case DiffJsonReader.VL_ID:
+                    vlId = Utils.formatNum(DiffJsonReader.readText(parser));
+                    break;
+                case DiffJsonReader.VL_MIN_V_DELTA:
+                case DiffJsonReader.VL_MAX_V_DELTA:
+                case DiffJsonReader.VL_MIN_V_DELTA_PERCENT:
+                case DiffJsonReader.VL_MAX_V_DELTA_PERCENT:
+                    setVoltageLevelValue(fieldName, DiffJsonReader.readText(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        private void setVoltageLevelValue(String fieldName, String value) {
+            switch (fieldName) {
+                case DiffJsonReader.VL_MIN_V_DELTA:
+                    minVDelta = Utils.formatNum(value);
+                    break;
+                case DiffJsonReader.VL_MAX_V_DELTA:
+                    maxVDelta = Utils.formatNum(value);
+                    break;
+                case DiffJsonReader.VL_MIN_V_DELTA_PERCENT:
+                    minVDeltaPerc = Utils.formatPerc(value);
+                    break;
+                case DiffJsonReader.VL_MAX_V_DELTA_PERCENT:
+                    maxVDeltaPerc = Utils.formatPerc(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void voltageLevel(String id) {
+            vlId = Utils.formatNum(id);
+        }
+
+        @Override
+        public void voltageLevelValue(String fieldName, double value) {
+            setVoltageLevelValue(fieldName, toText(value));
+        }
+
+        @Override
+        public void switchStatus(String switchId) {
+            switchesDiff.add(switchId);
+        }
+
+        @Override
+        public void endVoltageLevel() {
+            vlDiffData.put(vlId, new VlDiffData(vlId, minVDelta, maxVDelta, minVDeltaPerc, maxVDeltaPerc));
+            vlId = null;
+            minVDelta = null;
+            maxVDelta = null;
+            minVDeltaPerc = null;
+            maxVDeltaPerc = null;
+        }
+
+        @Override
+        public void branchField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.BRANCH_TERMINAL_STATUS_DELTA.equals(fieldName)) {
+                DiffJsonReader.readStrings(parser, branchesDiff::add);
+            } else if (DiffJsonReader.BRANCH_ID.equals(fieldName)) {
+                lineId = Utils.formatNum(DiffJsonReader.readText(parser));
+            } else {
+                Integer index = LINE_FIELDS_INDEXES.get(fieldName);
+                if (index != null) {
+                    setLineValue(index, DiffJsonReader.readText(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void setLineValue(int index, String value) {
+            lineValues[index] = index < FIRST_PERCENT_FIELD ? Utils.formatNum(value) : Utils.formatPerc(value);
+        }
+
+        @Override
+        public void branch(String id) {
+            lineId = Utils.formatNum(id);
+        }
+
+        @Override
+        public void terminalStatus(String terminalId) {
+            branchesDiff.add(terminalId);
+        }
+
+        @Override
+        public void branchValue(String fieldName, double value) {
+            Integer index = LINE_FIELDS_INDEXES.get(fieldName);
+            if (index != null) {
+                setLineValue(index, toText(value));
+            }
+        }
+
+        @Override
+        public void endBranch() {
+            linesDiffData.add(new LineDiffData(lineId, lineValues[0], lineValues[1], lineValues[2], lineValues[3], lineValues[4], lineValues[5],
+                                               lineValues[6], lineValues[7], lineValues[8], lineValues[9], lineValues[10], lineValues[11]));
+            lineId = null;
+            Arrays.fill(lineValues, null);
+        }
     }
 }
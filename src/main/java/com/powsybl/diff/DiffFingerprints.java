@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * 128 bits content hashes of diff data, levels and stylesheets, used as cache keys.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class DiffFingerprints {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private DiffFingerprints() {
+    }
+
+    //the entries are hashed in any order: a diagram diff sliced out of a larger diff fingerprints as the same diff computed alone
+    static String fingerprint(ColorsLevelsDiffData diffData) {
+        List<HashCode> switches = new ArrayList<>(diffData.getSwitchesDiff().size());
+        for (String switchId : diffData.getSwitchesDiff()) {
+            switches.add(putString(HASH_FUNCTION.newHasher(), switchId).hash());
+        }
+        BusbarsDiffs busbarsDiffs = diffData.getBusbarsDiffs();
+        List<HashCode> busbars = new ArrayList<>(busbarsDiffs.size());
+        for (int index = 0; index < busbarsDiffs.size(); index++) {
+            busbars.add(putString(HASH_FUNCTION.newHasher(), busbarsDiffs.getBusbarId(index))
+                    .putBoolean(busbarsDiffs.hasDelta(index))
+                    .putLong(Double.doubleToLongBits(busbarsDiffs.getDelta(index)))
+                    .putBoolean(busbarsDiffs.hasDeltaP(index))
+                    .putLong(Double.doubleToLongBits(busbarsDiffs.getDeltaP(index)))
+                    .hash());
+        }
+        BranchSidesDiffs branchSidesDiffs = diffData.getBranchesSideDiffs();
+        List<HashCode> branches = new ArrayList<>(branchSidesDiffs.size() / 2);
+        for (int index = 0; index < branchSidesDiffs.size(); index += 2) {
+            Hasher hasher = putString(HASH_FUNCTION.newHasher(), branchSidesDiffs.getBranchId(index));
+            for (int side = index; side < index + 2; side++) {
+                hasher.putLong(Double.doubleToLongBits(branchSidesDiffs.getpDelta(side)))
+                        .putLong(Double.doubleToLongBits(branchSidesDiffs.getqDelta(side)))
+                        .putLong(Double.doubleToLongBits(branchSidesDiffs.getiDelta(side)))
+                        .putLong(Double.doubleToLongBits(branchSidesDiffs.getpDeltaP(side)))
+                        .putLong(Double.doubleToLongBits(branchSidesDiffs.getqDeltaP(side)))
+                        .putLong(Double.doubleToLongBits(branchSidesDiffs.getiDeltaP(side)));
+            }
+            branches.add(hasher.hash());
+        }
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        putUnordered(hasher, switches);
+        putUnordered(hasher, busbars);
+        putUnordered(hasher, branches);
+        return hasher.hash().toString();
+    }
+
+    private static void putUnordered(Hasher hasher, List<HashCode> hashes) {
+        hasher.putInt(hashes.size());
+        if (!hashes.isEmpty()) {
+            hasher.putBytes(Hashing.combineUnordered(hashes).asBytes());
+        }
+    }
+
+    //the diff thresholds, identifying a diff of networks whose modifications are tracked: distinct from any diff data fingerprint
+    static String fingerprint(double epsilon, double voltageEpsilon) {
+        return "thresholds-" + HASH_FUNCTION.newHasher()
+                .putLong(Double.doubleToLongBits(epsilon))
+                .putLong(Double.doubleToLongBits(voltageEpsilon))
+                .hash();
+    }
+
+    static String fingerprint(LevelsData levelsData) {
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        hasher.putInt(levelsData.getLevels().size());
+        for (LevelData level : levelsData.getLevels()) {
+            hasher.putInt(level.getId())
+                    .putLong(Double.doubleToLongBits(level.getI()))
+                    .putLong(Double.doubleToLongBits(level.getV()))
+                    .putBoolean(level.getC() != null);
+            putString(hasher, String.valueOf(level.getC()));
+        }
+        return hasher.hash().toString();
+    }
+
+    //strings are prefixed by their length, so that consecutive strings cannot be confused with others, e.g. "ab", "c" and "a", "bc"
+    private static Hasher putString(Hasher hasher, String value) {
+        return hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+
+    static String fingerprint(CharSequence content) {
+        return HASH_FUNCTION.hashString(content, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.ObjDoubleConsumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+
+/**
+ * Forward-only reader of the network diff JSON format.
+ * The document is walked token by token and each voltage level and branch field is handed to a {@link Handler},
+ * so no intermediate tree is built and the input never has to be fully loaded in memory.
+ *
+ * @author Massimo Ferraro <massimo.ferraro@soft.it>
+ */
+final class DiffJsonReader {
+
+    static final String VOLTAGE_LEVELS = "diff.VoltageLevels";
+    static final String BRANCHES = "diff.Branches";
+
+    static final String VL_ID = "vl.vlId1";
+    static final String VL_SWITCHES_STATUS_DELTA = "vl.switchesStatus-delta";
+    static final String VL_BUSBARS_VOLTAGE_DELTA = "vl.busbarsVoltage-delta";
+    static final String VL_BUSBARS_VOLTAGE_DELTA_PERCENT = "vl.busbarsVoltage-delta-percent";
+    static final String VL_MIN_V_DELTA = "vl.minV-delta";
+    static final String VL_MAX_V_DELTA = "vl.maxV-delta";
+    static final String VL_MIN_V_DELTA_PERCENT = "vl.minV-delta-percent";
+    static final String VL_MAX_V_DELTA_PERCENT = "vl.maxV-delta-percent";
+
+    static final String BRANCH_ID = "branch.branchId1";
+    static final String BRANCH_TERMINAL_STATUS_DELTA = "branch.terminalStatus-delta";
+
+    //NaN and Infinity may be written unquoted by some producers, they are accepted as numbers
+    //sources are owned by the callers, closing a parser must not close them
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS)
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
+    /**
+     * Receives the fields of the voltage levels and branches diffs, in document order.
+     * A field callback must consume the whole value, e.g. with {@link JsonParser#skipChildren()} when it is not needed.
+     */
+    interface Handler {
+
+        default void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            parser.skipChildren();
+        }
+
+        default void endVoltageLevel() {
+        }
+
+        default void branchField(String fieldName, JsonParser parser) throws IOException {
+            parser.skipChildren();
+        }
+
+        default void endBranch() {
+        }
+    }
+
+    @FunctionalInterface
+    private interface FieldReader {
+        void readField(String fieldName, JsonParser parser) throws IOException;
+    }
+
+    private DiffJsonReader() {
+    }
+
+    static JsonParser createParser(String json) throws IOException {
+        return JSON_FACTORY.createParser(Objects.requireNonNull(json));
+    }
+
+    static JsonParser createParser(Reader reader) throws IOException {
+        return JSON_FACTORY.createParser(Objects.requireNonNull(reader));
+    }
+
+    static JsonParser createParser(InputStream inputStream) throws IOException {
+        return JSON_FACTORY.createParser(Objects.requireNonNull(inputStream));
+    }
+
+    static void read(JsonParser parser, Handler handler) throws IOException {
+        Objects.requireNonNull(parser);
+        Objects.requireNonNull(handler);
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Network diff: start of object expected, found " + token);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (VOLTAGE_LEVELS.equals(fieldName)) {
+                readObjects(parser, handler::voltageLevelField, handler::endVoltageLevel);
+            } else if (BRANCHES.equals(fieldName)) {
+                readObjects(parser, handler::branchField, handler::endBranch);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readObjects(JsonParser parser, FieldReader fieldReader, Runnable endObject) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Network diff: array expected, found " + parser.currentToken());
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                fieldReader.readField(fieldName, parser);
+            }
+            endObject.run();
+        }
+    }
+
+    /**
+     * Reads a numeric value; strings (e.g. the "Nan" and "Infinity" placeholders) and nulls are read as NaN.
+     */
+    static double readDouble(JsonParser parser) throws IOException {
+        if (parser.currentToken().isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        parser.skipChildren();
+        return Double.NaN;
+    }
+
+    /**
+     * Reads a scalar value as it is written in the document, null for other values.
+     */
+    static String readText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isScalarValue() && parser.currentToken() != JsonToken.VALUE_NULL) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    static void readStrings(JsonParser parser, Consumer<String> consumer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String value = readText(parser);
+            if (value != null) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    static void readDoubles(JsonParser parser, ObjDoubleConsumer<String> consumer) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+            consumer.accept(key, readDouble(parser));
+        }
+    }
+}
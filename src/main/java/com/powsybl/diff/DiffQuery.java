@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Bus;
+import com.powsybl.iidm.network.BusbarSection;
+import com.powsybl.iidm.network.Country;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * Queries the deltas of a diff, without rendering: the largest deltas of the branches or the busbars, and the number
+ * of branch sides or busbars at each level of a {@link LevelsData}.
+ * <p>
+ * The top K queries keep a bounded heap of K entries, whatever the size of the diff. NaN deltas are ignored.
+ * <p>
+ * The equipments can be filtered by voltage level, substation or country, given the network the diff was computed on:
+ * a branch matches if any of its terminals matches. Queries are immutable, filtering returns a new query.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class DiffQuery {
+
+    public enum Quantity {
+        P,
+        Q,
+        I
+    }
+
+    /**
+     * A delta of a branch side, or of a busbar.
+     */
+    public static final class Entry {
+
+        private final String id;
+        private final Branch.Side side;
+        private final double delta;
+
+        private Entry(String id, Branch.Side side, double delta) {
+            this.id = id;
+            this.side = side;
+            this.delta = delta;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the branch side, null for a busbar
+         */
+        public Branch.Side getSide() {
+            return side;
+        }
+
+        public double getDelta() {
+            return delta;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "id=" + id +
+                    (side != null ? ", side=" + side : "") +
+                    ", delta=" + delta +
+                    '}';
+        }
+    }
+
+    private static final Comparator<Entry> BY_ABS_DELTA = Comparator.<Entry>comparingDouble(entry -> Math.abs(entry.delta))
+            .thenComparing(Entry::getId, Comparator.reverseOrder());
+
+    private final ColorsLevelsDiffData diffData;
+    private final Network network;
+    private final Predicate<VoltageLevel> filter;
+
+    public DiffQuery(ColorsLevelsDiffData diffData) {
+        this(diffData, null, null);
+    }
+
+    /**
+     * @param network the network the diff was computed on, to filter the equipments
+     */
+    public DiffQuery(ColorsLevelsDiffData diffData, Network network) {
+        this(diffData, Objects.requireNonNull(network), null);
+    }
+
+    private DiffQuery(ColorsLevelsDiffData diffData, Network network, Predicate<VoltageLevel> filter) {
+        this.diffData = Objects.requireNonNull(diffData);
+        this.network = network;
+        this.filter = filter;
+    }
+
+    private DiffQuery and(Predicate<VoltageLevel> predicate) {
+        if (network == null) {
+            throw new PowsyblException("Filtering a diff query requires the network of the diff");
+        }
+        return new DiffQuery(diffData, network, filter != null ? filter.and(predicate) : predicate);
+    }
+
+    public DiffQuery inVoltageLevels(Collection<String> vlIds) {
+        Set<String> ids = new HashSet<>(vlIds);
+        return and(voltageLevel -> ids.contains(voltageLevel.getId()));
+    }
+
+    public DiffQuery inSubstations(Collection<String> substationIds) {
+        Set<String> ids = new HashSet<>(substationIds);
+        return and(voltageLevel -> ids.contains(voltageLevel.getSubstation().getId()));
+    }
+
+    public DiffQuery inCountries(Collection<Country> countries) {
+        Set<Country> set = new HashSet<>(countries);
+        return and(voltageLevel -> voltageLevel.getSubstation().getCountry().map(set::contains).orElse(false));
+    }
+
+    private boolean matchesBranch(String branchId) {
+        if (filter == null) {
+            return true;
+        }
+        Branch<?> branch = network.getBranch(branchId);
+        return branch != null && (filter.test(branch.getTerminal1().getVoltageLevel()) || filter.test(branch.getTerminal2().getVoltageLevel()));
+    }
+
+    private boolean matchesBusbar(String busbarId) {
+        if (filter == null) {
+            return true;
+        }
+        BusbarSection busbarSection = network.getBusbarSection(busbarId);
+        if (busbarSection != null) {
+            return filter.test(busbarSection.getTerminal().getVoltageLevel());
+        }
+        Bus bus = network.getBusBreakerView().getBus(busbarId);
+        return bus != null && filter.test(bus.getVoltageLevel());
+    }
+
+    private static double getDelta(BranchSidesDiffs branchesSideDiffs, int index, Quantity quantity, boolean percentage) {
+        switch (quantity) {
+            case P:
+                return branchesSideDiffs.getpDelta(index, percentage);
+            case Q:
+                return branchesSideDiffs.getqDelta(index, percentage);
+            case I:
+                return branchesSideDiffs.getiDelta(index, percentage);
+            default:
+                throw new AssertionError("Unexpected quantity " + quantity);
+        }
+    }
+
+    //keeps the k largest entries in a min heap
+    private static void offer(PriorityQueue<Entry> heap, int k, Entry entry) {
+        if (heap.size() < k) {
+            heap.add(entry);
+        } else if (BY_ABS_DELTA.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    private static List<Entry> sorted(PriorityQueue<Entry> heap) {
+        List<Entry> entries = new ArrayList<>(heap);
+        entries.sort(BY_ABS_DELTA.reversed());
+        return entries;
+    }
+
+    private static void checkK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid number of entries: " + k);
+        }
+    }
+
+    /**
+     * @return the k branches with the largest absolute delta of the quantity, on either side, largest first
+     */
+    public List<Entry> topBranches(int k, Quantity quantity, boolean percentage) {
+        checkK(k);
+        Objects.requireNonNull(quantity);
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        PriorityQueue<Entry> heap = new PriorityQueue<>(k, BY_ABS_DELTA);
+        //sides of a branch are stored next to each other
+        for (int index = 0; index < branchesSideDiffs.size(); index += 2) {
+            String branchId = branchesSideDiffs.getBranchId(index);
+            double delta1 = getDelta(branchesSideDiffs, index, quantity, percentage);
+            double delta2 = getDelta(branchesSideDiffs, index + 1, quantity, percentage);
+            boolean side2 = Double.isNaN(delta1) || Math.abs(delta2) > Math.abs(delta1);
+            double delta = side2 ? delta2 : delta1;
+            if (!Double.isNaN(delta) && matchesBranch(branchId)) {
+                offer(heap, k, new Entry(branchId, side2 ? Branch.Side.TWO : Branch.Side.ONE, delta));
+            }
+        }
+        return sorted(heap);
+    }
+
+    /**
+     * @return the k busbars with the largest absolute voltage delta, largest first
+     */
+    public List<Entry> topBusbars(int k, boolean percentage) {
+        checkK(k);
+        BusbarsDiffs busbarsDiffs = diffData.getBusbarsDiffs();
+        PriorityQueue<Entry> heap = new PriorityQueue<>(k, BY_ABS_DELTA);
+        for (int index = 0; index < busbarsDiffs.size(); index++) {
+            if (busbarsDiffs.hasDelta(index, percentage)) {
+                double delta = busbarsDiffs.getDelta(index, percentage);
+                String busbarId = busbarsDiffs.getBusbarId(index);
+                if (!Double.isNaN(delta) && matchesBusbar(busbarId)) {
+                    offer(heap, k, new Entry(busbarId, null, delta));
+                }
+            }
+        }
+        return sorted(heap);
+    }
+
+    private static Map<String, Integer> levelsIds(LevelsData levelsData) {
+        Map<String, Integer> levelsIds = new HashMap<>();
+        levelsIds.put(MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX, 0);
+        for (LevelData level : levelsData.getLevels()) {
+            levelsIds.put(LevelsClassifier.suffix(level), level.getId());
+        }
+        return levelsIds;
+    }
+
+    private static Map<Integer, Integer> emptyCounts(Map<String, Integer> levelsIds) {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        levelsIds.values().forEach(id -> counts.put(id, 0));
+        return counts;
+    }
+
+    /**
+     * @return the number of branch sides at each current level, by level id; level 0 is below all the thresholds
+     */
+    public Map<Integer, Integer> countBranchSidesByLevel(LevelsData levelsData, boolean percentage) {
+        LevelsClassifier classifier = CompiledLevels.of(levelsData).getCurrentLevels();
+        Map<String, Integer> levelsIds = levelsIds(levelsData);
+        Map<Integer, Integer> counts = emptyCounts(levelsIds);
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        for (int index = 0; index < branchesSideDiffs.size(); index++) {
+            if (matchesBranch(branchesSideDiffs.getBranchId(index))) {
+                counts.merge(levelsIds.get(classifier.classify(branchesSideDiffs.getiDelta(index, percentage))), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of busbars at each voltage level, by level id; level 0 is below all the thresholds
+     */
+    public Map<Integer, Integer> countBusbarsByLevel(LevelsData levelsData, boolean percentage) {
+        LevelsClassifier classifier = CompiledLevels.of(levelsData).getVoltageLevels();
+        Map<String, Integer> levelsIds = levelsIds(levelsData);
+        Map<Integer, Integer> counts = emptyCounts(levelsIds);
+        BusbarsDiffs busbarsDiffs = diffData.getBusbarsDiffs();
+        for (int index = 0; index < busbarsDiffs.size(); index++) {
+            if (busbarsDiffs.hasDelta(index, percentage) && matchesBusbar(busbarsDiffs.getBusbarId(index))) {
+                counts.merge(levelsIds.get(classifier.classify(busbarsDiffs.getDelta(index, percentage))), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+}
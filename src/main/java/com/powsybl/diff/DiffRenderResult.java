@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Optional;
+
+/**
+ * The artifacts of a diff diagram rendering: only the ones requested by the {@link RenderOptions} are present.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class DiffRenderResult {
+
+    private final String svg;
+    private final String metadata;
+    private final String graphJson;
+    private final LevelsStylesheet stylesheet;
+
+    DiffRenderResult(String svg, String metadata, String graphJson) {
+        this(svg, metadata, graphJson, null);
+    }
+
+    DiffRenderResult(String svg, String metadata, String graphJson, LevelsStylesheet stylesheet) {
+        this.svg = svg;
+        this.metadata = metadata;
+        this.graphJson = graphJson;
+        this.stylesheet = stylesheet;
+    }
+
+    public Optional<String> getSvg() {
+        return Optional.ofNullable(svg);
+    }
+
+    /**
+     * @return the JSON metadata of the SVG
+     */
+    public Optional<String> getMetadata() {
+        return Optional.ofNullable(metadata);
+    }
+
+    /**
+     * @return the JSON of the laid out diagram graph
+     */
+    public Optional<String> getGraphJson() {
+        return Optional.ofNullable(graphJson);
+    }
+
+    /**
+     * @return the levels stylesheet imported by the SVG, when rendered with an external stylesheet
+     */
+    public Optional<LevelsStylesheet> getStylesheet() {
+        return Optional.ofNullable(stylesheet);
+    }
+}
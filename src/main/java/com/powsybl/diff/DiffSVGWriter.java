@@ -6,6 +6,7 @@
  */
 package com.powsybl.diff;
 
+import static com.powsybl.sld.layout.LayoutParameters.CssLocation.EXTERNAL_NO_IMPORT;
 import static com.powsybl.sld.layout.LayoutParameters.CssLocation.INSERTED_IN_SVG;
 import static com.powsybl.sld.library.ComponentTypeName.ARROW;
 import static com.powsybl.sld.svg.DiagramStyles.ARROW_ACTIVE_CLASS;
@@ -21,6 +22,7 @@ import java.util.Set;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import com.powsybl.sld.layout.LayoutParameters;
 import com.powsybl.sld.library.ComponentLibrary;
@@ -41,28 +43,39 @@ public class DiffSVGWriter extends DefaultSVGWriter {
     protected final ExtendedDiagramStyleProvider styleProvider;
     protected final boolean showPower;
     protected final boolean showCurrent;
+    protected final String stylesheetUrl;
 
     public DiffSVGWriter(ComponentLibrary componentLibrary, LayoutParameters layoutParameters, ExtendedDiagramStyleProvider styleProvider,
                          boolean showPower, boolean showCurrent) {
+        this(componentLibrary, layoutParameters, styleProvider, showPower, showCurrent, null);
+    }
+
+    /**
+     * @param stylesheetUrl the URL of the stylesheet of the style provider, imported by the SVG instead of inlining its CSS;
+     *                      if null, the CSS is inlined
+     */
+    public DiffSVGWriter(ComponentLibrary componentLibrary, LayoutParameters layoutParameters, ExtendedDiagramStyleProvider styleProvider,
+                         boolean showPower, boolean showCurrent, String stylesheetUrl) {
         super(componentLibrary, layoutParameters);
         this.styleProvider = Objects.requireNonNull(styleProvider);
         this.showPower = showPower;
         this.showCurrent = showCurrent;
+        this.stylesheetUrl = stylesheetUrl;
     }
 
     @Override
     protected void insertArrowsAndLabels(String prefixId, String wireId, List<Double> points, Element root, FeederNode feederNode,
                                          GraphMetadata metadata, DiagramLabelProvider initProvider, boolean feederArrowSymmetry) {
         if (showPower) {
+            //the arrows of this feeder are appended to root: only the nodes added by the super call need to be restyled
+            Node lastChild = root.getLastChild();
             super.insertArrowsAndLabels(prefixId, wireId, points, root, feederNode, metadata, initProvider, feederArrowSymmetry);
-            //replace arrows css classes with the ones returned by the style provider
-            for (int i = 0; i < root.getElementsByTagName(GROUP).getLength(); i++) {
-                Node gNode = root.getElementsByTagName(GROUP).item(i);
-                if (gNode instanceof Element) {
-                    List<String> classesList = Arrays.asList(((Element) gNode).getAttribute(CLASS).split(" "));
-                    Collections.replaceAll(classesList, ARROW_ACTIVE_CLASS, styleProvider.getArrowsActiveStyle(feederNode, componentLibrary));
-                    Collections.replaceAll(classesList, ARROW_REACTIVE_CLASS, styleProvider.getArrowsReactiveStyle(feederNode, componentLibrary));
-                    ((Element) gNode).setAttribute(CLASS, String.join(" ", classesList));
+            String activeStyle = styleProvider.getArrowsActiveStyle(feederNode, componentLibrary);
+            String reactiveStyle = styleProvider.getArrowsReactiveStyle(feederNode, componentLibrary);
+            Node node = lastChild != null ? lastChild.getNextSibling() : root.getFirstChild();
+            for (; node != null; node = node.getNextSibling()) {
+                if (node instanceof Element) {
+                    replaceArrowsClasses((Element) node, activeStyle, reactiveStyle);
                 }
             }
         }
@@ -71,6 +84,24 @@ public class DiffSVGWriter extends DefaultSVGWriter {
         }
     }
 
+    //replace arrows css classes with the ones returned by the style provider, in the element and in its descendant groups
+    private static void replaceArrowsClasses(Element element, String activeStyle, String reactiveStyle) {
+        if (GROUP.equals(element.getTagName())) {
+            replaceArrowClasses(element, activeStyle, reactiveStyle);
+        }
+        NodeList groups = element.getElementsByTagName(GROUP);
+        for (int i = 0, length = groups.getLength(); i < length; i++) {
+            replaceArrowClasses((Element) groups.item(i), activeStyle, reactiveStyle);
+        }
+    }
+
+    private static void replaceArrowClasses(Element g, String activeStyle, String reactiveStyle) {
+        List<String> classesList = Arrays.asList(g.getAttribute(CLASS).split(" "));
+        Collections.replaceAll(classesList, ARROW_ACTIVE_CLASS, activeStyle);
+        Collections.replaceAll(classesList, ARROW_REACTIVE_CLASS, reactiveStyle);
+        g.setAttribute(CLASS, String.join(" ", classesList));
+    }
+
     protected void insertCurrentLabel(String wireId, List<Double> points, Element root, FeederNode feederNode,
                                       GraphMetadata metadata, DiagramLabelProvider initProvider) {
         InitialValue init = initProvider.getInitialValue(feederNode);
@@ -93,6 +124,14 @@ public class DiffSVGWriter extends DefaultSVGWriter {
     protected void addStyle(Document document, DiagramStyleProvider styleProvider, DiagramLabelProvider labelProvider,
                             List<VoltageLevelGraph> graphs, Set<String> listUsedComponentSVG) {
         super.addStyle(document, styleProvider, labelProvider, graphs, listUsedComponentSVG);
+        if (stylesheetUrl != null) {
+            //the import must precede the other rules of the style element
+            if (layoutParameters.getCssLocation() != EXTERNAL_NO_IMPORT) {
+                Node styleNode = document.getElementsByTagName(STYLE).item(0);
+                styleNode.insertBefore(document.createTextNode("@import url(\"" + stylesheetUrl + "\");\n"), styleNode.getFirstChild());
+            }
+            return;
+        }
         String css = this.styleProvider.getCss();
         if (css == null || css.isEmpty()) {
             return;
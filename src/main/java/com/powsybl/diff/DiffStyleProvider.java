@@ -16,13 +16,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static com.powsybl.sld.svg.DiagramStyles.ARROW_ACTIVE_CLASS;
-import static com.powsybl.sld.svg.DiagramStyles.ARROW_REACTIVE_CLASS;
 import static com.powsybl.sld.svg.DiagramStyles.CONSTANT_COLOR_CLASS;
 
 /**
@@ -37,63 +37,81 @@ public class DiffStyleProvider extends DefaultDiagramStyleProvider implements Ex
     public static final String CHANGED_SUFFIX = "-diff2";
 
     final DiffData diffData;
+    private final Set<String> switchesDiff;
+    private final Set<String> branchesDiff;
+    private final DiagramStyleIndex styleIndex = new DiagramStyleIndex(new ChangesStyler());
 
     public DiffStyleProvider(DiffData diffData) {
         this.diffData = Objects.requireNonNull(diffData);
+        this.switchesDiff = new HashSet<>(diffData.getSwitchesIds());
+        this.branchesDiff = new HashSet<>(diffData.getBranchesIds());
     }
 
     @Override
     public List<String> getSvgNodeStyles(Node node, ComponentLibrary componentLibrary, boolean showInternalNodes) {
         List<String> nodeStyles = super.getSvgNodeStyles(node, componentLibrary, showInternalNodes);
-        //LOGGER.debug("node before: id {} node_type {} componenttype {}, styles {}", node.getId(), node.getType(), node.getComponentType(), nodeStyles);
-        Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + UNCHANGED_SUFFIX);
-
-        if (Node.NodeType.SWITCH.equals(node.getType()) && diffData.getSwitchesIds().contains(node.getId())) {
-            Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS + UNCHANGED_SUFFIX, CONSTANT_COLOR_CLASS + CHANGED_SUFFIX);
-        } else if (ComponentTypeName.TWO_WINDINGS_TRANSFORMER.equals(node.getComponentType())) {
-            List<String> edgesNodesIds = node.getAdjacentEdges().stream()
-                    .map(e -> e.getNodes().stream().map(n -> n.getId())
-                            .filter(nId -> !nId.equals(node.getId()))
-                            .collect(Collectors.toList()))
-                    .flatMap(List::stream)
-                    .collect(Collectors.toList());
-            if (diffData.getBranchesIds().containsAll(edgesNodesIds) || diffData.getBranchesIds().contains(node.getId())) {
-                Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS + UNCHANGED_SUFFIX, CONSTANT_COLOR_CLASS + CHANGED_SUFFIX);
-            }
-        }
-
-        //LOGGER.debug("node after: id {} node_type {} componenttype {}, styles {}", node.getId(), node.getType(), node.getComponentType(), nodeStyles);
+        Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS, styleIndex.getNodeClass(node));
         return nodeStyles;
     }
 
     @Override
     public List<String> getSvgWireStyles(Edge edge, boolean highlightLineState) {
         List<String> style = super.getSvgWireStyles(edge, highlightLineState);
-        //LOGGER.debug("edge before: Id1='{}', id2='{}', styles= '{}'", edge.getNode1().getId(), edge.getNode2().getId(), style);
-        Node node1 = edge.getNode1();
-        Node node2 = edge.getNode2();
-        if (diffData.getBranchesIds().contains(node1.getId()) || diffData.getBranchesIds().contains(node2.getId())) {
-            Collections.replaceAll(style, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + CHANGED_SUFFIX);
-        } else {
-            Collections.replaceAll(style, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + UNCHANGED_SUFFIX);
-        }
-        //LOGGER.debug("edge after:  Id1='{}', id2='{}', styles= '{}'", edge.getNode1().getId(), edge.getNode2().getId(), style);
+        Collections.replaceAll(style, CONSTANT_COLOR_CLASS, styleIndex.getWireClass(edge));
         return style;
     }
 
+    private final class ChangesStyler implements DiagramStyleIndex.Styler {
+
+        @Override
+        public String getNodeSuffix(Node node) {
+            if (Node.NodeType.SWITCH.equals(node.getType())) {
+                return switchesDiff.contains(node.getId()) ? CHANGED_SUFFIX : UNCHANGED_SUFFIX;
+            } else if (ComponentTypeName.TWO_WINDINGS_TRANSFORMER.equals(node.getComponentType())) {
+                if (branchesDiff.contains(node.getId())) {
+                    return CHANGED_SUFFIX;
+                }
+                //changed when all the adjacent nodes are changed
+                for (Edge edge : node.getAdjacentEdges()) {
+                    for (Node adjacentNode : edge.getNodes()) {
+                        if (!adjacentNode.getId().equals(node.getId()) && !branchesDiff.contains(adjacentNode.getId())) {
+                            return UNCHANGED_SUFFIX;
+                        }
+                    }
+                }
+                return CHANGED_SUFFIX;
+            }
+            return UNCHANGED_SUFFIX;
+        }
+
+        @Override
+        public String getWireSuffix(Edge edge) {
+            return branchesDiff.contains(edge.getNode1().getId()) || branchesDiff.contains(edge.getNode2().getId())
+                    ? CHANGED_SUFFIX : UNCHANGED_SUFFIX;
+        }
+
+        @Override
+        public String getArrowActiveSuffix(FeederNode feederNode) {
+            return branchesDiff.contains(feederNode.getId()) ? CHANGED_SUFFIX : UNCHANGED_SUFFIX;
+        }
+
+        @Override
+        public String getArrowReactiveSuffix(FeederNode feederNode) {
+            return getArrowActiveSuffix(feederNode);
+        }
+    }
+
     @Override
     public List<String> getCssFilenames() {
         return Stream.concat(super.getCssFilenames().stream(), Stream.of("diffs.css")).collect(Collectors.toList());
     }
 
     public String getArrowsActiveStyle(FeederNode feederNode, ComponentLibrary componentLibrary) {
-        String diffSuffix = diffData.getBranchesIds().contains(feederNode.getId()) ? CHANGED_SUFFIX : UNCHANGED_SUFFIX;
-        return ARROW_ACTIVE_CLASS + diffSuffix;
+        return styleIndex.getArrowActiveClass(feederNode);
     }
 
     public String getArrowsReactiveStyle(FeederNode feederNode, ComponentLibrary componentLibrary) {
-        String diffSuffix = diffData.getBranchesIds().contains(feederNode.getId()) ? CHANGED_SUFFIX : UNCHANGED_SUFFIX;
-        return ARROW_REACTIVE_CLASS + diffSuffix;
+        return styleIndex.getArrowReactiveClass(feederNode);
     }
 
 }
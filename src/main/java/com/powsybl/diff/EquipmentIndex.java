@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Interns equipment ids into dense indexes (0, 1, 2, ...), in insertion order.
+ * Ids are kept in an open addressing table of primitive arrays: no entry object and no boxed index per id.
+ *
+ * @author Massimo Ferraro <massimo.ferraro@soft.it>
+ */
+final class EquipmentIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    //table of index + 1, 0 marks an empty slot; its length is a power of two
+    private int[] table = new int[2 * INITIAL_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    String getId(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    /**
+     * @return the index of the id, -1 if the id is not indexed
+     */
+    int indexOf(String id) {
+        int hash = hash(id);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (hashes[index] == hash && ids[index].equals(id)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the id, a new index if the id was not indexed yet
+     */
+    int add(String id) {
+        Objects.requireNonNull(id);
+        int hash = hash(id);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (hashes[index] == hash && ids[index].equals(id)) {
+                return index;
+            }
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+            hashes = Arrays.copyOf(hashes, 2 * size);
+        }
+        int index = size++;
+        ids[index] = id;
+        hashes[index] = hash;
+        table[slot] = index + 1;
+        if (2 * size > table.length) {
+            rehash();
+        }
+        return index;
+    }
+
+    private void rehash() {
+        table = new int[2 * table.length];
+        int mask = table.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hashes[index] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
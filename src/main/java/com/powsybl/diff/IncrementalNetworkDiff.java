@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Bus;
+import com.powsybl.iidm.network.Connectable;
+import com.powsybl.iidm.network.Identifiable;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.NetworkListener;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.Switch;
+import com.powsybl.iidm.network.Terminal;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * The diff of a whole pair of networks, kept up to date while the networks are modified in place.
+ * <p>
+ * A listener is attached to both networks and records the voltage levels and the branches touched by each update:
+ * switches, terminals flows, buses voltages and nominal voltages. Before the diff is read, only the touched scope is
+ * diffed again and patched into the retained diff. Creating or removing equipments, or switching, overwriting or removing
+ * the working variants, triggers a whole diff.
+ * <p>
+ * The diff and the networks updates must not overlap: the networks are read while they are diffed.
+ * The listeners are detached when the diff is closed.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class IncrementalNetworkDiff implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalNetworkDiff.class);
+
+    private static final int SIDE_VALUES = 6;
+
+    private final NetworkDiffRenderer renderer;
+    private final Network network1;
+    private final Network network2;
+    private final double epsilon;
+    private final double voltageEpsilon;
+    private final NetworkListener listener = new ChangesListener();
+
+    //retained diff: switches and busbars by voltage level, both sides values by branch; equipments without diff are not kept
+    private final Map<String, ColorsLevelsDiffData> voltageLevelsDiffs = new HashMap<>();
+    private final Map<String, double[]> branchesDiffs = new HashMap<>();
+    private String variantId1;
+    private String variantId2;
+
+    //touched since the last update
+    private final Set<String> touchedVoltageLevels = new HashSet<>();
+    private final Set<String> touchedBranches = new HashSet<>();
+    private boolean touchedAll;
+
+    public IncrementalNetworkDiff(NetworkDiffRenderer renderer, double epsilon, double voltageEpsilon) {
+        this.renderer = Objects.requireNonNull(renderer);
+        this.network1 = renderer.getNetwork1();
+        this.network2 = renderer.getNetwork2();
+        this.epsilon = epsilon;
+        this.voltageEpsilon = voltageEpsilon;
+        diffAll();
+        network1.addListener(listener);
+        if (network2 != network1) {
+            network2.addListener(listener);
+        }
+    }
+
+    public NetworkDiffRenderer getRenderer() {
+        return renderer;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getVoltageEpsilon() {
+        return voltageEpsilon;
+    }
+
+    private final class ChangesListener implements NetworkListener {
+
+        @Override
+        public void onCreation(Identifiable identifiable) {
+            touchAll();
+        }
+
+        @Override
+        public void onRemoval(Identifiable identifiable) {
+            touchAll();
+        }
+
+        @Override
+        public void onUpdate(Identifiable identifiable, String attribute, Object oldValue, Object newValue) {
+            touch(identifiable);
+        }
+
+        @Override
+        public void onUpdate(Identifiable identifiable, String attribute, String variantId, Object oldValue, Object newValue) {
+            touch(identifiable);
+        }
+
+        @Override
+        public void onVariantOverwritten(String sourceVariantId, String targetVariantId) {
+            touchAll();
+        }
+
+        @Override
+        public void onVariantRemoved(String variantId) {
+            touchAll();
+        }
+    }
+
+    private synchronized void touchAll() {
+        touchedAll = true;
+    }
+
+    //the other identifiables (network, substations, HVDC lines...) have no attribute in the diff
+    private synchronized void touch(Identifiable<?> identifiable) {
+        if (identifiable instanceof Switch) {
+            touchedVoltageLevels.add(((Switch) identifiable).getVoltageLevel().getId());
+        } else if (identifiable instanceof Bus) {
+            touchedVoltageLevels.add(((Bus) identifiable).getVoltageLevel().getId());
+        } else if (identifiable instanceof VoltageLevel) {
+            touchedVoltageLevels.add(identifiable.getId());
+        } else if (identifiable instanceof Connectable) {
+            if (identifiable instanceof Branch) {
+                touchedBranches.add(identifiable.getId());
+            }
+            for (Terminal terminal : ((Connectable<?>) identifiable).getTerminals()) {
+                touchedVoltageLevels.add(terminal.getVoltageLevel().getId());
+            }
+        }
+    }
+
+    /**
+     * Diffs again the voltage levels and the branches touched since the last update, and patches the retained diff.
+     *
+     * @return false if nothing was touched
+     */
+    public synchronized boolean update() {
+        if (touchedAll || !network1.getVariantManager().getWorkingVariantId().equals(variantId1)
+                || !network2.getVariantManager().getWorkingVariantId().equals(variantId2)) {
+            diffAll();
+            return true;
+        }
+        if (touchedVoltageLevels.isEmpty() && touchedBranches.isEmpty()) {
+            return false;
+        }
+        List<String> voltageLevels = new ArrayList<>(touchedVoltageLevels);
+        List<String> branches = new ArrayList<>(touchedBranches);
+        LOGGER.debug("Diffing {} touched voltage levels and {} touched branches", voltageLevels.size(), branches.size());
+        voltageLevels.forEach(voltageLevelsDiffs::remove);
+        branches.forEach(branchesDiffs::remove);
+        patch(renderer.diff(voltageLevels, branches, epsilon, voltageEpsilon));
+        touchedVoltageLevels.clear();
+        touchedBranches.clear();
+        return true;
+    }
+
+    private void diffAll() {
+        List<String> voltageLevels = network1.getVoltageLevelStream().map(VoltageLevel::getId).collect(Collectors.toList());
+        List<String> branches = network1.getBranchStream().map(Branch::getId).collect(Collectors.toList());
+        variantId1 = network1.getVariantManager().getWorkingVariantId();
+        variantId2 = network2.getVariantManager().getWorkingVariantId();
+        voltageLevelsDiffs.clear();
+        branchesDiffs.clear();
+        patch(renderer.diff(voltageLevels, branches, epsilon, voltageEpsilon));
+        touchedVoltageLevels.clear();
+        touchedBranches.clear();
+        touchedAll = false;
+    }
+
+    private void patch(NetworkDiffResults diffResults) {
+        PatchHandler handler = new PatchHandler();
+        TokenBuffer tokenBuffer = new TokenBuffer(null, false);
+        try {
+            diffResults.writeJson(tokenBuffer);
+            try (JsonParser parser = tokenBuffer.asParser()) {
+                DiffJsonReader.read(parser, handler);
+            }
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+            throw new PowsyblException(e.getMessage(), e);
+        }
+        BranchSidesDiffs branchSidesDiffs = handler.branchesData.getBranchesSideDiffs();
+        for (int index = 0; index < branchSidesDiffs.size(); index += 2) {
+            double[] values = new double[2 * SIDE_VALUES];
+            getSideValues(branchSidesDiffs, index, values, 0);
+            getSideValues(branchSidesDiffs, index + 1, values, SIDE_VALUES);
+            branchesDiffs.put(branchSidesDiffs.getBranchId(index), values);
+        }
+    }
+
+    private static void getSideValues(BranchSidesDiffs branchSidesDiffs, int index, double[] values, int offset) {
+        values[offset] = branchSidesDiffs.getpDelta(index);
+        values[offset + 1] = branchSidesDiffs.getqDelta(index);
+        values[offset + 2] = branchSidesDiffs.getiDelta(index);
+        values[offset + 3] = branchSidesDiffs.getpDeltaP(index);
+        values[offset + 4] = branchSidesDiffs.getqDeltaP(index);
+        values[offset + 5] = branchSidesDiffs.getiDeltaP(index);
+    }
+
+    //voltage levels are read into their own diff data, branches into a common one
+    private final class PatchHandler implements DiffJsonReader.Handler {
+
+        private final ColorsLevelsDiffData branchesData = new ColorsLevelsDiffData(true);
+        private final DiffJsonReader.Handler branchesHandler = branchesData.createHandler();
+        private ColorsLevelsDiffData vlData = new ColorsLevelsDiffData(true);
+        private DiffJsonReader.Handler vlHandler = vlData.createHandler();
+        private String vlId;
+
+        @Override
+        public void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.VL_ID.equals(fieldName)) {
+                vlId = DiffJsonReader.readText(parser);
+            } else {
+                vlHandler.voltageLevelField(fieldName, parser);
+            }
+        }
+
+        @Override
+        public void endVoltageLevel() {
+            vlHandler.endVoltageLevel();
+            if (vlId != null && (!vlData.getSwitchesDiff().isEmpty() || vlData.getBusbarsDiffs().size() > 0)) {
+                voltageLevelsDiffs.put(vlId, vlData);
+                vlData = new ColorsLevelsDiffData(true);
+                vlHandler = vlData.createHandler();
+            }
+            vlId = null;
+        }
+
+        @Override
+        public void branchField(String fieldName, JsonParser parser) throws IOException {
+            branchesHandler.branchField(fieldName, parser);
+        }
+
+        @Override
+        public void endBranch() {
+            branchesHandler.endBranch();
+        }
+    }
+
+    /**
+     * @return the diff data of the whole networks, up to date
+     */
+    public synchronized ColorsLevelsDiffData getDiffData() {
+        update();
+        ColorsLevelsDiffData diffData = new ColorsLevelsDiffData(true);
+        voltageLevelsDiffs.values().forEach(vlData -> copyVoltageLevel(vlData, diffData));
+        branchesDiffs.keySet().forEach(branchId -> copyBranch(branchId, diffData));
+        return diffData;
+    }
+
+    public synchronized ColorsLevelsDiffData getVoltageLevelDiffData(String vlId) {
+        VoltageLevel voltageLevel = network1.getVoltageLevel(vlId);
+        if (voltageLevel == null) {
+            throw new PowsyblException("Voltage level '" + vlId + "' not found");
+        }
+        update();
+        ColorsLevelsDiffData diffData = new ColorsLevelsDiffData(true);
+        copyVoltageLevel(voltageLevelsDiffs.get(vlId), diffData);
+        NetworkDiffRenderer.getBranches(voltageLevel).forEach(branchId -> copyBranch(branchId, diffData));
+        return diffData;
+    }
+
+    public synchronized ColorsLevelsDiffData getSubstationDiffData(String substationId) {
+        Substation substation = network1.getSubstation(substationId);
+        if (substation == null) {
+            throw new PowsyblException("Substation '" + substationId + "' not found");
+        }
+        update();
+        ColorsLevelsDiffData diffData = new ColorsLevelsDiffData(true);
+        //branches between two voltage levels of the substation are copied once
+        Set<String> branches = new HashSet<>();
+        for (VoltageLevel voltageLevel : substation.getVoltageLevels()) {
+            copyVoltageLevel(voltageLevelsDiffs.get(voltageLevel.getId()), diffData);
+            branches.addAll(NetworkDiffRenderer.getBranches(voltageLevel));
+        }
+        branches.forEach(branchId -> copyBranch(branchId, diffData));
+        return diffData;
+    }
+
+    private static void copyVoltageLevel(ColorsLevelsDiffData vlData, ColorsLevelsDiffData diffData) {
+        if (vlData == null) {
+            return;
+        }
+        diffData.switchesDiff.addAll(vlData.switchesDiff);
+        for (int index = 0; index < vlData.busbarsDiffs.size(); index++) {
+            diffData.busbarsDiffs.copy(vlData.busbarsDiffs, index);
+        }
+    }
+
+    private void copyBranch(String branchId, ColorsLevelsDiffData diffData) {
+        double[] values = branchesDiffs.get(branchId);
+        if (values != null) {
+            double[] side1Values = new double[SIDE_VALUES];
+            double[] side2Values = new double[SIDE_VALUES];
+            System.arraycopy(values, 0, side1Values, 0, SIDE_VALUES);
+            System.arraycopy(values, SIDE_VALUES, side2Values, 0, SIDE_VALUES);
+            diffData.branchesSideDiffs.add(branchId, side1Values, side2Values);
+        }
+    }
+
+    public String getVoltageLevelSvgDiff(String vlId, LevelsData levelsData) {
+        return renderer.writeVoltageLevelSvg(vlId, getVoltageLevelDiffData(vlId), levelsData, false, false);
+    }
+
+    public String getVoltageLevelMergedSvgDiff(String vlId, LevelsData levelsData, boolean showCurrent) {
+        return renderer.writeVoltageLevelSvg(vlId, getVoltageLevelDiffData(vlId), levelsData, true, showCurrent);
+    }
+
+    public String getSubstationSvgDiff(String substationId, LevelsData levelsData) {
+        return renderer.writeSubstationSvg(substationId, getSubstationDiffData(substationId), levelsData, false, false);
+    }
+
+    public String getSubstationMergedSvgDiff(String substationId, LevelsData levelsData, boolean showCurrent) {
+        return renderer.writeSubstationSvg(substationId, getSubstationDiffData(substationId), levelsData, true, showCurrent);
+    }
+
+    @Override
+    public void close() {
+        network1.removeListener(listener);
+        if (network2 != network1) {
+            network2.removeListener(listener);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Classifies deltas into the levels of a {@link LevelsData}, on the current or on the voltage thresholds.
+ * <p>
+ * A delta belongs to the last level of the list whose threshold is lower than its absolute value, or to level 0 if there is none.
+ * The thresholds are sorted once into a primitive array, along with the class suffix of the matching level:
+ * classifying a delta is a binary search, and allocates nothing.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class LevelsClassifier {
+
+    private final double[] thresholds;
+    //suffixes[k]: suffix of the last level in the list, among the levels of the k + 1 lowest thresholds
+    private final String[] suffixes;
+    private final String highestSuffix;
+
+    private LevelsClassifier(List<LevelData> levels, ToDoubleFunction<LevelData> threshold) {
+        Objects.requireNonNull(levels);
+        Integer[] order = new Integer[levels.size()];
+        Arrays.setAll(order, k -> k);
+        Arrays.sort(order, Comparator.comparingDouble(k -> threshold.applyAsDouble(levels.get(k))));
+        thresholds = new double[order.length];
+        suffixes = new String[order.length];
+        int lastIndex = -1;
+        for (int k = 0; k < order.length; k++) {
+            thresholds[k] = threshold.applyAsDouble(levels.get(order[k]));
+            lastIndex = Math.max(lastIndex, order[k]);
+            suffixes[k] = suffix(levels.get(lastIndex));
+        }
+        highestSuffix = levels.isEmpty() ? MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX : suffix(levels.get(levels.size() - 1));
+    }
+
+    static LevelsClassifier ofCurrent(List<LevelData> levels) {
+        return new LevelsClassifier(levels, LevelData::getI);
+    }
+
+    static LevelsClassifier ofVoltage(List<LevelData> levels) {
+        return new LevelsClassifier(levels, LevelData::getV);
+    }
+
+    static String suffix(LevelData level) {
+        return (MultipleColorsLevelsDiffStyleProvider.LEVEL_PREFIX + level.getId()).intern();
+    }
+
+    /**
+     * @return the class suffix of the level of the delta; NaN deltas are at level 0
+     */
+    String classify(double delta) {
+        double value = Math.abs(delta);
+        //number of thresholds strictly lower than the value: none for a NaN value
+        int low = 0;
+        int high = thresholds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (thresholds[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == 0 ? MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX : suffixes[low - 1];
+    }
+
+    /**
+     * @return the class suffix of the last level of the list
+     */
+    String getHighestSuffix() {
+        return highestSuffix;
+    }
+}
@@ -8,6 +8,9 @@ package com.powsybl.diff;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -16,6 +19,8 @@ import lombok.NoArgsConstructor;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -27,25 +32,47 @@ import java.util.List;
 @AllArgsConstructor
 public class LevelsData {
 
+    private static final int PARSED_CACHE_SIZE = 256;
+
+    //readers are immutable and thread safe, they can be shared
+    private static final ObjectReader READER = new ObjectMapper().readerFor(LevelsData.class);
+
+    //clients send the same few levels over and over: parsed levels are cached by raw string, URL encoded or not
+    private static final Cache<String, LevelsData> PARSED_ENCODED = CacheBuilder.newBuilder().maximumSize(PARSED_CACHE_SIZE).build();
+    private static final Cache<String, LevelsData> PARSED = CacheBuilder.newBuilder().maximumSize(PARSED_CACHE_SIZE).build();
+
     List<LevelData> levels;
 
     public static LevelsData parseData(String jsonData) {
         return parseData(jsonData, true);
     }
 
+    /**
+     * Parsed levels are cached and shared by the callers: their list of levels is unmodifiable.
+     */
     public static LevelsData parseData(String jsonData, boolean urlDecode) {
         if (jsonData == null) {
             return null;
         }
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            LevelsData levelsData = objectMapper.readValue(urlDecode ? URLDecoder.decode(jsonData, StandardCharsets.UTF_8.toString()) : jsonData, LevelsData.class);
-            return levelsData;
-        } catch (JsonProcessingException e) {
-            throw new IllegalArgumentException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
+        Cache<String, LevelsData> parsed = urlDecode ? PARSED_ENCODED : PARSED;
+        LevelsData levelsData = parsed.getIfPresent(jsonData);
+        if (levelsData == null) {
+            try {
+                levelsData = READER.readValue(urlDecode ? URLDecoder.decode(jsonData, StandardCharsets.UTF_8.toString()) : jsonData);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            //a JSON null is not cached
+            if (levelsData != null) {
+                if (levelsData.levels != null) {
+                    levelsData.levels = Collections.unmodifiableList(new ArrayList<>(levelsData.levels));
+                }
+                parsed.put(jsonData, levelsData);
+            }
         }
+        return levelsData;
     }
 
     @Override
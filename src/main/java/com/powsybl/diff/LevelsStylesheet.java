@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import static com.powsybl.diff.MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.powsybl.commons.PowsyblException;
+
+/**
+ * The stylesheet of the colors of the levels of a {@link LevelsData}, identified by the hash of its content.
+ * <p>
+ * A stylesheet is generated once per distinct levels and kept in a bounded cache: it can be inlined into the diff SVGs,
+ * or served once under its {@link #getFileName() file name} and referenced from the SVGs, to be cached by browsers and proxies.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class LevelsStylesheet {
+
+    private static final int MAXIMUM_SIZE = 256;
+
+    private static final String FILE_NAME_PREFIX = "diff-levels-";
+    private static final String FILE_NAME_SUFFIX = ".css";
+
+    //stylesheets by levels fingerprint, and by content hash to be served
+    private static final Cache<String, LevelsStylesheet> BY_LEVELS = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+    private static final Cache<String, LevelsStylesheet> BY_HASH = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+    private final String css;
+    private final String hash;
+
+    private LevelsStylesheet(String css) {
+        this.css = css;
+        this.hash = DiffFingerprints.fingerprint(css);
+    }
+
+    public static LevelsStylesheet of(LevelsData levelsData) {
+        Objects.requireNonNull(levelsData);
+        LevelsStylesheet stylesheet;
+        try {
+            stylesheet = BY_LEVELS.get(DiffFingerprints.fingerprint(levelsData), () -> new LevelsStylesheet(createCss(levelsData.getLevels())));
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            throw new PowsyblException(e.getCause().getMessage(), e.getCause());
+        }
+        //the caches evict independently: a stylesheet in use is served again, even if evicted from the served ones;
+        //stylesheets of levels with the same colors but other thresholds are the same content
+        LevelsStylesheet served = BY_HASH.asMap().putIfAbsent(stylesheet.hash, stylesheet);
+        return served != null ? served : stylesheet;
+    }
+
+    //visible for testing
+    static void evictServed(String hash) {
+        BY_HASH.invalidate(hash);
+    }
+
+    /**
+     * @return the stylesheet of the given content hash, if it is still cached
+     */
+    public static Optional<LevelsStylesheet> get(String hash) {
+        return Optional.ofNullable(BY_HASH.getIfPresent(Objects.requireNonNull(hash)));
+    }
+
+    /**
+     * @return the stylesheet of the given file name, if it is still cached
+     */
+    public static Optional<LevelsStylesheet> getByFileName(String fileName) {
+        Objects.requireNonNull(fileName);
+        if (!fileName.startsWith(FILE_NAME_PREFIX) || !fileName.endsWith(FILE_NAME_SUFFIX)) {
+            return Optional.empty();
+        }
+        return get(fileName.substring(FILE_NAME_PREFIX.length(), fileName.length() - FILE_NAME_SUFFIX.length()));
+    }
+
+    public String getCss() {
+        return css;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getFileName() {
+        return FILE_NAME_PREFIX + hash + FILE_NAME_SUFFIX;
+    }
+
+    /**
+     * @param baseUrl the URL the stylesheets are served from
+     */
+    public String getUrl(String baseUrl) {
+        Objects.requireNonNull(baseUrl);
+        return baseUrl.isEmpty() || baseUrl.endsWith("/") ? baseUrl + getFileName() : baseUrl + "/" + getFileName();
+    }
+
+    private static String createCss(List<LevelData> levels) {
+        StringBuilder css = new StringBuilder();
+        appendLevelCss(css, LEVEL_0_SUFFIX, "black");
+        for (LevelData level : levels) {
+            css.append('\n');
+            appendLevelCss(css, LevelsClassifier.suffix(level), level.getC());
+        }
+        return css.toString();
+    }
+
+    private static void appendLevelCss(StringBuilder css, String levelSuffix, String color) {
+        appendRule(css, ".sld-constant-color", levelSuffix, "{stroke: " + color + "; fill: none}");
+        appendRule(css, ".sld-wire.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-line.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-node.sld-constant-color", levelSuffix, "{stroke: none; fill: " + color + "}");
+        appendRule(css, ".sld-busbreaker-connection.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-busbar-section.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-disconnector.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-load.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-load-break-switch.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-generator.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-arrow-p", levelSuffix, "{fill:" + color + "}");
+        appendRule(css, ".sld-arrow-q", levelSuffix, "{fill:" + color + "}");
+        appendRule(css, ".sld-breaker.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+        appendRule(css, ".sld-two-wt.sld-constant-color", levelSuffix, "{stroke: " + color + "}");
+    }
+
+    private static void appendRule(StringBuilder css, String selector, String levelSuffix, String declarations) {
+        css.append(selector).append(levelSuffix).append(' ').append(declarations).append('\n');
+    }
+
+    @Override
+    public String toString() {
+        return "LevelsStylesheet(" + getFileName() + ")";
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Identifiable;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.NetworkListener;
+
+/**
+ * Least recently used cache of network diff results, bounded either by the number of diffs
+ * or by the total number of diffed equipments.
+ * <p>
+ * Networks are identified by their ids: networks sharing a cache must have distinct ids.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class LruDiffCache implements DiffCache {
+
+    private final Cache<DiffCacheKey, NetworkDiffResults> cache;
+
+    //the (network id, variant id) pairs of the cached diffs, counted once per diff
+    private final Multiset<List<String>> cachedVariants = ConcurrentHashMultiset.create();
+
+    //weak identity keys: a watched network is not retained by the cache
+    private final Map<Network, InvalidatingListener> listeners = new MapMaker().weakKeys().makeMap();
+
+    //networks modified since the last get, on all their variants or on some of them
+    private final Set<String> dirtyNetworks = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Set<String>> dirtyVariants = new ConcurrentHashMap<>();
+
+    private LruDiffCache(Function<RemovalListener<DiffCacheKey, NetworkDiffResults>, Cache<DiffCacheKey, NetworkDiffResults>> cacheBuilder) {
+        this.cache = cacheBuilder.apply(this::onEntryRemoval);
+    }
+
+    public static LruDiffCache ofMaximumSize(long maximumSize) {
+        return new LruDiffCache(removalListener -> CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .removalListener(removalListener)
+                .recordStats()
+                .build());
+    }
+
+    /**
+     * @param maximumScope the maximum total number of voltage levels and branches of the cached diffs
+     */
+    public static LruDiffCache ofMaximumScope(long maximumScope) {
+        return new LruDiffCache(removalListener -> CacheBuilder.newBuilder()
+                .maximumWeight(maximumScope)
+                .weigher((DiffCacheKey key, NetworkDiffResults results) -> key.getScopeSize())
+                .removalListener(removalListener)
+                .recordStats()
+                .build());
+    }
+
+    private void onEntryRemoval(RemovalNotification<DiffCacheKey, NetworkDiffResults> notification) {
+        DiffCacheKey key = notification.getKey();
+        cachedVariants.remove(Arrays.asList(key.getNetworkId1(), key.getVariantId1()));
+        cachedVariants.remove(Arrays.asList(key.getNetworkId2(), key.getVariantId2()));
+    }
+
+    @Override
+    public NetworkDiffResults get(DiffCacheKey key, Supplier<NetworkDiffResults> diff) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(diff);
+        invalidateDirty();
+        try {
+            NetworkDiffResults results = cache.get(key, () -> {
+                //the variants are counted before diffing, so that their modifications during the diff are not ignored
+                List<String> variant1 = Arrays.asList(key.getNetworkId1(), key.getVariantId1());
+                List<String> variant2 = Arrays.asList(key.getNetworkId2(), key.getVariantId2());
+                cachedVariants.add(variant1);
+                cachedVariants.add(variant2);
+                try {
+                    return diff.get();
+                } catch (RuntimeException e) {
+                    cachedVariants.remove(variant1);
+                    cachedVariants.remove(variant2);
+                    throw e;
+                }
+            });
+            //a diff computed while its networks were modified is not kept
+            invalidateDirty();
+            return results;
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PowsyblException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void invalidate(String networkId) {
+        Objects.requireNonNull(networkId);
+        cache.asMap().keySet().removeIf(key -> key.involves(networkId));
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private void invalidateDirty() {
+        for (Iterator<String> it = dirtyNetworks.iterator(); it.hasNext();) {
+            String networkId = it.next();
+            it.remove();
+            invalidate(networkId);
+        }
+        for (String networkId : dirtyVariants.keySet()) {
+            Set<String> variantIds = dirtyVariants.remove(networkId);
+            if (variantIds != null) {
+                cache.asMap().keySet().removeIf(key -> variantIds.stream().anyMatch(variantId -> key.involves(networkId, variantId)));
+            }
+        }
+    }
+
+    private void markDirty(String networkId, String variantId) {
+        if (variantId == null) {
+            dirtyNetworks.add(networkId);
+            return;
+        }
+        //the updates of the variants not cached are ignored
+        if (cachedVariants.contains(Arrays.asList(networkId, variantId))) {
+            dirtyVariants.computeIfAbsent(networkId, id -> ConcurrentHashMap.newKeySet()).add(variantId);
+        }
+    }
+
+    /**
+     * Invalidates the diffs involving the network whenever it is modified: the network is only marked as modified,
+     * its diffs are discarded on the next {@link #get}. Watching a network already watched has no effect.
+     *
+     * @throws PowsyblException if another network with the same id is already watched
+     */
+    public synchronized void watch(Network network) {
+        Objects.requireNonNull(network);
+        if (listeners.containsKey(network)) {
+            return;
+        }
+        if (listeners.values().stream().anyMatch(listener -> listener.networkId.equals(network.getId()))) {
+            throw new PowsyblException("Another network with id '" + network.getId() + "' is already watched");
+        }
+        InvalidatingListener listener = new InvalidatingListener(network.getId());
+        network.addListener(listener);
+        listeners.put(network, listener);
+    }
+
+    /**
+     * Stops invalidating the diffs involving the network when it is modified.
+     */
+    public synchronized void unwatch(Network network) {
+        Objects.requireNonNull(network);
+        InvalidatingListener listener = listeners.remove(network);
+        if (listener != null) {
+            network.removeListener(listener);
+        }
+    }
+
+    private final class InvalidatingListener implements NetworkListener {
+
+        private final String networkId;
+
+        private InvalidatingListener(String networkId) {
+            this.networkId = networkId;
+        }
+
+        @Override
+        public void onCreation(Identifiable identifiable) {
+            dirtyNetworks.add(networkId);
+        }
+
+        @Override
+        public void onRemoval(Identifiable identifiable) {
+            dirtyNetworks.add(networkId);
+        }
+
+        @Override
+        public void onUpdate(Identifiable identifiable, String attribute, Object oldValue, Object newValue) {
+            dirtyNetworks.add(networkId);
+        }
+
+        @Override
+        public void onUpdate(Identifiable identifiable, String attribute, String variantId, Object oldValue, Object newValue) {
+            markDirty(networkId, variantId);
+        }
+
+        @Override
+        public void onVariantOverwritten(String sourceVariantId, String targetVariantId) {
+            markDirty(networkId, targetVariantId);
+        }
+
+        @Override
+        public void onVariantRemoved(String variantId) {
+            markDirty(networkId, variantId);
+        }
+    }
+}
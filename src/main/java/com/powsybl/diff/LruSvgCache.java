@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Bus;
+import com.powsybl.iidm.network.Connectable;
+import com.powsybl.iidm.network.Identifiable;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.NetworkListener;
+import com.powsybl.iidm.network.Switch;
+import com.powsybl.iidm.network.Terminal;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * Least recently used cache of rendered diff SVGs, bounded by the total size of the cached SVGs in bytes.
+ * <p>
+ * Networks are identified by their ids: networks sharing a cache must have distinct ids.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class LruSvgCache implements SvgCache {
+
+    private final Cache<SvgCacheKey, byte[]> cache;
+
+    //the (network id, variant id) pairs of the cached SVGs, counted once per SVG
+    private final Multiset<List<String>> cachedVariants = ConcurrentHashMultiset.create();
+
+    //weak identity keys: a watched network is not retained by the cache
+    private final Map<Network, InvalidatingListener> listeners = new MapMaker().weakKeys().makeMap();
+
+    //networks modified since the last get: wholly, or only in some voltage levels and substations
+    private final Set<String> dirtyNetworks = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Set<String>> dirtyVoltageLevels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> dirtySubstations = new ConcurrentHashMap<>();
+
+    private LruSvgCache(Function<RemovalListener<SvgCacheKey, byte[]>, Cache<SvgCacheKey, byte[]>> cacheBuilder) {
+        this.cache = cacheBuilder.apply(this::onEntryRemoval);
+    }
+
+    public static LruSvgCache ofMaximumBytes(long maximumBytes) {
+        return new LruSvgCache(removalListener -> CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((SvgCacheKey key, byte[] svg) -> svg.length)
+                .removalListener(removalListener)
+                .recordStats()
+                .build());
+    }
+
+    private void onEntryRemoval(RemovalNotification<SvgCacheKey, byte[]> notification) {
+        SvgCacheKey key = notification.getKey();
+        cachedVariants.remove(Arrays.asList(key.getNetworkId1(), key.getVariantId1()));
+        cachedVariants.remove(Arrays.asList(key.getNetworkId2(), key.getVariantId2()));
+    }
+
+    @Override
+    public byte[] get(SvgCacheKey key, Supplier<byte[]> svg) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(svg);
+        invalidateDirty();
+        try {
+            byte[] result = cache.get(key, () -> {
+                //the variants are counted before rendering, so that their modifications during the rendering are not ignored
+                List<String> variant1 = Arrays.asList(key.getNetworkId1(), key.getVariantId1());
+                List<String> variant2 = Arrays.asList(key.getNetworkId2(), key.getVariantId2());
+                cachedVariants.add(variant1);
+                cachedVariants.add(variant2);
+                try {
+                    return svg.get();
+                } catch (RuntimeException e) {
+                    cachedVariants.remove(variant1);
+                    cachedVariants.remove(variant2);
+                    throw e;
+                }
+            });
+            //an SVG rendered while its networks were modified is not kept
+            invalidateDirty();
+            return result;
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PowsyblException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void invalidate(String networkId) {
+        Objects.requireNonNull(networkId);
+        cache.asMap().keySet().removeIf(key -> key.involves(networkId));
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards the SVGs of a voltage level or of a substation, whatever the networks.
+     */
+    public void invalidate(SvgCacheKey.Scope scope, String id) {
+        Objects.requireNonNull(scope);
+        Objects.requireNonNull(id);
+        cache.asMap().keySet().removeIf(key -> key.getScope() == scope && key.getId().equals(id));
+    }
+
+    private void invalidate(String networkId, Set<String> vlIds, Set<String> substationIds) {
+        cache.asMap().keySet().removeIf(key -> key.involves(networkId)
+                && (key.getScope() == SvgCacheKey.Scope.VOLTAGE_LEVEL ? vlIds.contains(key.getId()) : substationIds.contains(key.getId())));
+    }
+
+    private void invalidateDirty() {
+        for (Iterator<String> it = dirtyNetworks.iterator(); it.hasNext();) {
+            String networkId = it.next();
+            it.remove();
+            invalidate(networkId);
+        }
+        if (dirtyVoltageLevels.isEmpty() && dirtySubstations.isEmpty()) {
+            return;
+        }
+        Set<String> networkIds = new HashSet<>(dirtyVoltageLevels.keySet());
+        networkIds.addAll(dirtySubstations.keySet());
+        for (String networkId : networkIds) {
+            Set<String> vlIds = dirtyVoltageLevels.remove(networkId);
+            Set<String> substationIds = dirtySubstations.remove(networkId);
+            invalidate(networkId, vlIds != null ? vlIds : Collections.emptySet(),
+                       substationIds != null ? substationIds : Collections.emptySet());
+        }
+    }
+
+    private void markDirty(String networkId, String variantId, Identifiable<?> identifiable) {
+        //the updates of the variants not cached are ignored
+        if (variantId != null && !cachedVariants.contains(Arrays.asList(networkId, variantId))) {
+            return;
+        }
+        List<VoltageLevel> voltageLevels = getVoltageLevels(identifiable);
+        if (voltageLevels.isEmpty()) {
+            dirtyNetworks.add(networkId);
+            return;
+        }
+        //the substations are marked first: a voltage level marked dirty always has its substation marked too
+        Set<String> substationIds = dirtySubstations.computeIfAbsent(networkId, id -> ConcurrentHashMap.newKeySet());
+        for (VoltageLevel voltageLevel : voltageLevels) {
+            substationIds.add(voltageLevel.getSubstation().getId());
+        }
+        Set<String> vlIds = dirtyVoltageLevels.computeIfAbsent(networkId, id -> ConcurrentHashMap.newKeySet());
+        for (VoltageLevel voltageLevel : voltageLevels) {
+            vlIds.add(voltageLevel.getId());
+        }
+    }
+
+    /**
+     * Invalidates the SVGs involving the network whenever it is modified: when the modified equipment belongs to
+     * voltage levels, only the SVGs of these voltage levels and of their substations are discarded. The voltage levels
+     * and substations are only marked as modified, their SVGs are discarded on the next {@link #get}.
+     * Watching a network already watched has no effect.
+     *
+     * @throws PowsyblException if another network with the same id is already watched
+     */
+    public synchronized void watch(Network network) {
+        Objects.requireNonNull(network);
+        if (listeners.containsKey(network)) {
+            return;
+        }
+        if (listeners.values().stream().anyMatch(listener -> listener.networkId.equals(network.getId()))) {
+            throw new PowsyblException("Another network with id '" + network.getId() + "' is already watched");
+        }
+        InvalidatingListener listener = new InvalidatingListener(network.getId());
+        network.addListener(listener);
+        listeners.put(network, listener);
+    }
+
+    @Override
+    public boolean isWatching(Network network) {
+        return listeners.containsKey(Objects.requireNonNull(network));
+    }
+
+    /**
+     * Stops invalidating the SVGs involving the network when it is modified.
+     */
+    public synchronized void unwatch(Network network) {
+        Objects.requireNonNull(network);
+        InvalidatingListener listener = listeners.remove(network);
+        if (listener != null) {
+            network.removeListener(listener);
+        }
+    }
+
+    private final class InvalidatingListener implements NetworkListener {
+
+        private final String networkId;
+
+        private InvalidatingListener(String networkId) {
+            this.networkId = networkId;
+        }
+
+        @Override
+        public void onCreation(Identifiable identifiable) {
+            markDirty(networkId, null, identifiable);
+        }
+
+        @Override
+        public void onRemoval(Identifiable identifiable) {
+            markDirty(networkId, null, identifiable);
+        }
+
+        @Override
+        public void onUpdate(Identifiable identifiable, String attribute, Object oldValue, Object newValue) {
+            markDirty(networkId, null, identifiable);
+        }
+
+        @Override
+        public void onUpdate(Identifiable identifiable, String attribute, String variantId, Object oldValue, Object newValue) {
+            markDirty(networkId, variantId, identifiable);
+        }
+
+        @Override
+        public void onVariantOverwritten(String sourceVariantId, String targetVariantId) {
+            if (cachedVariants.contains(Arrays.asList(networkId, targetVariantId))) {
+                dirtyNetworks.add(networkId);
+            }
+        }
+
+        @Override
+        public void onVariantRemoved(String variantId) {
+            if (cachedVariants.contains(Arrays.asList(networkId, variantId))) {
+                dirtyNetworks.add(networkId);
+            }
+        }
+    }
+
+    //the voltage levels drawing the identifiable, none if it is not drawn in a single line diagram
+    private static List<VoltageLevel> getVoltageLevels(Identifiable<?> identifiable) {
+        if (identifiable instanceof VoltageLevel) {
+            return Collections.singletonList((VoltageLevel) identifiable);
+        } else if (identifiable instanceof Switch) {
+            return Collections.singletonList(((Switch) identifiable).getVoltageLevel());
+        } else if (identifiable instanceof Bus) {
+            return Collections.singletonList(((Bus) identifiable).getVoltageLevel());
+        } else if (identifiable instanceof Connectable) {
+            List<VoltageLevel> voltageLevels = new ArrayList<>();
+            for (Terminal terminal : ((Connectable<?>) identifiable).getTerminals()) {
+                voltageLevels.add(terminal.getVoltageLevel());
+            }
+            return voltageLevels;
+        }
+        return Collections.emptyList();
+    }
+}
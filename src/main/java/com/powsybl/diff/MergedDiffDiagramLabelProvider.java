@@ -39,13 +39,15 @@ public class MergedDiffDiagramLabelProvider extends DiffDiagramLabelProvider {
         this.showCurrent = showCurrent;
     }
 
-    protected InitialValue buildInitialValue(Terminal terminal, String terminalLabel) {
+    /**
+     * @param diffIndex index of the terminal in the branches sides diffs, -1 if the terminal has no diff
+     */
+    protected InitialValue buildInitialValue(Terminal terminal, int diffIndex) {
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
         if (showCurrent) {
             double deltaI = 0;
-            if (diffData.getBranchesSideDiffs().containsKey(terminalLabel)) {
-                deltaI = usePercentage
-                         ? diffData.getBranchesSideDiffs().get(terminalLabel).getiDeltaP()
-                         : diffData.getBranchesSideDiffs().get(terminalLabel).getiDelta();
+            if (diffIndex >= 0) {
+                deltaI = branchesSideDiffs.getiDelta(diffIndex, usePercentage);
             }
             String label1 = String.valueOf(Precision.round(deltaI, 2));
             if ("-0.0".equals(label1) || "0.0".equals(label1)) {
@@ -60,13 +62,9 @@ public class MergedDiffDiagramLabelProvider extends DiffDiagramLabelProvider {
         double q = terminal.getQ();
         double deltaP = 0;
         double deltaQ = 0;
-        if (diffData.getBranchesSideDiffs().containsKey(terminalLabel)) {
-            deltaP = usePercentage
-                     ? diffData.getBranchesSideDiffs().get(terminalLabel).getpDeltaP()
-                     : diffData.getBranchesSideDiffs().get(terminalLabel).getpDelta();
-            deltaQ = usePercentage
-                     ? diffData.getBranchesSideDiffs().get(terminalLabel).getqDeltaP()
-                     : diffData.getBranchesSideDiffs().get(terminalLabel).getqDelta();
+        if (diffIndex >= 0) {
+            deltaP = branchesSideDiffs.getpDelta(diffIndex, usePercentage);
+            deltaQ = branchesSideDiffs.getqDelta(diffIndex, usePercentage);
         }
         String label1 = String.valueOf(Precision.round(deltaP, 2));
         String label2 = String.valueOf(Precision.round(deltaQ, 2));
@@ -89,7 +87,7 @@ public class MergedDiffDiagramLabelProvider extends DiffDiagramLabelProvider {
         Branch branch = network.getBranch(node.getEquipmentId());
         if (branch != null) {
             Branch.Side side = Branch.Side.valueOf(node.getSide().name());
-            return buildInitialValue(branch.getTerminal(side), node.getEquipmentId() + "_" + node.getSide().name());
+            return buildInitialValue(branch.getTerminal(side), diffData.getBranchesSideDiffs().indexOf(node.getEquipmentId(), side));
         }
         return new InitialValue(null, null, null, null, null, null);
     }
@@ -98,7 +96,7 @@ public class MergedDiffDiagramLabelProvider extends DiffDiagramLabelProvider {
         TwoWindingsTransformer transformer = network.getTwoWindingsTransformer(node.getEquipmentId());
         if (transformer != null) {
             Branch.Side side = Branch.Side.valueOf(node.getSide().name());
-            return buildInitialValue(transformer.getTerminal(side), node.getEquipmentId() + "_" + node.getSide().name());
+            return buildInitialValue(transformer.getTerminal(side), diffData.getBranchesSideDiffs().indexOf(node.getEquipmentId(), side));
         }
         return new InitialValue(null, null, null, null, null, null);
     }
@@ -107,7 +105,7 @@ public class MergedDiffDiagramLabelProvider extends DiffDiagramLabelProvider {
         ThreeWindingsTransformer transformer = network.getThreeWindingsTransformer(node.getEquipmentId());
         if (transformer != null) {
             ThreeWindingsTransformer.Side side = ThreeWindingsTransformer.Side.valueOf(node.getSide().name());
-            return buildInitialValue(transformer.getTerminal(side), node.getEquipmentId() + "_" + node.getSide().name());
+            return buildInitialValue(transformer.getTerminal(side), diffData.getBranchesSideDiffs().indexOf(node.getEquipmentId(), node.getSide()));
         }
         return new InitialValue(null, null, null, null, null, null);
     }
@@ -115,10 +113,10 @@ public class MergedDiffDiagramLabelProvider extends DiffDiagramLabelProvider {
     @Override
     protected String getBusVoltageLabel(Node node) {
         String label = "0";
-        if (usePercentage && diffData.getBusbarsDiffsP().containsKey(node.getId())) {
-            label = String.valueOf(Precision.round(diffData.getBusbarsDiffsP().get(node.getId()), 2));
-        } else if (!usePercentage && diffData.getBusbarsDiffs().containsKey(node.getId())) {
-            label = String.valueOf(Precision.round(diffData.getBusbarsDiffs().get(node.getId()), 2));
+        BusbarsDiffs busbarsDiffs = diffData.getBusbarsDiffs();
+        int busbarIndex = busbarsDiffs.indexOf(node.getId());
+        if (busbarsDiffs.hasDelta(busbarIndex, usePercentage)) {
+            label = String.valueOf(Precision.round(busbarsDiffs.getDelta(busbarIndex, usePercentage), 2));
         }
         if ("-0.0".equals(label) || "0.0".equals(label)) {
             label = "0";
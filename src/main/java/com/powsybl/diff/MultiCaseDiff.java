@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Identifiable;
+import com.powsybl.iidm.network.Network;
+
+/**
+ * Diffs one base network against many cases, networks or variants of the base network, in a single pass.
+ * <p>
+ * The base values are read once. The values of the cases are read and diffed in parallel on the executor, except
+ * for the variants which are read one at a time, the working variant of the network being switched.
+ * The deltas, case values minus base values, are stored per equipment in primitive arrays indexed by case:
+ * e.g. {@link #getBranchDeltas} returns the deltas of a branch flow in all the cases.
+ * <p>
+ * Any case can then be diffed or rendered against the base, the diagrams being laid out and labelled on the case.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class MultiCaseDiff {
+
+    private static final int FLOWS = TerminalValue.values().length;
+
+    private final List<Network> caseNetworks;
+    //null if the cases are networks
+    private final List<String> caseVariantIds;
+    private final NetworkState base;
+    private final NetworkState[] cases;
+
+    //deltas of equipment k in case c are at k * caseCount + c
+    private final double[] flowsDeltas;
+    private final double[] busbarsVDeltas;
+    private final double[] minVDeltas;
+    private final double[] maxVDeltas;
+    //status changes of each case
+    private final BitSet[] switchesChanges;
+    private final BitSet[] branchesChanges;
+
+    private MultiCaseDiff(List<Network> caseNetworks, List<String> caseVariantIds, NetworkState base) {
+        this.caseNetworks = caseNetworks;
+        this.caseVariantIds = caseVariantIds;
+        this.base = base;
+        int caseCount = caseNetworks.size();
+        cases = new NetworkState[caseCount];
+        flowsDeltas = new double[FLOWS * base.getBranchCount() * caseCount];
+        busbarsVDeltas = new double[base.getBusbarCount() * caseCount];
+        minVDeltas = new double[base.getVoltageLevelCount() * caseCount];
+        maxVDeltas = new double[base.getVoltageLevelCount() * caseCount];
+        switchesChanges = new BitSet[caseCount];
+        branchesChanges = new BitSet[caseCount];
+    }
+
+    public static MultiCaseDiff ofNetworks(Network baseNetwork, List<Network> caseNetworks) {
+        return ofNetworks(baseNetwork, caseNetworks, getVoltageLevels(baseNetwork), getBranches(baseNetwork), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * The equipments of the base are read by id from the case networks.
+     */
+    public static MultiCaseDiff ofNetworks(Network baseNetwork, List<Network> caseNetworks, List<String> voltageLevels, List<String> branches,
+                                           Executor executor) {
+        Objects.requireNonNull(caseNetworks);
+        Objects.requireNonNull(executor);
+        MultiCaseDiff diff = new MultiCaseDiff(new ArrayList<>(caseNetworks), null, NetworkState.read(baseNetwork, voltageLevels, branches));
+        diff.runAll(c -> {
+            diff.cases[c] = diff.base.readSame(caseNetworks.get(c));
+            diff.computeDeltas(c);
+        }, executor);
+        return diff;
+    }
+
+    public static MultiCaseDiff ofVariants(Network network, String baseVariantId, List<String> caseVariantIds) {
+        return ofVariants(network, baseVariantId, caseVariantIds, getVoltageLevels(network), getBranches(network), ForkJoinPool.commonPool());
+    }
+
+    public static MultiCaseDiff ofVariants(Network network, String baseVariantId, List<String> caseVariantIds, List<String> voltageLevels,
+                                           List<String> branches, Executor executor) {
+        Objects.requireNonNull(network);
+        Objects.requireNonNull(caseVariantIds);
+        Objects.requireNonNull(executor);
+        NetworkState baseState = VariantsDiff.onVariant(network, baseVariantId, () -> NetworkState.read(network, voltageLevels, branches));
+        MultiCaseDiff diff = new MultiCaseDiff(Collections.nCopies(caseVariantIds.size(), network), new ArrayList<>(caseVariantIds), baseState);
+        for (int c = 0; c < caseVariantIds.size(); c++) {
+            diff.cases[c] = VariantsDiff.onVariant(network, caseVariantIds.get(c), () -> baseState.readSame(network));
+        }
+        diff.runAll(diff::computeDeltas, executor);
+        return diff;
+    }
+
+    private static List<String> getVoltageLevels(Network network) {
+        return network.getVoltageLevelStream().map(Identifiable::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> getBranches(Network network) {
+        return network.getBranchStream().map(Identifiable::getId).collect(Collectors.toList());
+    }
+
+    private interface CaseTask {
+        void run(int caseIndex);
+    }
+
+    private void runAll(CaseTask task, Executor executor) {
+        CompletableFuture<?>[] futures = IntStream.range(0, cases.length)
+                .mapToObj(c -> CompletableFuture.runAsync(() -> task.run(c), executor))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    //each case writes its own slots of the deltas arrays
+    private void computeDeltas(int c) {
+        NetworkState state = cases[c];
+        int caseCount = cases.length;
+        TerminalValue[] values = TerminalValue.values();
+        BitSet branchesChanged = new BitSet();
+        for (int k = 0; k < base.getBranchCount(); k++) {
+            for (TerminalValue value : values) {
+                flowsDeltas[(FLOWS * k + value.ordinal()) * caseCount + c] = state.getFlow(k, value) - base.getFlow(k, value);
+            }
+            if (state.isTerminalConnected(k, 0) != base.isTerminalConnected(k, 0)
+                    || state.isTerminalConnected(k, 1) != base.isTerminalConnected(k, 1)) {
+                branchesChanged.set(k);
+            }
+        }
+        for (int k = 0; k < base.getBusbarCount(); k++) {
+            busbarsVDeltas[k * caseCount + c] = state.getBusbarV(k) - base.getBusbarV(k);
+        }
+        for (int k = 0; k < base.getVoltageLevelCount(); k++) {
+            minVDeltas[k * caseCount + c] = state.getMinV(k) - base.getMinV(k);
+            maxVDeltas[k * caseCount + c] = state.getMaxV(k) - base.getMaxV(k);
+        }
+        BitSet switchesChanged = new BitSet();
+        for (int k = 0; k < base.getSwitchCount(); k++) {
+            if (state.isSwitchOpen(k) != base.isSwitchOpen(k)) {
+                switchesChanged.set(k);
+            }
+        }
+        branchesChanges[c] = branchesChanged;
+        switchesChanges[c] = switchesChanged;
+    }
+
+    public int getCaseCount() {
+        return cases.length;
+    }
+
+    /**
+     * @return the id of the case network, or the case variant id
+     */
+    public String getCaseId(int caseIndex) {
+        return caseVariantIds != null ? caseVariantIds.get(caseIndex) : caseNetworks.get(caseIndex).getId();
+    }
+
+    public List<String> getVoltageLevelIds() {
+        return base.getVoltageLevelIds();
+    }
+
+    public List<String> getBranchIds() {
+        return base.getBranchIds();
+    }
+
+    private double[] column(double[] deltas, int k) {
+        double[] column = new double[cases.length];
+        System.arraycopy(deltas, k * cases.length, column, 0, cases.length);
+        return column;
+    }
+
+    /**
+     * @return the deltas of the branch flow, indexed by case
+     */
+    public double[] getBranchDeltas(String branchId, TerminalValue value) {
+        return column(flowsDeltas, FLOWS * base.indexOfBranch(branchId) + value.ordinal());
+    }
+
+    public double getBranchDelta(int caseIndex, String branchId, TerminalValue value) {
+        return flowsDeltas[(FLOWS * base.indexOfBranch(branchId) + value.ordinal()) * cases.length + caseIndex];
+    }
+
+    /**
+     * @return the deltas of the busbar voltage, indexed by case
+     */
+    public double[] getBusbarVoltageDeltas(String busbarId) {
+        return column(busbarsVDeltas, base.indexOfBusbar(busbarId));
+    }
+
+    public double[] getMinVoltageDeltas(String vlId) {
+        return column(minVDeltas, base.indexOfVoltageLevel(vlId));
+    }
+
+    public double[] getMaxVoltageDeltas(String vlId) {
+        return column(maxVDeltas, base.indexOfVoltageLevel(vlId));
+    }
+
+    /**
+     * @return the switches whose status changed in the case
+     */
+    public List<String> getSwitchesDiff(int caseIndex) {
+        return switchesChanges[caseIndex].stream().mapToObj(base::getSwitchId).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the branches whose terminals status changed in the case
+     */
+    public List<String> getBranchesStatusDiff(int caseIndex) {
+        return branchesChanges[caseIndex].stream().mapToObj(base::getBranchId).collect(Collectors.toList());
+    }
+
+    private StatesDiff caseDiff(int caseIndex, double epsilon, double voltageEpsilon) {
+        Network caseNetwork = caseNetworks.get(caseIndex);
+        NetworkState state = cases[caseIndex];
+        String caseVariantId = caseVariantIds != null ? caseVariantIds.get(caseIndex) : null;
+        return new StatesDiff(new NetworkDiffRenderer(caseNetwork, caseNetwork), epsilon, voltageEpsilon) {
+            @Override
+            protected NetworkState[] readStates(List<String> voltageLevels, List<String> branches) {
+                return new NetworkState[] {base.slice(voltageLevels, branches), state.slice(voltageLevels, branches)};
+            }
+
+            @Override
+            protected <T> T render(Supplier<T> supplier) {
+                return caseVariantId != null ? VariantsDiff.onVariant(caseNetwork, caseVariantId, supplier) : supplier.get();
+            }
+        };
+    }
+
+    private void checkCase(int caseIndex) {
+        if (caseIndex < 0 || caseIndex >= cases.length) {
+            throw new PowsyblException("Case " + caseIndex + " not found");
+        }
+    }
+
+    /**
+     * @return the diff of the case against the base, in the network diff JSON format
+     */
+    public String diff(int caseIndex, double epsilon, double voltageEpsilon) {
+        checkCase(caseIndex);
+        return caseDiff(caseIndex, epsilon, voltageEpsilon).diff(base.getVoltageLevelIds(), base.getBranchIds());
+    }
+
+    public ColorsLevelsDiffData getDiffData(int caseIndex, double epsilon, double voltageEpsilon) {
+        checkCase(caseIndex);
+        return caseDiff(caseIndex, epsilon, voltageEpsilon).diffData(base.getVoltageLevelIds(), base.getBranchIds());
+    }
+
+    public String getVoltageLevelSvgDiff(int caseIndex, String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData) {
+        checkCase(caseIndex);
+        return caseDiff(caseIndex, epsilon, voltageEpsilon).writeVoltageLevelSvg(vlId, levelsData, false, false);
+    }
+
+    public String getVoltageLevelMergedSvgDiff(int caseIndex, String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                               boolean showCurrent) {
+        checkCase(caseIndex);
+        return caseDiff(caseIndex, epsilon, voltageEpsilon).writeVoltageLevelSvg(vlId, levelsData, true, showCurrent);
+    }
+
+    public String getSubstationSvgDiff(int caseIndex, String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData) {
+        checkCase(caseIndex);
+        return caseDiff(caseIndex, epsilon, voltageEpsilon).writeSubstationSvg(substationId, levelsData, false, false);
+    }
+
+    public String getSubstationMergedSvgDiff(int caseIndex, String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                             boolean showCurrent) {
+        checkCase(caseIndex);
+        return caseDiff(caseIndex, epsilon, voltageEpsilon).writeSubstationSvg(substationId, levelsData, true, showCurrent);
+    }
+}
@@ -6,19 +6,17 @@
  */
 package com.powsybl.diff;
 
-import static com.powsybl.sld.svg.DiagramStyles.ARROW_ACTIVE_CLASS;
-import static com.powsybl.sld.svg.DiagramStyles.ARROW_REACTIVE_CLASS;
 import static com.powsybl.sld.svg.DiagramStyles.CONSTANT_COLOR_CLASS;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
 import com.powsybl.sld.library.ComponentLibrary;
 import com.powsybl.sld.library.ComponentTypeName;
 import com.powsybl.sld.model.Edge;
@@ -37,152 +35,112 @@ public class MultipleColorsLevelsDiffStyleProvider extends DefaultDiagramStylePr
     public static final String LEVEL_0_SUFFIX = LEVEL_PREFIX + "0";
 
     final ColorsLevelsDiffData diffData;
-    final List<LevelData> levels;
+    final LevelsClassifier currentLevels;
+    final LevelsClassifier voltageLevels;
     final boolean usePercentage;
     final String css;
+    private final Set<String> switchesDiff;
+    private final DiagramStyleIndex styleIndex = new DiagramStyleIndex(new LevelsStyler());
 
     public MultipleColorsLevelsDiffStyleProvider(ColorsLevelsDiffData diffData, LevelsData levelsData, boolean usePercentage) {
         this.diffData = Objects.requireNonNull(diffData);
-        this.css = this.getCss(Objects.requireNonNull(levelsData).levels);
-        this.levels = Lists.reverse(levelsData.levels);
+        CompiledLevels compiledLevels = CompiledLevels.of(Objects.requireNonNull(levelsData));
+        this.css = LevelsStylesheet.of(levelsData).getCss();
+        this.currentLevels = compiledLevels.getCurrentLevels();
+        this.voltageLevels = compiledLevels.getVoltageLevels();
         this.usePercentage = usePercentage;
-    }
-
-    private String getCss(List<LevelData> levels) {
-        String css = getLevelCss(LEVEL_0_SUFFIX, "black");
-        for (LevelData level : levels) {
-            css = String.join("\n", css, getLevelCss(LEVEL_PREFIX + level.id, level.c));
-        }
-        return css;
-    }
-
-    private String getLevelCss(String levelSuffix, String color) {
-        return ".sld-constant-color" + levelSuffix + " {stroke: " + color + "; fill: none}\n" +
-                ".sld-wire.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-line.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-node.sld-constant-color" + levelSuffix + " {stroke: none; fill: " + color + "}\n" +
-                ".sld-busbreaker-connection.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-busbar-section.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-disconnector.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-load.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-load-break-switch.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-generator.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-arrow-p" + levelSuffix + " {fill:" + color + "}\n" +
-                ".sld-arrow-q" + levelSuffix + " {fill:" + color + "}\n" +
-                ".sld-breaker.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n" +
-                ".sld-two-wt.sld-constant-color" + levelSuffix + " {stroke: " + color + "}\n";
+        this.switchesDiff = new HashSet<>(diffData.getSwitchesDiff());
     }
 
     @Override
     public List<String> getSvgNodeStyles(Node node, ComponentLibrary componentLibrary, boolean showInternalNodes) {
         List<String> nodeStyles = super.getSvgNodeStyles(node, componentLibrary, showInternalNodes);
-        //LOGGER.debug("node before: id {} node_type {} componenttype {}, styles {}", node.getId(), node.getType(), node.getComponentType(), nodeStyles);
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (Node.NodeType.SWITCH.equals(node.getType()) && diffData.getSwitchesDiff().contains(node.getId())) {
-            diffSuffix = LEVEL_PREFIX + levels.get(0).id;
-        } else if (ComponentTypeName.TWO_WINDINGS_TRANSFORMER.equals(node.getComponentType())) {
-            List<String> edgesNodesIds = node.getAdjacentEdges()
-                                             .stream()
-                                             .map(e -> e.getNodes()
-                                                        .stream()
-                                                        .map(n -> n.getId())
-                                                        .filter(nId -> !nId.equals(node.getId()))
-                                                        .collect(Collectors.toList()))
-                                             .flatMap(List::stream)
-                                             .collect(Collectors.toList());
-            if (diffData.getBranchesSideDiffs().keySet().containsAll(edgesNodesIds) || diffData.getBranchesSideDiffs().containsKey(node.getId())) {
-                double iDelta = 0;
-                if (diffData.getBranchesSideDiffs().containsKey(node.getId())) {
-                    iDelta = usePercentage
-                             ? diffData.getBranchesSideDiffs().get(node.getId()).getiDeltaP()
-                             : diffData.getBranchesSideDiffs().get(node.getId()).getiDelta();
-                } else {
-                    iDelta = edgesNodesIds.stream()
-                                          .mapToDouble(nodeId -> {
-                                              return usePercentage
-                                                     ? diffData.getBranchesSideDiffs().get(nodeId).getiDeltaP()
-                                                     : diffData.getBranchesSideDiffs().get(nodeId).getiDelta();
-                                          })
-                                          .max()
-                                          .orElse(0);
-                }
-                diffSuffix = getLevel(iDelta);
-            }
-        } else if (Node.NodeType.BUS.equals(node.getType()) && ComponentTypeName.BUSBAR_SECTION.equals(node.getComponentType())) {
-            if (usePercentage && diffData.getBusbarsDiffsP().containsKey(node.getId())) {
-                diffSuffix = getVLevel(diffData.getBusbarsDiffsP().get(node.getId()));
-            } else if (!usePercentage && diffData.getBusbarsDiffs().containsKey(node.getId())) {
-                diffSuffix = getVLevel(diffData.getBusbarsDiffs().get(node.getId()));
-            }
-        }
-        Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + diffSuffix);
-        //LOGGER.debug("node after: id {} node_type {} componenttype {}, styles {}", node.getId(), node.getType(), node.getComponentType(), nodeStyles);
+        Collections.replaceAll(nodeStyles, CONSTANT_COLOR_CLASS, styleIndex.getNodeClass(node));
         return nodeStyles;
     }
 
     @Override
     public List<String> getSvgWireStyles(Edge edge, boolean highlightLineState) {
         List<String> style = super.getSvgWireStyles(edge, highlightLineState);
-        //LOGGER.debug("edge before: Id1='{}', id2='{}', styles= '{}'", edge.getNode1().getId(), edge.getNode2().getId(), style);
-        Node node1 = edge.getNode1();
-        Node node2 = edge.getNode2();
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (diffData.getBranchesSideDiffs().containsKey(node1.getId()) || diffData.getBranchesSideDiffs().containsKey(node2.getId())) {
-            double iDelta = 0;
-            if (diffData.getBranchesSideDiffs().containsKey(node1.getId())) {
-                iDelta = usePercentage
-                         ? diffData.getBranchesSideDiffs().get(node1.getId()).getiDeltaP()
-                         : diffData.getBranchesSideDiffs().get(node1.getId()).getiDelta();
-            } else if (diffData.getBranchesSideDiffs().containsKey(node2.getId())) {
-                iDelta = usePercentage
-                         ? diffData.getBranchesSideDiffs().get(node2.getId()).getiDeltaP()
-                         : diffData.getBranchesSideDiffs().get(node2.getId()).getiDelta();
-            }
-            diffSuffix = getLevel(iDelta);
-        }
-        Collections.replaceAll(style, CONSTANT_COLOR_CLASS, CONSTANT_COLOR_CLASS + diffSuffix);
-        //LOGGER.debug("edge after:  Id1='{}', id2='{}', styles= '{}'", edge.getNode1().getId(), edge.getNode2().getId(), style);
+        Collections.replaceAll(style, CONSTANT_COLOR_CLASS, styleIndex.getWireClass(edge));
         return style;
     }
 
     public String getArrowsActiveStyle(FeederNode feederNode, ComponentLibrary componentLibrary) {
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (diffData.getBranchesSideDiffs().containsKey(feederNode.getId())) {
-            double pDelta = usePercentage
-                            ? diffData.getBranchesSideDiffs().get(feederNode.getId()).getpDeltaP()
-                            : diffData.getBranchesSideDiffs().get(feederNode.getId()).getpDelta();
-            diffSuffix = getLevel(pDelta);
-        }
-        return ARROW_ACTIVE_CLASS + diffSuffix;
+        return styleIndex.getArrowActiveClass(feederNode);
     }
 
     public String getArrowsReactiveStyle(FeederNode feederNode, ComponentLibrary componentLibrary) {
-        String diffSuffix = LEVEL_0_SUFFIX;
-        if (diffData.getBranchesSideDiffs().containsKey(feederNode.getId())) {
-            double qDelta = usePercentage
-                            ? diffData.getBranchesSideDiffs().get(feederNode.getId()).getqDeltaP()
-                            : diffData.getBranchesSideDiffs().get(feederNode.getId()).getqDelta();
-            diffSuffix = getLevel(qDelta);
-        }
-        return ARROW_REACTIVE_CLASS + diffSuffix;
+        return styleIndex.getArrowReactiveClass(feederNode);
     }
 
-    private String getLevel(double delta) {
-        for (LevelData level : levels) {
-            if (Math.abs(delta) > level.i) {
-                return LEVEL_PREFIX + level.id;
+    private final class LevelsStyler implements DiagramStyleIndex.Styler {
+
+        @Override
+        public String getNodeSuffix(Node node) {
+            BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+            if (Node.NodeType.SWITCH.equals(node.getType()) && switchesDiff.contains(node.getId())) {
+                return currentLevels.getHighestSuffix();
+            } else if (ComponentTypeName.TWO_WINDINGS_TRANSFORMER.equals(node.getComponentType())) {
+                int nodeIndex = branchesSideDiffs.indexOf(node);
+                if (nodeIndex >= 0) {
+                    return getLevel(branchesSideDiffs.getiDelta(nodeIndex, usePercentage));
+                }
+                //max delta of the adjacent nodes, when they all have a diff
+                double iDelta = Double.NEGATIVE_INFINITY;
+                for (Edge edge : node.getAdjacentEdges()) {
+                    for (Node adjacentNode : edge.getNodes()) {
+                        if (!adjacentNode.getId().equals(node.getId())) {
+                            int adjacentNodeIndex = branchesSideDiffs.indexOf(adjacentNode);
+                            if (adjacentNodeIndex < 0) {
+                                return LEVEL_0_SUFFIX;
+                            }
+                            iDelta = Math.max(iDelta, branchesSideDiffs.getiDelta(adjacentNodeIndex, usePercentage));
+                        }
+                    }
+                }
+                return getLevel(iDelta == Double.NEGATIVE_INFINITY ? 0 : iDelta);
+            } else if (Node.NodeType.BUS.equals(node.getType()) && ComponentTypeName.BUSBAR_SECTION.equals(node.getComponentType())) {
+                BusbarsDiffs busbarsDiffs = diffData.getBusbarsDiffs();
+                int busbarIndex = busbarsDiffs.indexOf(node.getId());
+                if (busbarsDiffs.hasDelta(busbarIndex, usePercentage)) {
+                    return getVLevel(busbarsDiffs.getDelta(busbarIndex, usePercentage));
+                }
             }
+            return LEVEL_0_SUFFIX;
         }
-        return LEVEL_0_SUFFIX;
-    }
 
-    private String getVLevel(double delta) {
-        for (LevelData level : levels) {
-            if (Math.abs(delta) > level.v) {
-                return LEVEL_PREFIX + level.id;
+        @Override
+        public String getWireSuffix(Edge edge) {
+            BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+            int index = branchesSideDiffs.indexOf(edge.getNode1());
+            if (index < 0) {
+                index = branchesSideDiffs.indexOf(edge.getNode2());
             }
+            return index >= 0 ? getLevel(branchesSideDiffs.getiDelta(index, usePercentage)) : LEVEL_0_SUFFIX;
+        }
+
+        @Override
+        public String getArrowActiveSuffix(FeederNode feederNode) {
+            BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+            int index = branchesSideDiffs.indexOf(feederNode);
+            return index >= 0 ? getLevel(branchesSideDiffs.getpDelta(index, usePercentage)) : LEVEL_0_SUFFIX;
         }
-        return LEVEL_0_SUFFIX;
+
+        @Override
+        public String getArrowReactiveSuffix(FeederNode feederNode) {
+            BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+            int index = branchesSideDiffs.indexOf(feederNode);
+            return index >= 0 ? getLevel(branchesSideDiffs.getqDelta(index, usePercentage)) : LEVEL_0_SUFFIX;
+        }
+    }
+
+    private String getLevel(double delta) {
+        return currentLevels.classify(delta);
+    }
+
+    private String getVLevel(double delta) {
+        return voltageLevels.classify(delta);
     }
 
     @Override
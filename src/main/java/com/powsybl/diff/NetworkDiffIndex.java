@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * The diff of a whole pair of networks, indexed by voltage level.
+ * <p>
+ * The diff is computed once; the diff data of a voltage level or of a substation is then sliced out of it,
+ * in a time proportional to the number of its equipments with a diff.
+ * An index is immutable and can be sliced by concurrent threads.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class NetworkDiffIndex {
+
+    /**
+     * The equipments of a voltage level: switches and busbar sections of a voltage level are contiguous
+     * in the whole network diff data, branches are listed by the index of their side ONE.
+     */
+    private static final class VoltageLevelEntries {
+
+        private int switchesStart;
+        private int switchesEnd;
+        private int busbarsStart;
+        private int busbarsEnd;
+        private int[] branches = new int[4];
+        private int branchesCount;
+
+        private void addBranch(int branchIndex) {
+            if (branchesCount == branches.length) {
+                branches = Arrays.copyOf(branches, 2 * branches.length);
+            }
+            branches[branchesCount++] = branchIndex;
+        }
+    }
+
+    private final Network network;
+    private final double epsilon;
+    private final double voltageEpsilon;
+    private final ColorsLevelsDiffData diffData;
+    private final Map<String, VoltageLevelEntries> voltageLevelsEntries = new HashMap<>();
+
+    NetworkDiffIndex(Network network, NetworkDiffResults diffResults, double epsilon, double voltageEpsilon) throws IOException {
+        this.network = Objects.requireNonNull(network);
+        this.epsilon = epsilon;
+        this.voltageEpsilon = voltageEpsilon;
+        this.diffData = new ColorsLevelsDiffData(true);
+        TokenBuffer tokenBuffer = new TokenBuffer(null, false);
+        Objects.requireNonNull(diffResults).writeJson(tokenBuffer);
+        try (JsonParser parser = tokenBuffer.asParser()) {
+            DiffJsonReader.read(parser, new IndexHandler());
+        }
+        indexBranches();
+    }
+
+    private final class IndexHandler implements DiffJsonReader.Handler {
+
+        private final DiffJsonReader.Handler diffDataHandler = diffData.createHandler();
+        private String vlId;
+        private int switchesStart;
+        private int busbarsStart;
+
+        @Override
+        public void voltageLevelField(String fieldName, JsonParser parser) throws IOException {
+            if (DiffJsonReader.VL_ID.equals(fieldName)) {
+                vlId = DiffJsonReader.readText(parser);
+            } else {
+                diffDataHandler.voltageLevelField(fieldName, parser);
+            }
+        }
+
+        @Override
+        public void endVoltageLevel() {
+            diffDataHandler.endVoltageLevel();
+            int switchesEnd = diffData.getSwitchesDiff().size();
+            int busbarsEnd = diffData.getBusbarsDiffs().size();
+            if (vlId != null) {
+                VoltageLevelEntries entries = voltageLevelsEntries.computeIfAbsent(vlId, id -> new VoltageLevelEntries());
+                entries.switchesStart = switchesStart;
+                entries.switchesEnd = switchesEnd;
+                entries.busbarsStart = busbarsStart;
+                entries.busbarsEnd = busbarsEnd;
+            }
+            vlId = null;
+            switchesStart = switchesEnd;
+            busbarsStart = busbarsEnd;
+        }
+
+        @Override
+        public void branchField(String fieldName, JsonParser parser) throws IOException {
+            diffDataHandler.branchField(fieldName, parser);
+        }
+
+        @Override
+        public void endBranch() {
+            diffDataHandler.endBranch();
+        }
+    }
+
+    //a branch is listed in the entries of the voltage levels of both its sides
+    private void indexBranches() {
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        for (int index = 0; index < branchesSideDiffs.size(); index += 2) {
+            Branch<?> branch = network.getBranch(branchesSideDiffs.getBranchId(index));
+            if (branch != null) {
+                String vlId1 = branch.getTerminal1().getVoltageLevel().getId();
+                String vlId2 = branch.getTerminal2().getVoltageLevel().getId();
+                voltageLevelsEntries.computeIfAbsent(vlId1, id -> new VoltageLevelEntries()).addBranch(index);
+                if (!vlId2.equals(vlId1)) {
+                    voltageLevelsEntries.computeIfAbsent(vlId2, id -> new VoltageLevelEntries()).addBranch(index);
+                }
+            }
+        }
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getVoltageEpsilon() {
+        return voltageEpsilon;
+    }
+
+    /**
+     * @return the diff data of the whole network
+     */
+    public ColorsLevelsDiffData getDiffData() {
+        return diffData;
+    }
+
+    public ColorsLevelsDiffData sliceVoltageLevel(String vlId) {
+        if (network.getVoltageLevel(vlId) == null) {
+            throw new PowsyblException("Voltage level '" + vlId + "' not found");
+        }
+        ColorsLevelsDiffData slice = new ColorsLevelsDiffData(true);
+        copy(voltageLevelsEntries.get(vlId), slice, new BitSet());
+        return slice;
+    }
+
+    public ColorsLevelsDiffData sliceSubstation(String substationId) {
+        Substation substation = network.getSubstation(substationId);
+        if (substation == null) {
+            throw new PowsyblException("Substation '" + substationId + "' not found");
+        }
+        ColorsLevelsDiffData slice = new ColorsLevelsDiffData(true);
+        //branches between two voltage levels of the substation are copied once
+        BitSet copiedBranches = new BitSet();
+        for (VoltageLevel voltageLevel : substation.getVoltageLevels()) {
+            copy(voltageLevelsEntries.get(voltageLevel.getId()), slice, copiedBranches);
+        }
+        return slice;
+    }
+
+    private void copy(VoltageLevelEntries entries, ColorsLevelsDiffData slice, BitSet copiedBranches) {
+        if (entries == null) {
+            return;
+        }
+        slice.switchesDiff.addAll(diffData.switchesDiff.subList(entries.switchesStart, entries.switchesEnd));
+        for (int index = entries.busbarsStart; index < entries.busbarsEnd; index++) {
+            slice.busbarsDiffs.copy(diffData.busbarsDiffs, index);
+        }
+        for (int i = 0; i < entries.branchesCount; i++) {
+            int index = entries.branches[i];
+            if (!copiedBranches.get(index)) {
+                copiedBranches.set(index);
+                slice.branchesSideDiffs.copy(diffData.branchesSideDiffs, index);
+            }
+        }
+    }
+}
@@ -0,0 +1,578 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.DiffConfig;
+import com.powsybl.iidm.diff.DiffEquipment;
+import com.powsybl.iidm.diff.DiffEquipmentType;
+import com.powsybl.iidm.diff.NetworkDiff;
+import com.powsybl.iidm.diff.NetworkDiffResults;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Line;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.TwoWindingsTransformer;
+import com.powsybl.iidm.network.VoltageLevel;
+import com.powsybl.sld.GraphBuilder;
+import com.powsybl.sld.NetworkGraphBuilder;
+import com.powsybl.sld.layout.HorizontalSubstationLayoutFactory;
+import com.powsybl.sld.layout.LayoutParameters;
+import com.powsybl.sld.layout.SmartVoltageLevelLayoutFactory;
+import com.powsybl.sld.layout.SubstationLayoutFactory;
+import com.powsybl.sld.layout.VoltageLevelLayoutFactory;
+import com.powsybl.sld.library.ComponentLibrary;
+import com.powsybl.sld.library.ConvergenceComponentLibrary;
+import com.powsybl.sld.model.AbstractBaseGraph;
+import com.powsybl.sld.model.SubstationGraph;
+import com.powsybl.sld.model.VoltageLevelGraph;
+import com.powsybl.sld.svg.DiagramLabelProvider;
+import com.powsybl.sld.svg.GraphMetadata;
+
+import static com.powsybl.sld.layout.LayoutParameters.CssLocation.INSERTED_IN_SVG;
+
+/**
+ * Diffs a pair of networks and renders the diff as single line diagrams.
+ * <p>
+ * A renderer is meant to be created once per pair of networks and reused: the component library, the layout parameters,
+ * the graph builder and the layout factories are built once and only read afterwards. The networks, though, are not
+ * only read: IIDM builds the bus views of their voltage levels lazily, without synchronization, so concurrent renderings
+ * of the same networks race unless these views are built beforehand, as {@link DiffBatchRenderer} does. In any case,
+ * the networks must not be modified meanwhile.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public class NetworkDiffRenderer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetworkDiffRenderer.class);
+
+    private static final class DefaultComponentLibraryHolder {
+        //parsing the components SVG resources is costly, the default library is loaded once, on first use
+        private static final ComponentLibrary INSTANCE = new ConvergenceComponentLibrary();
+    }
+
+    private final Network network1;
+    private final Network network2;
+    private final ComponentLibrary componentLibrary;
+    private final LayoutParameters layoutParameters;
+    private final GraphBuilder graphBuilder;
+    private final VoltageLevelLayoutFactory voltageLevelLayoutFactory;
+    private final SubstationLayoutFactory substationLayoutFactory;
+    private final DiffCache diffCache;
+    private final SvgCache svgCache;
+
+    public NetworkDiffRenderer(Network network1, Network network2) {
+        this(network1, network2, DiffCache.NONE);
+    }
+
+    public NetworkDiffRenderer(Network network1, Network network2, DiffCache diffCache) {
+        this(network1, network2, diffCache, SvgCache.NONE);
+    }
+
+    public NetworkDiffRenderer(Network network1, Network network2, DiffCache diffCache, SvgCache svgCache) {
+        this(network1, network2, getDefaultComponentLibrary(), createDefaultLayoutParameters(), diffCache, svgCache);
+    }
+
+    public NetworkDiffRenderer(Network network1, Network network2, ComponentLibrary componentLibrary, LayoutParameters layoutParameters) {
+        this(network1, network2, componentLibrary, layoutParameters, DiffCache.NONE, SvgCache.NONE);
+    }
+
+    /**
+     * The layout parameters are copied: later changes to the given instance do not affect the renderer.
+     */
+    public NetworkDiffRenderer(Network network1, Network network2, ComponentLibrary componentLibrary, LayoutParameters layoutParameters,
+                               DiffCache diffCache, SvgCache svgCache) {
+        this.network1 = Objects.requireNonNull(network1);
+        this.network2 = Objects.requireNonNull(network2);
+        this.diffCache = Objects.requireNonNull(diffCache);
+        this.svgCache = Objects.requireNonNull(svgCache);
+        this.componentLibrary = Objects.requireNonNull(componentLibrary);
+        this.layoutParameters = new LayoutParameters(Objects.requireNonNull(layoutParameters));
+        this.graphBuilder = new NetworkGraphBuilder(network1);
+        this.voltageLevelLayoutFactory = new SmartVoltageLevelLayoutFactory(network1);
+        this.substationLayoutFactory = new HorizontalSubstationLayoutFactory();
+    }
+
+    public static ComponentLibrary getDefaultComponentLibrary() {
+        return DefaultComponentLibraryHolder.INSTANCE;
+    }
+
+    public static LayoutParameters createDefaultLayoutParameters() {
+        LayoutParameters layoutParameters = new LayoutParameters();
+        layoutParameters.setCssLocation(INSERTED_IN_SVG);
+        return layoutParameters;
+    }
+
+    public Network getNetwork1() {
+        return network1;
+    }
+
+    public Network getNetwork2() {
+        return network2;
+    }
+
+    public DiffCache getDiffCache() {
+        return diffCache;
+    }
+
+    public SvgCache getSvgCache() {
+        return svgCache;
+    }
+
+    //voltage levels
+    public String diffVoltageLevel(String vlId, double epsilon, double voltageEpsilon) {
+        return writeJson(diffVoltageLevelResults(vlId, epsilon, voltageEpsilon));
+    }
+
+    public NetworkDiffResults diffVoltageLevelResults(String vlId, double epsilon, double voltageEpsilon) {
+        List<String> voltageLevels = Collections.singletonList(vlId);
+        List<String> branches = getBranches(network1.getVoltageLevel(vlId));
+        return diffNetworksResults(voltageLevels, branches, epsilon, voltageEpsilon);
+    }
+
+    public String diffNetworks(List<String> voltageLevels, List<String> branches, double epsilon, double voltageEpsilon) {
+        return writeJson(diffNetworksResults(voltageLevels, branches, epsilon, voltageEpsilon));
+    }
+
+    /**
+     * The results are taken from the diff cache of the renderer, if any.
+     */
+    public NetworkDiffResults diffNetworksResults(List<String> voltageLevels, List<String> branches, double epsilon, double voltageEpsilon) {
+        DiffCacheKey key = DiffCacheKey.of(network1, network2, epsilon, voltageEpsilon, voltageLevels, branches);
+        return diffCache.get(key, () -> diff(voltageLevels, branches, epsilon, voltageEpsilon));
+    }
+
+    //uncached diff, also used to diff again networks modified in place
+    NetworkDiffResults diff(List<String> voltageLevels, List<String> branches, double epsilon, double voltageEpsilon) {
+        DiffEquipment diffEquipment = new DiffEquipment();
+        diffEquipment.setVoltageLevels(voltageLevels);
+        List<DiffEquipmentType> equipmentTypes = new ArrayList<DiffEquipmentType>();
+        equipmentTypes.add(DiffEquipmentType.VOLTAGE_LEVELS);
+        if (!branches.isEmpty()) {
+            equipmentTypes.add(DiffEquipmentType.BRANCHES);
+            diffEquipment.setBranches(branches);
+        }
+        diffEquipment.setEquipmentTypes(equipmentTypes);
+        NetworkDiff ndiff = new NetworkDiff(new DiffConfig(epsilon, voltageEpsilon, DiffConfig.FILTER_DIFF_DEFAULT));
+        return ndiff.diff(network1, network2, diffEquipment);
+    }
+
+    public static String writeJson(NetworkDiffResults diffResults) {
+        String jsonDiff = NetworkDiff.writeJson(diffResults);
+        //NaN is not part of the JSON standard and frontend would fail when parsing it
+        //it should be handled at the source, though
+        jsonDiff = jsonDiff.replace(": NaN", ": \"Nan\"");
+        jsonDiff = jsonDiff.replace(": Infinity,", ": \"Infinity\",");
+        jsonDiff = jsonDiff.replace(": -Infinity,", ": \"-Infinity\",");
+        return jsonDiff;
+    }
+
+    /**
+     * Diffs the whole networks once: the voltage levels and substations diagrams can then be rendered from
+     * slices of the returned index, without diffing again.
+     */
+    public NetworkDiffIndex diffIndex(double epsilon, double voltageEpsilon) {
+        List<String> voltageLevels = network1.getVoltageLevelStream().map(VoltageLevel::getId).collect(Collectors.toList());
+        List<String> branches = network1.getBranchStream().map(Branch::getId).collect(Collectors.toList());
+        try {
+            return new NetworkDiffIndex(network1, diffNetworksResults(voltageLevels, branches, epsilon, voltageEpsilon), epsilon, voltageEpsilon);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+            throw new PowsyblException(e.getMessage(), e);
+        }
+    }
+
+    private NetworkDiffIndex checkIndex(NetworkDiffIndex diffIndex) {
+        if (Objects.requireNonNull(diffIndex).getNetwork() != network1) {
+            throw new PowsyblException("Diff index not computed on network '" + network1.getId() + "'");
+        }
+        return diffIndex;
+    }
+
+    public String getVoltageLevelSvgDiff(NetworkDiffIndex diffIndex, String vlId, LevelsData levelsData) {
+        return writeVoltageLevelSvg(vlId, checkIndex(diffIndex).sliceVoltageLevel(vlId), levelsData, false, false);
+    }
+
+    public String getVoltageLevelMergedSvgDiff(NetworkDiffIndex diffIndex, String vlId, LevelsData levelsData, boolean showCurrent) {
+        return writeVoltageLevelSvg(vlId, checkIndex(diffIndex).sliceVoltageLevel(vlId), levelsData, true, showCurrent);
+    }
+
+    public String getSubstationSvgDiff(NetworkDiffIndex diffIndex, String substationId, LevelsData levelsData) {
+        return writeSubstationSvg(substationId, checkIndex(diffIndex).sliceSubstation(substationId), levelsData, false, false);
+    }
+
+    public String getSubstationMergedSvgDiff(NetworkDiffIndex diffIndex, String substationId, LevelsData levelsData, boolean showCurrent) {
+        return writeSubstationSvg(substationId, checkIndex(diffIndex).sliceSubstation(substationId), levelsData, true, showCurrent);
+    }
+
+    public String getVoltageLevelSvgDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData) {
+        return voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, false, false).toSvgString();
+    }
+
+    /**
+     * Writes the SVG into the writer, which is flushed but not closed.
+     */
+    public void writeVoltageLevelSvgDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData, Writer writer) {
+        voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, false, false).writeTo(writer);
+    }
+
+    /**
+     * Writes the SVG into the stream, UTF-8 encoded and optionally gzipped; the stream is flushed but not closed.
+     */
+    public void writeVoltageLevelSvgDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                         OutputStream outputStream, boolean gzip) {
+        voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, false, false).writeTo(outputStream, gzip);
+    }
+
+    public String getVoltageLevelMergedSvgDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean showCurrent) {
+        try {
+            return voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, true, showCurrent).toSvgString();
+        } catch (PowsyblException e) {
+            LOGGER.error(e.getMessage());
+            throw new PowsyblException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the SVG into the writer, which is flushed but not closed.
+     */
+    public void writeVoltageLevelMergedSvgDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean showCurrent,
+                                               Writer writer) {
+        voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, true, showCurrent).writeTo(writer);
+    }
+
+    /**
+     * Writes the SVG into the stream, UTF-8 encoded and optionally gzipped; the stream is flushed but not closed.
+     */
+    public void writeVoltageLevelMergedSvgDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean showCurrent,
+                                               OutputStream outputStream, boolean gzip) {
+        voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, true, showCurrent).writeTo(outputStream, gzip);
+    }
+
+    /**
+     * Renders the diff diagram of a voltage level, producing only the artifacts requested by the options;
+     * showCurrent is only used by the merged diagram.
+     */
+    public DiffRenderResult renderVoltageLevelDiff(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean merged,
+                                                   boolean showCurrent, RenderOptions options) {
+        return voltageLevelSvg(vlId, epsilon, voltageEpsilon, levelsData, merged, merged && showCurrent).render(options);
+    }
+
+    private DiffSvg voltageLevelSvg(String vlId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean merged, boolean showCurrent) {
+        return new DiffSvg(SvgCacheKey.Scope.VOLTAGE_LEVEL, vlId, () -> toDiffData(diffVoltageLevelResults(vlId, epsilon, voltageEpsilon)),
+                           thresholdsFingerprint(epsilon, voltageEpsilon), levelsData, merged, showCurrent);
+    }
+
+    private static ColorsLevelsDiffData toDiffData(NetworkDiffResults diffResults) {
+        try {
+            return new ColorsLevelsDiffData(diffResults, true);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+            throw new PowsyblException(e.getMessage(), e);
+        }
+    }
+
+    //when the SVG cache discards the SVGs of the modified networks, an SVG diffed from them is identified by the diff thresholds:
+    //it is looked up before diffing. Otherwise, the SVG is identified by the content of the diff, null here
+    private String thresholdsFingerprint(double epsilon, double voltageEpsilon) {
+        return svgCache.isWatching(network1) && svgCache.isWatching(network2) ? DiffFingerprints.fingerprint(epsilon, voltageEpsilon) : null;
+    }
+
+    /**
+     * Writes the SVG of a voltage level, colored with an already computed diff. The SVG is taken from the SVG cache
+     * of the renderer, if any, identified by the content of the diff data: the diff data should be sliced
+     * to the voltage level, so that its fingerprint is cheap and matches the one of the same diagram rendered alone.
+     */
+    String writeVoltageLevelSvg(String vlId, ColorsLevelsDiffData diffData, LevelsData levelsData, boolean merged, boolean showCurrent) {
+        return new DiffSvg(SvgCacheKey.Scope.VOLTAGE_LEVEL, vlId, () -> diffData, null, levelsData, merged, showCurrent).toSvgString();
+    }
+
+    //substations
+    public String getSubstationSvgDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData) {
+        return substationSvg(substationId, epsilon, voltageEpsilon, levelsData, false, false).toSvgString();
+    }
+
+    /**
+     * Writes the SVG into the writer, which is flushed but not closed.
+     */
+    public void writeSubstationSvgDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData, Writer writer) {
+        substationSvg(substationId, epsilon, voltageEpsilon, levelsData, false, false).writeTo(writer);
+    }
+
+    /**
+     * Writes the SVG into the stream, UTF-8 encoded and optionally gzipped; the stream is flushed but not closed.
+     */
+    public void writeSubstationSvgDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData,
+                                       OutputStream outputStream, boolean gzip) {
+        substationSvg(substationId, epsilon, voltageEpsilon, levelsData, false, false).writeTo(outputStream, gzip);
+    }
+
+    public String getSubstationMergedSvgDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean showCurrent) {
+        try {
+            return substationSvg(substationId, epsilon, voltageEpsilon, levelsData, true, showCurrent).toSvgString();
+        } catch (PowsyblException e) {
+            LOGGER.error(e.getMessage());
+            throw new PowsyblException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the SVG into the writer, which is flushed but not closed.
+     */
+    public void writeSubstationMergedSvgDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean showCurrent,
+                                             Writer writer) {
+        substationSvg(substationId, epsilon, voltageEpsilon, levelsData, true, showCurrent).writeTo(writer);
+    }
+
+    /**
+     * Writes the SVG into the stream, UTF-8 encoded and optionally gzipped; the stream is flushed but not closed.
+     */
+    public void writeSubstationMergedSvgDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean showCurrent,
+                                             OutputStream outputStream, boolean gzip) {
+        substationSvg(substationId, epsilon, voltageEpsilon, levelsData, true, showCurrent).writeTo(outputStream, gzip);
+    }
+
+    /**
+     * Renders the diff diagram of a substation, producing only the artifacts requested by the options;
+     * showCurrent is only used by the merged diagram.
+     */
+    public DiffRenderResult renderSubstationDiff(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean merged,
+                                                 boolean showCurrent, RenderOptions options) {
+        return substationSvg(substationId, epsilon, voltageEpsilon, levelsData, merged, merged && showCurrent).render(options);
+    }
+
+    private DiffSvg substationSvg(String substationId, double epsilon, double voltageEpsilon, LevelsData levelsData, boolean merged, boolean showCurrent) {
+        return new DiffSvg(SvgCacheKey.Scope.SUBSTATION, substationId, () -> toDiffData(diffSubstationResults(substationId, epsilon, voltageEpsilon)),
+                           thresholdsFingerprint(epsilon, voltageEpsilon), levelsData, merged, showCurrent);
+    }
+
+    /**
+     * Writes the SVG of a substation, colored with an already computed diff. The SVG is taken from the SVG cache
+     * of the renderer, if any, identified by the content of the diff data: the diff data should be sliced
+     * to the substation, so that its fingerprint is cheap and matches the one of the same diagram rendered alone.
+     */
+    String writeSubstationSvg(String substationId, ColorsLevelsDiffData diffData, LevelsData levelsData, boolean merged, boolean showCurrent) {
+        return new DiffSvg(SvgCacheKey.Scope.SUBSTATION, substationId, () -> diffData, null, levelsData, merged, showCurrent).toSvgString();
+    }
+
+    /**
+     * The diff SVG of a voltage level or of a substation, rendered into a string, a writer or a stream.
+     * When the renderer has an SVG cache, the SVG is taken from the cache or rendered once into it.
+     * The SVG metadata and the graph JSON are only computed when requested.
+     */
+    private final class DiffSvg {
+
+        private final SvgCacheKey.Scope scope;
+        private final String id;
+        private final Supplier<ColorsLevelsDiffData> diff;
+        private ColorsLevelsDiffData diffData;
+        private final String diffFingerprint;
+        private final LevelsData levelsData;
+        private final boolean merged;
+        private final boolean showCurrent;
+        private final boolean usePercentage = true;
+
+        /**
+         * @param diff the diff data, only computed when the SVG is rendered or identified by the content of the diff
+         * @param diffFingerprint the fingerprint identifying the diff in the SVG cache, null to fingerprint the diff data
+         */
+        private DiffSvg(SvgCacheKey.Scope scope, String id, Supplier<ColorsLevelsDiffData> diff, String diffFingerprint, LevelsData levelsData,
+                        boolean merged, boolean showCurrent) {
+            this.scope = scope;
+            this.id = id;
+            this.diff = diff;
+            this.diffFingerprint = diffFingerprint;
+            this.levelsData = levelsData;
+            this.merged = merged;
+            this.showCurrent = showCurrent;
+        }
+
+        private ColorsLevelsDiffData getDiffData() {
+            if (diffData == null) {
+                diffData = diff.get();
+            }
+            return diffData;
+        }
+
+        private void render(Writer writer) {
+            render(RenderOptions.SVG_ONLY, writer);
+        }
+
+        //the URL of the levels stylesheet imported by the SVG, null when the CSS is inlined
+        private String stylesheetUrl(RenderOptions options) {
+            return options.isExternalStylesheet() ? LevelsStylesheet.of(levelsData).getUrl(options.getStylesheetBaseUrl()) : null;
+        }
+
+        /**
+         * Lays out the diagram and produces the requested artifacts only: the SVG is written into the writer,
+         * the metadata and the graph JSON are returned.
+         */
+        private DiffRenderResult render(RenderOptions options, Writer writer) {
+            if (!options.isSvg() && !options.isMetadata() && !options.isGraphJson()) {
+                return new DiffRenderResult(null, null, null);
+            }
+            AbstractBaseGraph graph;
+            if (scope == SvgCacheKey.Scope.VOLTAGE_LEVEL) {
+                VoltageLevelGraph vlGraph = graphBuilder.buildVoltageLevelGraph(id, false, true);
+                voltageLevelLayoutFactory.create(vlGraph).run(layoutParameters);
+                graph = vlGraph;
+            } else {
+                SubstationGraph substationGraph = graphBuilder.buildSubstationGraph(id, false);
+                substationLayoutFactory.create(substationGraph, voltageLevelLayoutFactory).run(layoutParameters);
+                graph = substationGraph;
+            }
+            try {
+                String metadata = null;
+                if (options.isSvg() || options.isMetadata()) {
+                    //the metadata are a by-product of the SVG writing
+                    GraphMetadata graphMetadata = writeSvg(graph, options.isSvg() ? writer : Writer.nullWriter(), stylesheetUrl(options));
+                    writer.flush();
+                    if (options.isMetadata()) {
+                        StringWriter metadataWriter = new StringWriter();
+                        graphMetadata.writeJson(metadataWriter);
+                        metadata = metadataWriter.toString();
+                    }
+                }
+                String graphJson = null;
+                if (options.isGraphJson()) {
+                    StringWriter jsonWriter = new StringWriter();
+                    graph.writeJson(jsonWriter);
+                    graphJson = jsonWriter.toString();
+                }
+                return new DiffRenderResult(null, metadata, graphJson);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private GraphMetadata writeSvg(AbstractBaseGraph graph, Writer writer, String stylesheetUrl) {
+            ColorsLevelsDiffData diffData = getDiffData();
+            ExtendedDiagramStyleProvider styleProvider = new MultipleColorsLevelsDiffStyleProvider(diffData, levelsData, usePercentage);
+            DiagramLabelProvider initProvider = merged
+                    ? new MergedDiffDiagramLabelProvider(network1, componentLibrary, layoutParameters, diffData, usePercentage, showCurrent)
+                    : new DiffDiagramLabelProvider(network1, componentLibrary, layoutParameters);
+            DiffSVGWriter svgWriter = new DiffSVGWriter(componentLibrary, layoutParameters, styleProvider, !merged || !showCurrent, merged && showCurrent,
+                                                        stylesheetUrl);
+            return graph instanceof VoltageLevelGraph
+                    ? svgWriter.write("", (VoltageLevelGraph) graph, initProvider, styleProvider, writer)
+                    : svgWriter.write("", (SubstationGraph) graph, initProvider, styleProvider, writer);
+        }
+
+        DiffRenderResult render(RenderOptions options) {
+            Objects.requireNonNull(options);
+            LevelsStylesheet stylesheet = options.isExternalStylesheet() && options.isSvg() ? LevelsStylesheet.of(levelsData) : null;
+            if (options.isSvg() && !options.isMetadata() && !options.isGraphJson()) {
+                return new DiffRenderResult(toSvgString(options), null, null, stylesheet);
+            }
+            StringWriter writer = new StringWriter();
+            DiffRenderResult result = render(options, writer);
+            return new DiffRenderResult(options.isSvg() ? writer.toString() : null,
+                    result.getMetadata().orElse(null), result.getGraphJson().orElse(null), stylesheet);
+        }
+
+        private byte[] cachedSvg(RenderOptions options) {
+            SvgCacheKey key = SvgCacheKey.of(network1, network2, scope, id,
+                                             diffFingerprint != null ? diffFingerprint : DiffFingerprints.fingerprint(getDiffData()),
+                                             levelsData, merged, showCurrent, usePercentage, stylesheetUrl(options));
+            return svgCache.get(key, () -> {
+                StringWriter writer = new StringWriter();
+                render(options, writer);
+                return writer.toString().getBytes(StandardCharsets.UTF_8);
+            });
+        }
+
+        String toSvgString() {
+            return toSvgString(RenderOptions.SVG_ONLY);
+        }
+
+        private String toSvgString(RenderOptions options) {
+            if (svgCache.isEnabled()) {
+                return new String(cachedSvg(options), StandardCharsets.UTF_8);
+            }
+            StringWriter writer = new StringWriter();
+            render(options, writer);
+            return writer.toString();
+        }
+
+        void writeTo(Writer writer) {
+            Objects.requireNonNull(writer);
+            if (svgCache.isEnabled()) {
+                try {
+                    writer.write(new String(cachedSvg(RenderOptions.SVG_ONLY), StandardCharsets.UTF_8));
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                render(writer);
+            }
+        }
+
+        void writeTo(OutputStream outputStream, boolean gzip) {
+            Objects.requireNonNull(outputStream);
+            //closing the gzip stream releases its deflater and writes the trailer, but must not close the caller's stream
+            try (OutputStream out = gzip ? new GZIPOutputStream(new NonClosingOutputStream(outputStream)) : new NonClosingOutputStream(outputStream)) {
+                if (svgCache.isEnabled()) {
+                    out.write(cachedSvg(RenderOptions.SVG_ONLY));
+                } else {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    render(writer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public String diffSubstation(String substationId, double epsilon, double voltageEpsilon) {
+        return writeJson(diffSubstationResults(substationId, epsilon, voltageEpsilon));
+    }
+
+    public NetworkDiffResults diffSubstationResults(String substationId, double epsilon, double voltageEpsilon) {
+        Substation substation1 = network1.getSubstation(substationId);
+        List<String> voltageLevels = getVoltageLevels(substation1);
+        List<String> branches = getBranches(substation1);
+        return diffNetworksResults(voltageLevels, branches, epsilon, voltageEpsilon);
+    }
+
+    static List<String> getVoltageLevels(Substation substation) {
+        return substation.getVoltageLevelStream().map(VoltageLevel::getId).collect(Collectors.toList());
+    }
+
+    //the lines connected to the substation and its two windings transformers
+    static List<String> getBranches(Substation substation) {
+        List<String> branches = substation.getVoltageLevelStream().flatMap(vl -> vl.getConnectableStream(Line.class))
+                .map(Line::getId).collect(Collectors.toList());
+        List<String> twts = substation.getTwoWindingsTransformerStream().map(TwoWindingsTransformer::getId)
+                .collect(Collectors.toList());
+        branches.addAll(twts);
+        return branches;
+    }
+
+    static List<String> getBranches(VoltageLevel voltageLevel) {
+        return voltageLevel.getConnectableStream(Branch.class).map(Branch::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,653 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.math.DoubleMath;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Bus;
+import com.powsybl.iidm.network.BusbarSection;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Switch;
+import com.powsybl.iidm.network.TopologyKind;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * The values of a network compared by a diff, read from its working variant into primitive arrays:
+ * the switches status, the busbars voltages and the voltage levels min and max voltages, the branches terminals
+ * connection status and flows.
+ * <p>
+ * Two states of the same equipments, e.g. read from two variants of a network, are diffed index by index
+ * and written in the network diff JSON format.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class NetworkState {
+
+    private static final String[] TERMINAL_FIELDS = {"p-delta", "q-delta", "i-delta"};
+    private static final String[] TERMINAL_PERCENT_FIELDS = {"p-delta-percent", "q-delta-percent", "i-delta-percent"};
+    //p, q and i of both sides
+    private static final int FLOWS = 6;
+
+    private final String networkId;
+    private final String[] voltageLevelIds;
+    private final BitSet nodeBreakerVoltageLevels;
+    //switches and busbars of voltage level k are in [starts[k], starts[k + 1])
+    private final int[] switchesStarts;
+    private final String[] switchIds;
+    private final BitSet openSwitches;
+    private final int[] busbarsStarts;
+    private final String[] busbarIds;
+    private final double[] busbarsV;
+    private final double[] minV;
+    private final double[] maxV;
+    private final String[] branchIds;
+    //terminals of branch k are at 2 * k and 2 * k + 1
+    private final BitSet connectedTerminals;
+    private final double[] flows;
+
+    //indexes by id, built on first lookup
+    private volatile Map<String, Integer> voltageLevelsIndexes;
+    private volatile Map<String, Integer> switchesIndexes;
+    private volatile Map<String, Integer> busbarsIndexes;
+    private volatile Map<String, Integer> branchesIndexes;
+
+    private NetworkState(String networkId, String[] voltageLevelIds, BitSet nodeBreakerVoltageLevels, int[] switchesStarts, String[] switchIds,
+                         BitSet openSwitches, int[] busbarsStarts, String[] busbarIds, double[] busbarsV, double[] minV, double[] maxV,
+                         String[] branchIds, BitSet connectedTerminals, double[] flows) {
+        this.networkId = networkId;
+        this.voltageLevelIds = voltageLevelIds;
+        this.nodeBreakerVoltageLevels = nodeBreakerVoltageLevels;
+        this.switchesStarts = switchesStarts;
+        this.switchIds = switchIds;
+        this.openSwitches = openSwitches;
+        this.busbarsStarts = busbarsStarts;
+        this.busbarIds = busbarIds;
+        this.busbarsV = busbarsV;
+        this.minV = minV;
+        this.maxV = maxV;
+        this.branchIds = branchIds;
+        this.connectedTerminals = connectedTerminals;
+        this.flows = flows;
+    }
+
+    /**
+     * Reads the state of the given voltage levels and branches from the working variant of the network.
+     */
+    static NetworkState read(Network network, List<String> voltageLevels, List<String> branches) {
+        Objects.requireNonNull(network);
+        int vlCount = voltageLevels.size();
+        String[] voltageLevelIds = new String[vlCount];
+        BitSet nodeBreakerVoltageLevels = new BitSet();
+        int[] switchesStarts = new int[vlCount + 1];
+        int[] busbarsStarts = new int[vlCount + 1];
+        double[] minV = new double[vlCount];
+        double[] maxV = new double[vlCount];
+        List<String> switchIds = new ArrayList<>();
+        BitSet openSwitches = new BitSet();
+        List<String> busbarIds = new ArrayList<>();
+        double[] busbarsV = new double[16];
+        for (int k = 0; k < vlCount; k++) {
+            VoltageLevel voltageLevel = getVoltageLevel(network, voltageLevels.get(k));
+            voltageLevelIds[k] = voltageLevel.getId();
+            for (Switch sw : voltageLevel.getSwitches()) {
+                openSwitches.set(switchIds.size(), sw.isOpen());
+                switchIds.add(sw.getId());
+            }
+            switchesStarts[k + 1] = switchIds.size();
+            if (voltageLevel.getTopologyKind() == TopologyKind.NODE_BREAKER) {
+                nodeBreakerVoltageLevels.set(k);
+                for (BusbarSection busbarSection : voltageLevel.getNodeBreakerView().getBusbarSections()) {
+                    busbarsV = set(busbarsV, busbarIds.size(), busbarSection.getV());
+                    busbarIds.add(busbarSection.getId());
+                }
+            } else {
+                for (Bus bus : voltageLevel.getBusBreakerView().getBuses()) {
+                    busbarsV = set(busbarsV, busbarIds.size(), bus.getV());
+                    busbarIds.add(bus.getId());
+                }
+            }
+            busbarsStarts[k + 1] = busbarIds.size();
+            readMinMaxV(voltageLevel, minV, maxV, k);
+        }
+        String[] branchIds = branches.toArray(new String[0]);
+        BitSet connectedTerminals = new BitSet();
+        double[] flows = new double[FLOWS * branchIds.length];
+        for (int k = 0; k < branchIds.length; k++) {
+            readBranch(getBranch(network, branchIds[k]), connectedTerminals, flows, k);
+        }
+        return new NetworkState(network.getId(), voltageLevelIds, nodeBreakerVoltageLevels, switchesStarts, switchIds.toArray(new String[0]),
+                                openSwitches, busbarsStarts, busbarIds.toArray(new String[0]), Arrays.copyOf(busbarsV, busbarIds.size()),
+                                minV, maxV, branchIds, connectedTerminals, flows);
+    }
+
+    private static double[] set(double[] values, int index, double value) {
+        double[] newValues = index < values.length ? values : Arrays.copyOf(values, 2 * values.length);
+        newValues[index] = value;
+        return newValues;
+    }
+
+    private static VoltageLevel getVoltageLevel(Network network, String vlId) {
+        VoltageLevel voltageLevel = network.getVoltageLevel(vlId);
+        if (voltageLevel == null) {
+            throw new PowsyblException("Voltage level '" + vlId + "' not found");
+        }
+        return voltageLevel;
+    }
+
+    private static Branch<?> getBranch(Network network, String branchId) {
+        Branch<?> branch = network.getBranch(branchId);
+        if (branch == null) {
+            throw new PowsyblException("Branch '" + branchId + "' not found");
+        }
+        return branch;
+    }
+
+    private static void readMinMaxV(VoltageLevel voltageLevel, double[] minV, double[] maxV, int k) {
+        minV[k] = Double.NaN;
+        maxV[k] = Double.NaN;
+        for (Bus bus : voltageLevel.getBusView().getBuses()) {
+            double v = bus.getV();
+            if (!Double.isNaN(v)) {
+                minV[k] = Double.isNaN(minV[k]) ? v : Math.min(minV[k], v);
+                maxV[k] = Double.isNaN(maxV[k]) ? v : Math.max(maxV[k], v);
+            }
+        }
+    }
+
+    private static void readBranch(Branch<?> branch, BitSet connectedTerminals, double[] flows, int k) {
+        connectedTerminals.set(2 * k, branch.getTerminal1().isConnected());
+        connectedTerminals.set(2 * k + 1, branch.getTerminal2().isConnected());
+        flows[FLOWS * k] = branch.getTerminal1().getP();
+        flows[FLOWS * k + 1] = branch.getTerminal1().getQ();
+        flows[FLOWS * k + 2] = branch.getTerminal1().getI();
+        flows[FLOWS * k + 3] = branch.getTerminal2().getP();
+        flows[FLOWS * k + 4] = branch.getTerminal2().getQ();
+        flows[FLOWS * k + 5] = branch.getTerminal2().getI();
+    }
+
+    /**
+     * Reads the state of the same equipments as this state, by id, from the working variant of the network.
+     */
+    NetworkState readSame(Network network) {
+        Objects.requireNonNull(network);
+        BitSet otherOpenSwitches = new BitSet();
+        double[] otherBusbarsV = new double[busbarsV.length];
+        double[] otherMinV = new double[minV.length];
+        double[] otherMaxV = new double[maxV.length];
+        for (int k = 0; k < voltageLevelIds.length; k++) {
+            VoltageLevel voltageLevel = getVoltageLevel(network, voltageLevelIds[k]);
+            for (int index = switchesStarts[k]; index < switchesStarts[k + 1]; index++) {
+                Switch sw = network.getSwitch(switchIds[index]);
+                if (sw == null) {
+                    throw new PowsyblException("Switch '" + switchIds[index] + "' not found");
+                }
+                otherOpenSwitches.set(index, sw.isOpen());
+            }
+            for (int index = busbarsStarts[k]; index < busbarsStarts[k + 1]; index++) {
+                otherBusbarsV[index] = nodeBreakerVoltageLevels.get(k) ? getBusbarSectionV(network, busbarIds[index])
+                                                                       : getBusV(voltageLevel, busbarIds[index]);
+            }
+            readMinMaxV(voltageLevel, otherMinV, otherMaxV, k);
+        }
+        BitSet otherConnectedTerminals = new BitSet();
+        double[] otherFlows = new double[flows.length];
+        for (int k = 0; k < branchIds.length; k++) {
+            readBranch(getBranch(network, branchIds[k]), otherConnectedTerminals, otherFlows, k);
+        }
+        return new NetworkState(network.getId(), voltageLevelIds, nodeBreakerVoltageLevels, switchesStarts, switchIds, otherOpenSwitches,
+                                busbarsStarts, busbarIds, otherBusbarsV, otherMinV, otherMaxV, branchIds, otherConnectedTerminals, otherFlows);
+    }
+
+    private static double getBusbarSectionV(Network network, String busbarId) {
+        BusbarSection busbarSection = network.getBusbarSection(busbarId);
+        if (busbarSection == null) {
+            throw new PowsyblException("Busbar section '" + busbarId + "' not found");
+        }
+        return busbarSection.getV();
+    }
+
+    private static double getBusV(VoltageLevel voltageLevel, String busId) {
+        Bus bus = voltageLevel.getBusBreakerView().getBus(busId);
+        if (bus == null) {
+            throw new PowsyblException("Bus '" + busId + "' not found");
+        }
+        return bus.getV();
+    }
+
+    /**
+     * @return the state of the given voltage levels and branches, among the ones of this state
+     */
+    NetworkState slice(List<String> voltageLevels, List<String> branches) {
+        int vlCount = voltageLevels.size();
+        String[] sliceVoltageLevelIds = new String[vlCount];
+        BitSet sliceNodeBreakerVoltageLevels = new BitSet();
+        int[] sliceSwitchesStarts = new int[vlCount + 1];
+        int[] sliceBusbarsStarts = new int[vlCount + 1];
+        double[] sliceMinV = new double[vlCount];
+        double[] sliceMaxV = new double[vlCount];
+        int[] vls = new int[vlCount];
+        for (int k = 0; k < vlCount; k++) {
+            int vl = indexOfVoltageLevel(voltageLevels.get(k));
+            vls[k] = vl;
+            sliceVoltageLevelIds[k] = voltageLevelIds[vl];
+            sliceNodeBreakerVoltageLevels.set(k, nodeBreakerVoltageLevels.get(vl));
+            sliceSwitchesStarts[k + 1] = sliceSwitchesStarts[k] + switchesStarts[vl + 1] - switchesStarts[vl];
+            sliceBusbarsStarts[k + 1] = sliceBusbarsStarts[k] + busbarsStarts[vl + 1] - busbarsStarts[vl];
+            sliceMinV[k] = minV[vl];
+            sliceMaxV[k] = maxV[vl];
+        }
+        String[] sliceSwitchIds = new String[sliceSwitchesStarts[vlCount]];
+        BitSet sliceOpenSwitches = new BitSet();
+        String[] sliceBusbarIds = new String[sliceBusbarsStarts[vlCount]];
+        double[] sliceBusbarsV = new double[sliceBusbarsStarts[vlCount]];
+        for (int k = 0; k < vlCount; k++) {
+            int vl = vls[k];
+            int switchesCount = switchesStarts[vl + 1] - switchesStarts[vl];
+            System.arraycopy(switchIds, switchesStarts[vl], sliceSwitchIds, sliceSwitchesStarts[k], switchesCount);
+            for (int i = 0; i < switchesCount; i++) {
+                sliceOpenSwitches.set(sliceSwitchesStarts[k] + i, openSwitches.get(switchesStarts[vl] + i));
+            }
+            int busbarsCount = busbarsStarts[vl + 1] - busbarsStarts[vl];
+            System.arraycopy(busbarIds, busbarsStarts[vl], sliceBusbarIds, sliceBusbarsStarts[k], busbarsCount);
+            System.arraycopy(busbarsV, busbarsStarts[vl], sliceBusbarsV, sliceBusbarsStarts[k], busbarsCount);
+        }
+        String[] sliceBranchIds = new String[branches.size()];
+        BitSet sliceConnectedTerminals = new BitSet();
+        double[] sliceFlows = new double[FLOWS * branches.size()];
+        for (int k = 0; k < sliceBranchIds.length; k++) {
+            int br = indexOfBranch(branches.get(k));
+            sliceBranchIds[k] = branchIds[br];
+            sliceConnectedTerminals.set(2 * k, connectedTerminals.get(2 * br));
+            sliceConnectedTerminals.set(2 * k + 1, connectedTerminals.get(2 * br + 1));
+            System.arraycopy(flows, FLOWS * br, sliceFlows, FLOWS * k, FLOWS);
+        }
+        return new NetworkState(networkId, sliceVoltageLevelIds, sliceNodeBreakerVoltageLevels, sliceSwitchesStarts, sliceSwitchIds,
+                                sliceOpenSwitches, sliceBusbarsStarts, sliceBusbarIds, sliceBusbarsV, sliceMinV, sliceMaxV,
+                                sliceBranchIds, sliceConnectedTerminals, sliceFlows);
+    }
+
+    private static Map<String, Integer> index(String[] ids) {
+        Map<String, Integer> indexes = new HashMap<>(2 * ids.length);
+        for (int k = 0; k < ids.length; k++) {
+            indexes.put(ids[k], k);
+        }
+        return indexes;
+    }
+
+    private static int indexOf(Map<String, Integer> indexes, String id, String type) {
+        Integer index = indexes.get(id);
+        if (index == null) {
+            throw new PowsyblException(type + " '" + id + "' not found in network state");
+        }
+        return index;
+    }
+
+    int indexOfVoltageLevel(String vlId) {
+        Map<String, Integer> indexes = voltageLevelsIndexes;
+        if (indexes == null) {
+            indexes = index(voltageLevelIds);
+            voltageLevelsIndexes = indexes;
+        }
+        return indexOf(indexes, vlId, "Voltage level");
+    }
+
+    int indexOfSwitch(String switchId) {
+        Map<String, Integer> indexes = switchesIndexes;
+        if (indexes == null) {
+            indexes = index(switchIds);
+            switchesIndexes = indexes;
+        }
+        return indexOf(indexes, switchId, "Switch");
+    }
+
+    int indexOfBusbar(String busbarId) {
+        Map<String, Integer> indexes = busbarsIndexes;
+        if (indexes == null) {
+            indexes = index(busbarIds);
+            busbarsIndexes = indexes;
+        }
+        return indexOf(indexes, busbarId, "Busbar");
+    }
+
+    int indexOfBranch(String branchId) {
+        Map<String, Integer> indexes = branchesIndexes;
+        if (indexes == null) {
+            indexes = index(branchIds);
+            branchesIndexes = indexes;
+        }
+        return indexOf(indexes, branchId, "Branch");
+    }
+
+    String getNetworkId() {
+        return networkId;
+    }
+
+    int getVoltageLevelCount() {
+        return voltageLevelIds.length;
+    }
+
+    int getSwitchCount() {
+        return switchIds.length;
+    }
+
+    int getBusbarCount() {
+        return busbarIds.length;
+    }
+
+    int getBranchCount() {
+        return branchIds.length;
+    }
+
+    String getVoltageLevelId(int vl) {
+        return voltageLevelIds[vl];
+    }
+
+    String getSwitchId(int index) {
+        return switchIds[index];
+    }
+
+    String getBusbarId(int index) {
+        return busbarIds[index];
+    }
+
+    String getBranchId(int branch) {
+        return branchIds[branch];
+    }
+
+    //switches and busbars of a voltage level
+    int getSwitchesStart(int vl) {
+        return switchesStarts[vl];
+    }
+
+    int getSwitchesEnd(int vl) {
+        return switchesStarts[vl + 1];
+    }
+
+    int getBusbarsStart(int vl) {
+        return busbarsStarts[vl];
+    }
+
+    int getBusbarsEnd(int vl) {
+        return busbarsStarts[vl + 1];
+    }
+
+    boolean isSwitchOpen(int index) {
+        return openSwitches.get(index);
+    }
+
+    double getBusbarV(int index) {
+        return busbarsV[index];
+    }
+
+    double getMinV(int vl) {
+        return minV[vl];
+    }
+
+    double getMaxV(int vl) {
+        return maxV[vl];
+    }
+
+    /**
+     * @param side 0 for the first terminal, 1 for the second
+     */
+    boolean isTerminalConnected(int branch, int side) {
+        return connectedTerminals.get(2 * branch + side);
+    }
+
+    double getFlow(int branch, TerminalValue value) {
+        return flows[FLOWS * branch + value.ordinal()];
+    }
+
+    List<String> getVoltageLevelIds() {
+        return Arrays.asList(voltageLevelIds);
+    }
+
+    List<String> getBranchIds() {
+        return Arrays.asList(branchIds);
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeUTF(networkId);
+        writeStrings(output, voltageLevelIds);
+        writeBits(output, nodeBreakerVoltageLevels);
+        writeInts(output, switchesStarts);
+        writeStrings(output, switchIds);
+        writeBits(output, openSwitches);
+        writeInts(output, busbarsStarts);
+        writeStrings(output, busbarIds);
+        writeDoubles(output, busbarsV);
+        writeDoubles(output, minV);
+        writeDoubles(output, maxV);
+        writeStrings(output, branchIds);
+        writeBits(output, connectedTerminals);
+        writeDoubles(output, flows);
+    }
+
+    static NetworkState read(DataInput input) throws IOException {
+        return new NetworkState(input.readUTF(), readStrings(input), readBits(input), readInts(input), readStrings(input), readBits(input),
+                                readInts(input), readStrings(input), readDoubles(input), readDoubles(input), readDoubles(input),
+                                readStrings(input), readBits(input), readDoubles(input));
+    }
+
+    private static void writeStrings(DataOutput output, String[] values) throws IOException {
+        output.writeInt(values.length);
+        for (String value : values) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String[] readStrings(DataInput input) throws IOException {
+        String[] values = new String[input.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readUTF();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutput output, int[] values) throws IOException {
+        output.writeInt(values.length);
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInput input) throws IOException {
+        int[] values = new int[input.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutput output, double[] values) throws IOException {
+        output.writeInt(values.length);
+        for (double value : values) {
+            output.writeDouble(value);
+        }
+    }
+
+    private static double[] readDoubles(DataInput input) throws IOException {
+        double[] values = new double[input.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readDouble();
+        }
+        return values;
+    }
+
+    private static void writeBits(DataOutput output, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        output.writeInt(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    private static BitSet readBits(DataInput input) throws IOException {
+        long[] words = new long[input.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = input.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    void checkSameEquipments(NetworkState other) {
+        if (!Arrays.equals(voltageLevelIds, other.voltageLevelIds) || !Arrays.equals(switchIds, other.switchIds)
+                || !Arrays.equals(busbarIds, other.busbarIds) || !Arrays.equals(branchIds, other.branchIds)) {
+            throw new PowsyblException("Network states of different equipments cannot be diffed");
+        }
+    }
+
+    /**
+     * Writes the diff between this state and the other state of the same equipments: only the voltage levels and the
+     * branches with a delta greater than the epsilons, or with a status change, are written.
+     */
+    void writeDiff(NetworkState other, double epsilon, double voltageEpsilon, JsonGenerator generator) throws IOException {
+        checkSameEquipments(Objects.requireNonNull(other));
+        generator.writeStartObject();
+        generator.writeStringField("network1", networkId);
+        generator.writeStringField("network2", other.networkId);
+        generator.writeArrayFieldStart(DiffJsonReader.VOLTAGE_LEVELS);
+        for (int k = 0; k < voltageLevelIds.length; k++) {
+            if (hasVoltageLevelDiff(other, k, voltageEpsilon)) {
+                writeVoltageLevelDiff(other, k, voltageEpsilon, generator);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart(DiffJsonReader.BRANCHES);
+        for (int k = 0; k < branchIds.length; k++) {
+            if (hasBranchDiff(other, k, epsilon)) {
+                writeBranchDiff(other, k, generator);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    //a value appearing or disappearing (NaN on one side only) is a delta, two NaN values are not
+    private static boolean isDelta(double value1, double value2, double epsilon) {
+        return !DoubleMath.fuzzyEquals(value1, value2, epsilon);
+    }
+
+    private boolean hasVoltageLevelDiff(NetworkState other, int k, double voltageEpsilon) {
+        for (int index = switchesStarts[k]; index < switchesStarts[k + 1]; index++) {
+            if (openSwitches.get(index) != other.openSwitches.get(index)) {
+                return true;
+            }
+        }
+        for (int index = busbarsStarts[k]; index < busbarsStarts[k + 1]; index++) {
+            if (isDelta(busbarsV[index], other.busbarsV[index], voltageEpsilon)) {
+                return true;
+            }
+        }
+        return isDelta(minV[k], other.minV[k], voltageEpsilon) || isDelta(maxV[k], other.maxV[k], voltageEpsilon);
+    }
+
+    private void writeVoltageLevelDiff(NetworkState other, int k, double voltageEpsilon, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(DiffJsonReader.VL_ID, voltageLevelIds[k]);
+        generator.writeStringField("vl.vlId2", voltageLevelIds[k]);
+        writeDelta(generator, DiffJsonReader.VL_MIN_V_DELTA, minV[k], other.minV[k]);
+        writeDelta(generator, DiffJsonReader.VL_MAX_V_DELTA, maxV[k], other.maxV[k]);
+        writeDeltaPercent(generator, DiffJsonReader.VL_MIN_V_DELTA_PERCENT, minV[k], other.minV[k]);
+        writeDeltaPercent(generator, DiffJsonReader.VL_MAX_V_DELTA_PERCENT, maxV[k], other.maxV[k]);
+        generator.writeArrayFieldStart(DiffJsonReader.VL_SWITCHES_STATUS_DELTA);
+        for (int index = switchesStarts[k]; index < switchesStarts[k + 1]; index++) {
+            if (openSwitches.get(index) != other.openSwitches.get(index)) {
+                generator.writeString(switchIds[index]);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeObjectFieldStart(DiffJsonReader.VL_BUSBARS_VOLTAGE_DELTA);
+        for (int index = busbarsStarts[k]; index < busbarsStarts[k + 1]; index++) {
+            if (isDelta(busbarsV[index], other.busbarsV[index], voltageEpsilon)) {
+                writeDelta(generator, busbarIds[index], busbarsV[index], other.busbarsV[index]);
+            }
+        }
+        generator.writeEndObject();
+        generator.writeObjectFieldStart(DiffJsonReader.VL_BUSBARS_VOLTAGE_DELTA_PERCENT);
+        for (int index = busbarsStarts[k]; index < busbarsStarts[k + 1]; index++) {
+            if (isDelta(busbarsV[index], other.busbarsV[index], voltageEpsilon)) {
+                writeDeltaPercent(generator, busbarIds[index], busbarsV[index], other.busbarsV[index]);
+            }
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private boolean isTerminalStatusDelta(NetworkState other, int k) {
+        return connectedTerminals.get(2 * k) != other.connectedTerminals.get(2 * k)
+                || connectedTerminals.get(2 * k + 1) != other.connectedTerminals.get(2 * k + 1);
+    }
+
+    private boolean hasBranchDiff(NetworkState other, int k, double epsilon) {
+        if (isTerminalStatusDelta(other, k)) {
+            return true;
+        }
+        for (int index = FLOWS * k; index < FLOWS * (k + 1); index++) {
+            if (isDelta(flows[index], other.flows[index], epsilon)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeBranchDiff(NetworkState other, int k, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField(DiffJsonReader.BRANCH_ID, branchIds[k]);
+        generator.writeStringField("branch.branchId2", branchIds[k]);
+        generator.writeArrayFieldStart(DiffJsonReader.BRANCH_TERMINAL_STATUS_DELTA);
+        if (isTerminalStatusDelta(other, k)) {
+            generator.writeString(branchIds[k]);
+        }
+        generator.writeEndArray();
+        for (int side = 0; side < 2; side++) {
+            String prefix = "branch.terminal" + (side + 1) + ".";
+            int offset = FLOWS * k + 3 * side;
+            for (int field = 0; field < TERMINAL_FIELDS.length; field++) {
+                writeDelta(generator, prefix + TERMINAL_FIELDS[field], flows[offset + field], other.flows[offset + field]);
+            }
+            for (int field = 0; field < TERMINAL_PERCENT_FIELDS.length; field++) {
+                writeDeltaPercent(generator, prefix + TERMINAL_PERCENT_FIELDS[field], flows[offset + field], other.flows[offset + field]);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeDelta(JsonGenerator generator, String fieldName, double value1, double value2) throws IOException {
+        writeDouble(generator, fieldName, Math.abs(value1 - value2));
+    }
+
+    //delta relative to the first value, no delta being 0% even on a zero value
+    private static void writeDeltaPercent(JsonGenerator generator, String fieldName, double value1, double value2) throws IOException {
+        double delta = Math.abs(value1 - value2);
+        writeDouble(generator, fieldName, delta == 0 ? 0 : delta / Math.abs(value1) * 100);
+    }
+
+    //non finite values are written as strings, as in the JSON of the network diff results
+    static void writeDouble(JsonGenerator generator, String fieldName, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            generator.writeStringField(fieldName, "Nan");
+        } else if (Double.isInfinite(value)) {
+            generator.writeStringField(fieldName, value > 0 ? "Infinity" : "-Infinity");
+        } else {
+            generator.writeNumberField(fieldName, value);
+        }
+    }
+}
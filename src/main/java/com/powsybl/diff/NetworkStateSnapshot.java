@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Identifiable;
+import com.powsybl.iidm.network.Network;
+
+/**
+ * The values compared by a network diff (switches status, busbars voltages, voltage levels min and max voltages,
+ * branches terminals status and flows), captured from the working variant of a network into primitive arrays.
+ * <p>
+ * A snapshot is much smaller than the network it was captured from: it can be kept in memory, or written to disk,
+ * optionally gzipped, and later diffed against a live network with {@link NetworkDiffUtil}.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class NetworkStateSnapshot {
+
+    private static final int MAGIC = 0x4e534e50; //NSNP
+    private static final int VERSION = 1;
+
+    private final String variantId;
+    private final NetworkState state;
+
+    private NetworkStateSnapshot(String variantId, NetworkState state) {
+        this.variantId = variantId;
+        this.state = state;
+    }
+
+    /**
+     * Captures all the voltage levels and branches of the working variant of the network.
+     */
+    public static NetworkStateSnapshot capture(Network network) {
+        Objects.requireNonNull(network);
+        List<String> voltageLevels = network.getVoltageLevelStream().map(Identifiable::getId).collect(Collectors.toList());
+        List<String> branches = network.getBranchStream().map(Identifiable::getId).collect(Collectors.toList());
+        return capture(network, voltageLevels, branches);
+    }
+
+    /**
+     * Captures the given voltage levels and branches of the working variant of the network.
+     */
+    public static NetworkStateSnapshot capture(Network network, List<String> voltageLevels, List<String> branches) {
+        Objects.requireNonNull(network);
+        return new NetworkStateSnapshot(network.getVariantManager().getWorkingVariantId(),
+                                        NetworkState.read(network, Objects.requireNonNull(voltageLevels), Objects.requireNonNull(branches)));
+    }
+
+    public String getNetworkId() {
+        return state.getNetworkId();
+    }
+
+    public String getVariantId() {
+        return variantId;
+    }
+
+    public List<String> getVoltageLevelIds() {
+        return state.getVoltageLevelIds();
+    }
+
+    public List<String> getBranchIds() {
+        return state.getBranchIds();
+    }
+
+    NetworkState getState() {
+        return state;
+    }
+
+    public void write(OutputStream os, boolean compress) {
+        Objects.requireNonNull(os);
+        //the gzip stream is closed to release its deflater, the caller's stream is left open
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(compress
+                ? new GZIPOutputStream(new NonClosingOutputStream(os)) : new NonClosingOutputStream(os)))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeUTF(variantId);
+            state.write(dos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a snapshot, compressed or not.
+     */
+    public static NetworkStateSnapshot read(InputStream is) {
+        Objects.requireNonNull(is);
+        //the gzip stream is closed to release its inflater, the caller's stream is left open
+        BufferedInputStream bis = new BufferedInputStream(new NonClosingInputStream(is));
+        try {
+            bis.mark(2);
+            boolean compressed = bis.read() == (GZIPInputStream.GZIP_MAGIC & 0xff) && bis.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+            bis.reset();
+            try (DataInputStream dis = new DataInputStream(compressed ? new BufferedInputStream(new GZIPInputStream(bis)) : bis)) {
+                if (dis.readInt() != MAGIC) {
+                    throw new PowsyblException("Not a network state snapshot");
+                }
+                int version = dis.readInt();
+                if (version != VERSION) {
+                    throw new PowsyblException("Unsupported network state snapshot version " + version);
+                }
+                return new NetworkStateSnapshot(dis.readUTF(), NetworkState.read(dis));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(Path file, boolean compress) {
+        try (OutputStream os = Files.newOutputStream(file)) {
+            write(os, compress);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static NetworkStateSnapshot read(Path file) {
+        try (InputStream is = Files.newInputStream(file)) {
+            return read(is);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkStateSnapshot{" +
+                "networkId=" + state.getNetworkId() +
+                ", variantId=" + variantId +
+                ", voltageLevels=" + state.getVoltageLevelCount() +
+                ", branches=" + state.getBranchCount() +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Lets the wrapping streams be closed, to release their resources, without closing the caller's stream.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class NonClosingInputStream extends FilterInputStream {
+
+    NonClosingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public void close() {
+        //the caller's stream is left open
+    }
+}
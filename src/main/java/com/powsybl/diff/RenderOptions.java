@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+/**
+ * The artifacts to produce when rendering a diff diagram: the SVG, the SVG metadata and the JSON of the diagram graph.
+ * Artifacts that are not requested are not computed.
+ * <p>
+ * By default the CSS of the levels colors is inlined into the SVG; with an external stylesheet base URL, the SVG imports
+ * the shared {@link LevelsStylesheet} of the levels from that URL instead, and the stylesheet is part of the result.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class RenderOptions {
+
+    public static final RenderOptions SVG_ONLY = new RenderOptions(true, false, false, null);
+
+    public static final RenderOptions ALL = new RenderOptions(true, true, true, null);
+
+    private final boolean svg;
+    private final boolean metadata;
+    private final boolean graphJson;
+    private final String stylesheetBaseUrl;
+
+    private RenderOptions(boolean svg, boolean metadata, boolean graphJson, String stylesheetBaseUrl) {
+        this.svg = svg;
+        this.metadata = metadata;
+        this.graphJson = graphJson;
+        this.stylesheetBaseUrl = stylesheetBaseUrl;
+    }
+
+    public static RenderOptions of(boolean svg, boolean metadata, boolean graphJson) {
+        return new RenderOptions(svg, metadata, graphJson, null);
+    }
+
+    public boolean isSvg() {
+        return svg;
+    }
+
+    public boolean isMetadata() {
+        return metadata;
+    }
+
+    public boolean isGraphJson() {
+        return graphJson;
+    }
+
+    public boolean isExternalStylesheet() {
+        return stylesheetBaseUrl != null;
+    }
+
+    /**
+     * @return the URL the levels stylesheets are served from, or null when the CSS is inlined
+     */
+    public String getStylesheetBaseUrl() {
+        return stylesheetBaseUrl;
+    }
+
+    public RenderOptions withSvg(boolean svg) {
+        return new RenderOptions(svg, metadata, graphJson, stylesheetBaseUrl);
+    }
+
+    public RenderOptions withMetadata(boolean metadata) {
+        return new RenderOptions(svg, metadata, graphJson, stylesheetBaseUrl);
+    }
+
+    public RenderOptions withGraphJson(boolean graphJson) {
+        return new RenderOptions(svg, metadata, graphJson, stylesheetBaseUrl);
+    }
+
+    /**
+     * @param stylesheetBaseUrl the URL the levels stylesheets are served from, see {@link LevelsStylesheet#getUrl(String)};
+     *                          null to inline the CSS
+     */
+    public RenderOptions withExternalStylesheet(String stylesheetBaseUrl) {
+        return new RenderOptions(svg, metadata, graphJson, stylesheetBaseUrl);
+    }
+
+    @Override
+    public String toString() {
+        return "RenderOptions(svg=" + svg + ", metadata=" + metadata + ", graphJson=" + graphJson
+                + (stylesheetBaseUrl != null ? ", stylesheetBaseUrl=" + stylesheetBaseUrl : "") + ")";
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Diffs a snapshot of a network against the working variant of a live network, the snapshot being the first state:
+ * the live values of the snapshot equipments are read by id. The diagrams are laid out and labelled on the live network.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class SnapshotDiff extends StatesDiff {
+
+    private final NetworkStateSnapshot snapshot;
+
+    SnapshotDiff(NetworkDiffRenderer renderer, NetworkStateSnapshot snapshot, double epsilon, double voltageEpsilon) {
+        super(renderer, epsilon, voltageEpsilon);
+        this.snapshot = Objects.requireNonNull(snapshot);
+    }
+
+    @Override
+    protected NetworkState[] readStates(List<String> voltageLevels, List<String> branches) {
+        NetworkState state1 = snapshot.getState().slice(voltageLevels, branches);
+        return new NetworkState[] {state1, state1.readSame(network)};
+    }
+}
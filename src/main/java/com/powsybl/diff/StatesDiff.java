@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * Diffs two {@link NetworkState} of the same equipments and renders the diff on the diagrams of a single network.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+abstract class StatesDiff {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    protected final NetworkDiffRenderer renderer;
+    protected final Network network;
+    private final double epsilon;
+    private final double voltageEpsilon;
+
+    StatesDiff(NetworkDiffRenderer renderer, double epsilon, double voltageEpsilon) {
+        this.renderer = Objects.requireNonNull(renderer);
+        this.network = renderer.getNetwork1();
+        if (renderer.getNetwork2() != network) {
+            throw new PowsyblException("Network states diff renderer must render a single network");
+        }
+        this.epsilon = epsilon;
+        this.voltageEpsilon = voltageEpsilon;
+    }
+
+    /**
+     * @return the first and the second state of the given voltage levels and branches
+     */
+    protected abstract NetworkState[] readStates(List<String> voltageLevels, List<String> branches);
+
+    /**
+     * Lays out and labels the diagrams: by default, on the working variant of the network.
+     */
+    protected <T> T render(Supplier<T> supplier) {
+        return supplier.get();
+    }
+
+    private void writeDiff(List<String> voltageLevels, List<String> branches, JsonGenerator generator) throws IOException {
+        NetworkState[] states = readStates(voltageLevels, branches);
+        states[0].writeDiff(states[1], epsilon, voltageEpsilon, generator);
+    }
+
+    String diff(List<String> voltageLevels, List<String> branches) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.useDefaultPrettyPrinter();
+            writeDiff(voltageLevels, branches, generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    ColorsLevelsDiffData diffData(List<String> voltageLevels, List<String> branches) {
+        TokenBuffer tokenBuffer = new TokenBuffer(null, false);
+        try {
+            writeDiff(voltageLevels, branches, tokenBuffer);
+            try (JsonParser parser = tokenBuffer.asParser()) {
+                return new ColorsLevelsDiffData(parser, true);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    String writeVoltageLevelSvg(String vlId, LevelsData levelsData, boolean merged, boolean showCurrent) {
+        VoltageLevel voltageLevel = network.getVoltageLevel(vlId);
+        if (voltageLevel == null) {
+            throw new PowsyblException("Voltage level '" + vlId + "' not found");
+        }
+        ColorsLevelsDiffData diffData = diffData(Collections.singletonList(vlId), NetworkDiffRenderer.getBranches(voltageLevel));
+        return render(() -> renderer.writeVoltageLevelSvg(vlId, diffData, levelsData, merged, showCurrent));
+    }
+
+    String writeSubstationSvg(String substationId, LevelsData levelsData, boolean merged, boolean showCurrent) {
+        Substation substation = network.getSubstation(substationId);
+        if (substation == null) {
+            throw new PowsyblException("Substation '" + substationId + "' not found");
+        }
+        ColorsLevelsDiffData diffData = diffData(NetworkDiffRenderer.getVoltageLevels(substation), NetworkDiffRenderer.getBranches(substation));
+        return render(() -> renderer.writeSubstationSvg(substationId, diffData, levelsData, merged, showCurrent));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.function.Supplier;
+
+import com.google.common.cache.CacheStats;
+import com.powsybl.iidm.network.Network;
+
+/**
+ * Cache of rendered diff SVGs, stored as UTF-8 bytes. Implementations must be thread-safe.
+ * <p>
+ * The keys do not identify the component library and the layout parameters: a cache must only be shared
+ * by renderers using the same ones.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public interface SvgCache {
+
+    /**
+     * A cache that keeps nothing: every SVG is rendered.
+     */
+    SvgCache NONE = new SvgCache() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public byte[] get(SvgCacheKey key, Supplier<byte[]> svg) {
+            return svg.get();
+        }
+
+        @Override
+        public void invalidate(String networkId) {
+        }
+
+        @Override
+        public void invalidateAll() {
+        }
+
+        @Override
+        public CacheStats getStats() {
+            return new CacheStats(0, 0, 0, 0, 0, 0);
+        }
+    };
+
+    /**
+     * @return false if the cache never keeps anything, the keys do not need to be computed then
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * @return true if the SVGs involving the network are discarded whenever it is modified: the SVGs of its diffs
+     * can then be looked up by the diff thresholds, without diffing the networks first
+     */
+    default boolean isWatching(Network network) {
+        return false;
+    }
+
+    /**
+     * @return the cached SVG of the key, rendered by the supplier if it is not cached
+     */
+    byte[] get(SvgCacheKey key, Supplier<byte[]> svg);
+
+    /**
+     * Discards the SVGs involving a network, e.g. when it has been modified.
+     */
+    void invalidate(String networkId);
+
+    void invalidateAll();
+
+    CacheStats getStats();
+}
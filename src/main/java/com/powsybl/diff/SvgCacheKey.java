@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.Objects;
+
+import com.powsybl.iidm.network.Network;
+
+/**
+ * Identifies a rendered diff SVG: the compared networks and variants, the rendered voltage level or substation,
+ * the content of the diff and of the levels, the rendering flags and the URL of the imported levels stylesheet, if any.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class SvgCacheKey {
+
+    public enum Scope {
+        VOLTAGE_LEVEL,
+        SUBSTATION
+    }
+
+    private final String networkId1;
+    private final String variantId1;
+    private final String networkId2;
+    private final String variantId2;
+    private final Scope scope;
+    private final String id;
+    private final String diffFingerprint;
+    private final String levelsFingerprint;
+    private final boolean merged;
+    private final boolean showCurrent;
+    private final boolean usePercentage;
+    private final String stylesheetUrl;
+    private final int hashCode;
+
+    public SvgCacheKey(String networkId1, String variantId1, String networkId2, String variantId2, Scope scope, String id,
+                       String diffFingerprint, String levelsFingerprint, boolean merged, boolean showCurrent, boolean usePercentage) {
+        this(networkId1, variantId1, networkId2, variantId2, scope, id, diffFingerprint, levelsFingerprint, merged, showCurrent, usePercentage, null);
+    }
+
+    /**
+     * @param stylesheetUrl the URL of the levels stylesheet imported by the SVG, null when the CSS is inlined
+     */
+    public SvgCacheKey(String networkId1, String variantId1, String networkId2, String variantId2, Scope scope, String id,
+                       String diffFingerprint, String levelsFingerprint, boolean merged, boolean showCurrent, boolean usePercentage,
+                       String stylesheetUrl) {
+        this.networkId1 = Objects.requireNonNull(networkId1);
+        this.variantId1 = Objects.requireNonNull(variantId1);
+        this.networkId2 = Objects.requireNonNull(networkId2);
+        this.variantId2 = Objects.requireNonNull(variantId2);
+        this.scope = Objects.requireNonNull(scope);
+        this.id = Objects.requireNonNull(id);
+        this.diffFingerprint = Objects.requireNonNull(diffFingerprint);
+        this.levelsFingerprint = Objects.requireNonNull(levelsFingerprint);
+        this.merged = merged;
+        this.showCurrent = showCurrent;
+        this.usePercentage = usePercentage;
+        this.stylesheetUrl = stylesheetUrl;
+        this.hashCode = Objects.hash(networkId1, variantId1, networkId2, variantId2, scope, id, diffFingerprint, levelsFingerprint,
+                                     merged, showCurrent, usePercentage, stylesheetUrl);
+    }
+
+    static SvgCacheKey of(Network network1, Network network2, Scope scope, String id, String diffFingerprint, LevelsData levelsData,
+                          boolean merged, boolean showCurrent, boolean usePercentage, String stylesheetUrl) {
+        return new SvgCacheKey(network1.getId(), network1.getVariantManager().getWorkingVariantId(),
+                               network2.getId(), network2.getVariantManager().getWorkingVariantId(),
+                               scope, id, diffFingerprint, DiffFingerprints.fingerprint(levelsData),
+                               merged, showCurrent, usePercentage, stylesheetUrl);
+    }
+
+    public String getNetworkId1() {
+        return networkId1;
+    }
+
+    public String getVariantId1() {
+        return variantId1;
+    }
+
+    public String getNetworkId2() {
+        return networkId2;
+    }
+
+    public String getVariantId2() {
+        return variantId2;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDiffFingerprint() {
+        return diffFingerprint;
+    }
+
+    public String getLevelsFingerprint() {
+        return levelsFingerprint;
+    }
+
+    public boolean isMerged() {
+        return merged;
+    }
+
+    public boolean isShowCurrent() {
+        return showCurrent;
+    }
+
+    public boolean isUsePercentage() {
+        return usePercentage;
+    }
+
+    public String getStylesheetUrl() {
+        return stylesheetUrl;
+    }
+
+    public boolean involves(String networkId) {
+        return networkId1.equals(networkId) || networkId2.equals(networkId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SvgCacheKey)) {
+            return false;
+        }
+        SvgCacheKey other = (SvgCacheKey) obj;
+        return hashCode == other.hashCode
+                && merged == other.merged
+                && showCurrent == other.showCurrent
+                && usePercentage == other.usePercentage
+                && scope == other.scope
+                && id.equals(other.id)
+                && diffFingerprint.equals(other.diffFingerprint)
+                && levelsFingerprint.equals(other.levelsFingerprint)
+                && networkId1.equals(other.networkId1)
+                && variantId1.equals(other.variantId1)
+                && networkId2.equals(other.networkId2)
+                && variantId2.equals(other.variantId2)
+                && Objects.equals(stylesheetUrl, other.stylesheetUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "SvgCacheKey(" + networkId1 + "/" + variantId1 + ", " + networkId2 + "/" + variantId2 + ", " + scope + " " + id
+                + ", diff " + diffFingerprint + ", levels " + levelsFingerprint + ", merged=" + merged + ", showCurrent=" + showCurrent
+                + ", usePercentage=" + usePercentage + (stylesheetUrl != null ? ", stylesheet " + stylesheetUrl : "") + ")";
+    }
+}
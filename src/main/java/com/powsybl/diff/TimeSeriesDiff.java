@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Network;
+
+/**
+ * Diffs a reference state of a network against a sequence of timestamped states of the same equipments,
+ * e.g. the snapshots of a day.
+ * <p>
+ * The deltas, state values minus reference values, are stored in columns: one contiguous array per equipment value,
+ * indexed by timestamp. Queries over the whole sequence, such as the max absolute current delta of each branch,
+ * scan the columns without reading the states again.
+ * <p>
+ * States are appended in increasing timestamps order. This class is not thread safe.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public final class TimeSeriesDiff {
+
+    private static final int FLOWS = TerminalValue.values().length;
+    private static final int INITIAL_CAPACITY = 96;
+
+    private final NetworkState reference;
+    private final List<Instant> timestamps = new ArrayList<>();
+
+    //column of value v of branch k is at FLOWS * k + v
+    private final double[][] flowsDeltas;
+    private final double[][] busbarsVDeltas;
+    private final double[][] minVDeltas;
+    private final double[][] maxVDeltas;
+    private final List<BitSet> switchesChanges = new ArrayList<>();
+    private int capacity = INITIAL_CAPACITY;
+
+    public TimeSeriesDiff(NetworkStateSnapshot reference) {
+        this.reference = Objects.requireNonNull(reference).getState();
+        flowsDeltas = new double[FLOWS * this.reference.getBranchCount()][capacity];
+        busbarsVDeltas = new double[this.reference.getBusbarCount()][capacity];
+        minVDeltas = new double[this.reference.getVoltageLevelCount()][capacity];
+        maxVDeltas = new double[this.reference.getVoltageLevelCount()][capacity];
+    }
+
+    /**
+     * Appends the state of the reference equipments, read by id from the working variant of the network.
+     */
+    public TimeSeriesDiff add(Instant timestamp, Network network) {
+        return add(timestamp, reference.readSame(Objects.requireNonNull(network)));
+    }
+
+    /**
+     * Appends the state of the reference equipments, taken from the snapshot.
+     */
+    public TimeSeriesDiff add(Instant timestamp, NetworkStateSnapshot snapshot) {
+        return add(timestamp, Objects.requireNonNull(snapshot).getState().slice(reference.getVoltageLevelIds(), reference.getBranchIds()));
+    }
+
+    private TimeSeriesDiff add(Instant timestamp, NetworkState state) {
+        Objects.requireNonNull(timestamp);
+        if (!timestamps.isEmpty() && !timestamp.isAfter(timestamps.get(timestamps.size() - 1))) {
+            throw new PowsyblException("Timestamp " + timestamp + " is not after the last timestamp " + timestamps.get(timestamps.size() - 1));
+        }
+        reference.checkSameEquipments(state);
+        int t = timestamps.size();
+        if (t == capacity) {
+            grow();
+        }
+        for (int k = 0; k < reference.getBranchCount(); k++) {
+            for (TerminalValue value : TerminalValue.values()) {
+                flowsDeltas[FLOWS * k + value.ordinal()][t] = state.getFlow(k, value) - reference.getFlow(k, value);
+            }
+        }
+        for (int k = 0; k < reference.getBusbarCount(); k++) {
+            busbarsVDeltas[k][t] = state.getBusbarV(k) - reference.getBusbarV(k);
+        }
+        for (int k = 0; k < reference.getVoltageLevelCount(); k++) {
+            minVDeltas[k][t] = state.getMinV(k) - reference.getMinV(k);
+            maxVDeltas[k][t] = state.getMaxV(k) - reference.getMaxV(k);
+        }
+        BitSet switchesChanged = new BitSet();
+        for (int k = 0; k < reference.getSwitchCount(); k++) {
+            if (state.isSwitchOpen(k) != reference.isSwitchOpen(k)) {
+                switchesChanged.set(k);
+            }
+        }
+        switchesChanges.add(switchesChanged);
+        timestamps.add(timestamp);
+        return this;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        grow(flowsDeltas);
+        grow(busbarsVDeltas);
+        grow(minVDeltas);
+        grow(maxVDeltas);
+    }
+
+    private void grow(double[][] columns) {
+        for (int k = 0; k < columns.length; k++) {
+            double[] column = new double[capacity];
+            System.arraycopy(columns[k], 0, column, 0, timestamps.size());
+            columns[k] = column;
+        }
+    }
+
+    public List<Instant> getTimestamps() {
+        return Collections.unmodifiableList(timestamps);
+    }
+
+    public List<String> getVoltageLevelIds() {
+        return reference.getVoltageLevelIds();
+    }
+
+    public List<String> getBranchIds() {
+        return reference.getBranchIds();
+    }
+
+    private double[] column(double[] column) {
+        double[] values = new double[timestamps.size()];
+        System.arraycopy(column, 0, values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * @return the deltas of the branch flow, indexed by timestamp
+     */
+    public double[] getBranchDeltas(String branchId, TerminalValue value) {
+        return column(flowsDeltas[FLOWS * reference.indexOfBranch(branchId) + value.ordinal()]);
+    }
+
+    /**
+     * @return the deltas of the busbar voltage, indexed by timestamp
+     */
+    public double[] getBusbarVoltageDeltas(String busbarId) {
+        return column(busbarsVDeltas[reference.indexOfBusbar(busbarId)]);
+    }
+
+    public double[] getMinVoltageDeltas(String vlId) {
+        return column(minVDeltas[reference.indexOfVoltageLevel(vlId)]);
+    }
+
+    public double[] getMaxVoltageDeltas(String vlId) {
+        return column(maxVDeltas[reference.indexOfVoltageLevel(vlId)]);
+    }
+
+    /**
+     * @return the switches whose status changed at the timestamp index
+     */
+    public List<String> getSwitchesDiff(int index) {
+        return switchesChanges.get(index).stream().mapToObj(reference::getSwitchId).collect(Collectors.toList());
+    }
+
+    //index of the max absolute value of the column, NaN values are ignored; -1 if all the values are NaN
+    private int indexOfMaxAbs(double[] column) {
+        int index = -1;
+        double max = Double.NaN;
+        for (int t = 0; t < timestamps.size(); t++) {
+            double value = Math.abs(column[t]);
+            if (!Double.isNaN(value) && (index == -1 || value > max)) {
+                index = t;
+                max = value;
+            }
+        }
+        return index;
+    }
+
+    private double maxAbs(double[] column) {
+        int index = indexOfMaxAbs(column);
+        return index != -1 ? Math.abs(column[index]) : Double.NaN;
+    }
+
+    /**
+     * @return the max absolute delta of the branch flow over the sequence, NaN if there is none
+     */
+    public double getMaxAbsBranchDelta(String branchId, TerminalValue value) {
+        return maxAbs(flowsDeltas[FLOWS * reference.indexOfBranch(branchId) + value.ordinal()]);
+    }
+
+    /**
+     * @return the timestamp of the max absolute delta of the branch flow, null if there is none
+     */
+    public Instant getMaxAbsBranchDeltaTimestamp(String branchId, TerminalValue value) {
+        int index = indexOfMaxAbs(flowsDeltas[FLOWS * reference.indexOfBranch(branchId) + value.ordinal()]);
+        return index != -1 ? timestamps.get(index) : null;
+    }
+
+    /**
+     * @return the max absolute delta of the flow of each branch over the sequence, e.g. the max current delta of each branch over a day
+     */
+    public Map<String, Double> getMaxAbsBranchDeltas(TerminalValue value) {
+        Map<String, Double> maxDeltas = new LinkedHashMap<>();
+        for (int k = 0; k < reference.getBranchCount(); k++) {
+            maxDeltas.put(reference.getBranchId(k), maxAbs(flowsDeltas[FLOWS * k + value.ordinal()]));
+        }
+        return maxDeltas;
+    }
+
+    /**
+     * @return the max absolute voltage delta of each busbar over the sequence
+     */
+    public Map<String, Double> getMaxAbsBusbarVoltageDeltas() {
+        Map<String, Double> maxDeltas = new LinkedHashMap<>();
+        for (int k = 0; k < reference.getBusbarCount(); k++) {
+            maxDeltas.put(reference.getBusbarId(k), maxAbs(busbarsVDeltas[k]));
+        }
+        return maxDeltas;
+    }
+}
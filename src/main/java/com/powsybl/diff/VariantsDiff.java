@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.VariantManager;
+
+/**
+ * Diffs two variants of the same network, without copying it: the compared values are read from each variant
+ * into a {@link NetworkState}, switching the working variant of the network, which is restored afterwards.
+ * The diagrams are laid out and labelled on the first variant.
+ * <p>
+ * The working variant of the network is switched while diffing and rendering: unless the variant multi thread access
+ * is allowed, the network must not be used concurrently.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+final class VariantsDiff extends StatesDiff {
+
+    private final String variantId1;
+    private final String variantId2;
+
+    VariantsDiff(NetworkDiffRenderer renderer, String variantId1, String variantId2, double epsilon, double voltageEpsilon) {
+        super(renderer, epsilon, voltageEpsilon);
+        this.variantId1 = Objects.requireNonNull(variantId1);
+        this.variantId2 = Objects.requireNonNull(variantId2);
+    }
+
+    //runs on the given working variant, then restores the working variant
+    static <T> T onVariant(Network network, String variantId, Supplier<T> supplier) {
+        VariantManager variantManager = network.getVariantManager();
+        String workingVariantId = variantManager.getWorkingVariantId();
+        variantManager.setWorkingVariant(variantId);
+        try {
+            return supplier.get();
+        } finally {
+            variantManager.setWorkingVariant(workingVariantId);
+        }
+    }
+
+    @Override
+    protected NetworkState[] readStates(List<String> voltageLevels, List<String> branches) {
+        return new NetworkState[] {
+            onVariant(network, variantId1, () -> NetworkState.read(network, voltageLevels, branches)),
+            onVariant(network, variantId2, () -> NetworkState.read(network, voltageLevels, branches))
+        };
+    }
+
+    @Override
+    protected <T> T render(Supplier<T> supplier) {
+        return onVariant(network, variantId1, supplier);
+    }
+}
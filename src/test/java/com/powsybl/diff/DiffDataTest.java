@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.sld.model.FeederWithSideNode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Massimo Ferraro <massimo.ferraro@soft.it>
+ */
+public class DiffDataTest {
+
+    private static InputStream getDiffStream() {
+        return DiffDataTest.class.getResourceAsStream("/diff.json");
+    }
+
+    private static String getDiffString() throws IOException {
+        try (InputStream is = getDiffStream()) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void checkColorsLevelsDiffData(ColorsLevelsDiffData diffData) {
+        assertEquals(Arrays.asList("v1b1", "v1d1"), diffData.getSwitchesDiff());
+        BranchSidesDiffs branchesSideDiffs = diffData.getBranchesSideDiffs();
+        assertEquals(2, branchesSideDiffs.size());
+        int side1 = branchesSideDiffs.indexOf("l1", Branch.Side.ONE);
+        assertEquals(10.0, branchesSideDiffs.getpDelta(side1), 0);
+        assertEquals(2.0, branchesSideDiffs.getqDelta(side1), 0);
+        assertEquals(15.0, branchesSideDiffs.getiDelta(side1), 0);
+        assertEquals(5.0, branchesSideDiffs.getpDeltaP(side1), 0);
+        assertTrue(Double.isNaN(branchesSideDiffs.getqDeltaP(side1)));
+        assertEquals(7.5, branchesSideDiffs.getiDeltaP(side1), 0);
+        int side2 = branchesSideDiffs.indexOf("l1", FeederWithSideNode.Side.TWO);
+        assertEquals(14.0, branchesSideDiffs.getiDelta(side2), 0);
+        assertTrue(Double.isNaN(branchesSideDiffs.getqDeltaP(side2)));
+        assertEquals(Branch.Side.TWO, branchesSideDiffs.getSide(side2));
+        assertEquals("l1", branchesSideDiffs.getBranchId(side2));
+        assertEquals(-1, branchesSideDiffs.indexOf("l1", FeederWithSideNode.Side.THREE));
+        assertEquals(-1, branchesSideDiffs.indexOf("l2", Branch.Side.ONE));
+        BusbarsDiffs busbarsDiffs = diffData.getBusbarsDiffs();
+        int busbar = busbarsDiffs.indexOf("1.1");
+        assertEquals(1.25, busbarsDiffs.getDelta(busbar), 0);
+        assertEquals(0.3125, busbarsDiffs.getDeltaP(busbar), 0);
+        assertFalse(busbarsDiffs.hasDelta(busbarsDiffs.indexOf("1.2")));
+    }
+
+    @Test
+    public void testColorsLevelsDiffData() throws IOException {
+        checkColorsLevelsDiffData(new ColorsLevelsDiffData(getDiffString()));
+        try (Reader reader = new InputStreamReader(getDiffStream(), StandardCharsets.UTF_8)) {
+            checkColorsLevelsDiffData(ColorsLevelsDiffData.parseData(reader));
+        }
+        try (InputStream is = getDiffStream()) {
+            checkColorsLevelsDiffData(ColorsLevelsDiffData.parseData(is));
+        }
+    }
+
+    @Test
+    public void testSparseColorsLevelsDiffData() throws IOException {
+        String jsonDiff = "{\"diff.VoltageLevels\": [{\"vl.switchesStatus-delta\": [],"
+                + " \"vl.busbarsVoltage-delta\": {\"b1\": 0.0, \"b2\": 1.5}, \"vl.busbarsVoltage-delta-percent\": {\"b1\": 0.0, \"b2\": 0.5}}],"
+                + " \"diff.Branches\": [{\"branch.branchId1\": \"l1\", \"branch.terminal1.p-delta\": 0.0, \"branch.terminal1.q-delta\": 0.0, \"branch.terminal1.i-delta\": 0.0,"
+                + " \"branch.terminal1.p-delta-percent\": 0.0, \"branch.terminal1.q-delta-percent\": 0.0, \"branch.terminal1.i-delta-percent\": 0.0,"
+                + " \"branch.terminal2.p-delta\": 0.0, \"branch.terminal2.q-delta\": 0.0, \"branch.terminal2.i-delta\": 0.0,"
+                + " \"branch.terminal2.p-delta-percent\": 0.0, \"branch.terminal2.q-delta-percent\": 0.0, \"branch.terminal2.i-delta-percent\": 0.0}]}";
+        ColorsLevelsDiffData denseDiffData = new ColorsLevelsDiffData(jsonDiff, false);
+        assertEquals(2, denseDiffData.getBranchesSideDiffs().size());
+        assertEquals(2, denseDiffData.getBusbarsDiffs().size());
+        ColorsLevelsDiffData sparseDiffData = new ColorsLevelsDiffData(jsonDiff, true);
+        assertTrue(sparseDiffData.getBranchesSideDiffs().isEmpty());
+        assertEquals(1, sparseDiffData.getBusbarsDiffs().size());
+        assertEquals(1.5, sparseDiffData.getBusbarsDiffs().getDelta(sparseDiffData.getBusbarsDiffs().indexOf("b2")), 0);
+        checkColorsLevelsDiffData(new ColorsLevelsDiffData(getDiffString(), true));
+    }
+
+    @Test
+    public void testDiffData() throws IOException {
+        try (InputStream is = getDiffStream()) {
+            DiffData diffData = DiffData.parseData(is);
+            assertEquals(Arrays.asList("v1b1", "v1d1"), diffData.getSwitchesIds());
+            assertEquals(Collections.singletonList("l1"), diffData.getBranchesIds());
+        }
+    }
+
+    @Test
+    public void testDiffData2() throws IOException {
+        try (InputStream is = getDiffStream()) {
+            DiffData2 diffData = DiffData2.parseData(is);
+            assertEquals(Arrays.asList("v1b1", "v1d1"), diffData.getSwitchesIds());
+            assertEquals(Collections.singletonList("l1"), diffData.getBranchesIds());
+            assertEquals(1, diffData.getLinesDiffData().size());
+            LineDiffData lineDiffData = diffData.getLinesDiffData().get(0);
+            assertEquals("l1", lineDiffData.getLineId());
+            assertEquals("10.000", lineDiffData.getpDelta1());
+            assertEquals("14.000", lineDiffData.getiDelta2());
+            assertEquals("5.00", lineDiffData.getpDelta1Perc());
+            assertEquals("Infinity", lineDiffData.getqDelta1Perc());
+            assertEquals("Nan", lineDiffData.getqDelta2Perc());
+            VlDiffData vlDiffData = diffData.getVlDiffData().get("v1");
+            assertEquals("0.500", vlDiffData.getMinVDelta());
+            assertEquals("1.250", vlDiffData.getMaxVDelta());
+            assertEquals("0.13", vlDiffData.getMinVDeltaPerc());
+            assertEquals("Nan", vlDiffData.getMaxVDeltaPerc());
+        }
+    }
+
+    @Test
+    public void testFingerprints() throws IOException {
+        String diff = getDiffString();
+        String fingerprint = DiffFingerprints.fingerprint(new ColorsLevelsDiffData(diff));
+        assertEquals(fingerprint, DiffFingerprints.fingerprint(new ColorsLevelsDiffData(diff)));
+        assertFalse(fingerprint.equals(DiffFingerprints.fingerprint(new ColorsLevelsDiffData(diff.replace("1.25", "1.5")))));
+
+        String levels = "{ \"levels\": [{\"id\": 1, \"i\": 0.1, \"v\": 0.1, \"c\": \"red\" }]}";
+        String levelsFingerprint = DiffFingerprints.fingerprint(LevelsData.parseData(levels));
+        assertEquals(levelsFingerprint, DiffFingerprints.fingerprint(LevelsData.parseData(levels)));
+        assertFalse(levelsFingerprint.equals(DiffFingerprints.fingerprint(LevelsData.parseData(levels.replace("red", "blue")))));
+
+        //ids are not concatenated
+        String switches1 = "{\"diff.VoltageLevels\": [{\"vl.vlId1\": \"v1\", \"vl.switchesStatus-delta\": [\"ab\", \"c\"]}]}";
+        String switches2 = "{\"diff.VoltageLevels\": [{\"vl.vlId1\": \"v1\", \"vl.switchesStatus-delta\": [\"a\", \"bc\"]}]}";
+        assertFalse(DiffFingerprints.fingerprint(new ColorsLevelsDiffData(switches1)).equals(DiffFingerprints.fingerprint(new ColorsLevelsDiffData(switches2))));
+
+        //the order of the entries does not matter
+        String switches3 = "{\"diff.VoltageLevels\": [{\"vl.vlId1\": \"v1\", \"vl.switchesStatus-delta\": [\"c\", \"ab\"]}]}";
+        assertEquals(DiffFingerprints.fingerprint(new ColorsLevelsDiffData(switches1)), DiffFingerprints.fingerprint(new ColorsLevelsDiffData(switches3)));
+        assertFalse(DiffFingerprints.fingerprint(0.0, 0.0).equals(DiffFingerprints.fingerprint(0.1, 0.0)));
+    }
+
+    //the linear scan of the reversed levels, replaced by the classifier
+    private static String scanLevels(List<LevelData> levels, double delta) {
+        for (int k = levels.size() - 1; k >= 0; k--) {
+            if (Math.abs(delta) > levels.get(k).getI()) {
+                return MultipleColorsLevelsDiffStyleProvider.LEVEL_PREFIX + levels.get(k).getId();
+            }
+        }
+        return MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX;
+    }
+
+    @Test
+    public void testLevelsClassifier() {
+        //unsorted thresholds, with a duplicate
+        List<LevelData> levels = Arrays.asList(new LevelData(1, 10.0, 1.0, "yellow"), new LevelData(2, 50.0, 2.0, "orange"),
+                new LevelData(3, 20.0, 3.0, "red"), new LevelData(4, 20.0, 4.0, "purple"));
+        LevelsClassifier classifier = LevelsClassifier.ofCurrent(levels);
+        for (double delta : new double[] {0.0, 5.0, 10.0, 10.5, -15.0, 20.0, 25.0, 50.0, 75.0, -1000.0, Double.POSITIVE_INFINITY}) {
+            assertEquals(scanLevels(levels, delta), classifier.classify(delta));
+        }
+        assertEquals(MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX, classifier.classify(Double.NaN));
+        assertEquals("-level-4", classifier.getHighestSuffix());
+        assertEquals("-level-3", LevelsClassifier.ofVoltage(levels).classify(3.5));
+        assertEquals(MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX, LevelsClassifier.ofCurrent(Collections.emptyList()).classify(100.0));
+    }
+
+    @Test
+    public void testLevelsStylesheet() {
+        String levels = "{ \"levels\": [{\"id\": 1, \"i\": 0.1, \"v\": 0.1, \"c\": \"red\" }, {\"id\": 2, \"i\": 0.2, \"v\": 0.2, \"c\": \"blue\" }]}";
+        LevelsStylesheet stylesheet = LevelsStylesheet.of(LevelsData.parseData(levels));
+        assertTrue(stylesheet == LevelsStylesheet.of(LevelsData.parseData(levels)));
+        assertTrue(stylesheet.getCss().startsWith(".sld-constant-color-level-0 {stroke: black; fill: none}\n"));
+        assertTrue(stylesheet.getCss().contains("\n\n.sld-constant-color-level-2 {stroke: blue; fill: none}\n"));
+        assertTrue(stylesheet.getCss().endsWith(".sld-two-wt.sld-constant-color-level-2 {stroke: blue}\n"));
+        assertEquals(DiffFingerprints.fingerprint(stylesheet.getCss()), stylesheet.getHash());
+        assertEquals("diff-levels-" + stylesheet.getHash() + ".css", stylesheet.getFileName());
+        assertEquals("/styles/" + stylesheet.getFileName(), stylesheet.getUrl("/styles"));
+        assertEquals("/styles/" + stylesheet.getFileName(), stylesheet.getUrl("/styles/"));
+        assertTrue(stylesheet == LevelsStylesheet.get(stylesheet.getHash()).orElse(null));
+        assertTrue(stylesheet == LevelsStylesheet.getByFileName(stylesheet.getFileName()).orElse(null));
+        assertFalse(LevelsStylesheet.getByFileName("diff.css").isPresent());
+
+        //evicted from the served stylesheets, served again as soon as it is used
+        LevelsStylesheet.evictServed(stylesheet.getHash());
+        assertFalse(LevelsStylesheet.get(stylesheet.getHash()).isPresent());
+        assertTrue(stylesheet == LevelsStylesheet.of(LevelsData.parseData(levels)));
+        assertTrue(stylesheet == LevelsStylesheet.getByFileName(stylesheet.getFileName()).orElse(null));
+
+        //other thresholds, same colors: same stylesheet content
+        LevelsStylesheet sameColors = LevelsStylesheet.of(LevelsData.parseData(levels.replace("0.2", "0.3")));
+        assertTrue(stylesheet == sameColors);
+        assertFalse(stylesheet.getHash().equals(LevelsStylesheet.of(LevelsData.parseData(levels.replace("blue", "green"))).getHash()));
+        assertEquals(stylesheet.getCss(), new MultipleColorsLevelsDiffStyleProvider(new ColorsLevelsDiffData(true), LevelsData.parseData(levels), true).getCss());
+    }
+
+    @Test
+    public void testParsedLevelsData() {
+        String levels = "{ \"levels\": [{\"id\": 1, \"i\": 0.1, \"v\": 0.1, \"c\": \"red\" }]}";
+        LevelsData levelsData = LevelsData.parseData(levels, false);
+        assertTrue(levelsData == LevelsData.parseData(levels, false));
+        assertEquals("red", levelsData.getLevels().get(0).getC());
+        try {
+            levelsData.getLevels().clear();
+            fail();
+        } catch (UnsupportedOperationException ignored) {
+            //cached levels are shared
+        }
+
+        //URL encoded levels are cached apart
+        String encodedLevels = levels.replace(" ", "%20").replace("\"", "%22");
+        LevelsData decodedLevelsData = LevelsData.parseData(encodedLevels);
+        assertFalse(levelsData == decodedLevelsData);
+        assertTrue(decodedLevelsData == LevelsData.parseData(encodedLevels));
+        assertEquals(DiffFingerprints.fingerprint(levelsData), DiffFingerprints.fingerprint(decodedLevelsData));
+
+        assertTrue(CompiledLevels.of(levelsData) == CompiledLevels.of(decodedLevelsData));
+        assertEquals("-level-1", CompiledLevels.of(levelsData).getCurrentLevels().classify(1.0));
+        assertTrue(LevelsData.parseData("null", false) == null);
+        try {
+            LevelsData.parseData("{ \"levels\": 1 ", false);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+            //not cached either
+        }
+    }
+
+    private static String branchDiff(String branchId, String iDelta1, String iDelta2) {
+        return "{\"branch.branchId1\": \"" + branchId + "\", \"branch.terminalStatus-delta\": [], "
+                + "\"branch.terminal1.i-delta\": " + iDelta1 + ", \"branch.terminal2.i-delta\": " + iDelta2 + "}";
+    }
+
+    @Test
+    public void testDiffQuery() throws IOException {
+        String diff = "{\"diff.VoltageLevels\": [], \"diff.Branches\": ["
+                + branchDiff("l1", "15.0", "14.0") + ", "
+                + branchDiff("l2", "3.0", "40.0") + ", "
+                + branchDiff("l3", "\"Nan\"", "1.0") + "]}";
+        DiffQuery query = new DiffQuery(new ColorsLevelsDiffData(diff));
+        List<DiffQuery.Entry> top = query.topBranches(2, DiffQuery.Quantity.I, false);
+        assertEquals(2, top.size());
+        assertEquals("l2", top.get(0).getId());
+        assertEquals(Branch.Side.TWO, top.get(0).getSide());
+        assertEquals(40.0, top.get(0).getDelta(), 0);
+        assertEquals("l1", top.get(1).getId());
+        assertEquals(Branch.Side.ONE, top.get(1).getSide());
+        assertEquals(3, query.topBranches(10, DiffQuery.Quantity.I, false).size());
+
+        LevelsData levelsData = LevelsData.parseData("{ \"levels\": [{\"id\": 1, \"i\": 10, \"v\": 1, \"c\": \"red\" },"
+                + " {\"id\": 2, \"i\": 20, \"v\": 2, \"c\": \"blue\" }]}", false);
+        //NaN deltas are at level 0
+        Map<Integer, Integer> counts = query.countBranchSidesByLevel(levelsData, false);
+        assertEquals(Integer.valueOf(3), counts.get(0));
+        assertEquals(Integer.valueOf(2), counts.get(1));
+        assertEquals(Integer.valueOf(1), counts.get(2));
+
+        DiffQuery busbarsQuery = new DiffQuery(new ColorsLevelsDiffData(getDiffString()));
+        List<DiffQuery.Entry> topBusbars = busbarsQuery.topBusbars(5, false);
+        assertEquals(1, topBusbars.size());
+        assertEquals("1.1", topBusbars.get(0).getId());
+        assertEquals(Integer.valueOf(1), busbarsQuery.countBusbarsByLevel(levelsData, false).get(1));
+        try {
+            query.inCountries(Collections.emptyList());
+            fail();
+        } catch (PowsyblException ignored) {
+            //filtering requires the network
+        }
+    }
+
+    private static void checkSameDiffData2(DiffData2 expected, DiffData2 actual) {
+        assertEquals(expected.getSwitchesIds(), actual.getSwitchesIds());
+        assertEquals(expected.getBranchesIds(), actual.getBranchesIds());
+        assertEquals(expected.getVlDiffData().toString(), actual.getVlDiffData().toString());
+        assertEquals(expected.getLinesDiffData().size(), actual.getLinesDiffData().size());
+        for (int i = 0; i < expected.getLinesDiffData().size(); i++) {
+            LineDiffData expectedLine = expected.getLinesDiffData().get(i);
+            LineDiffData actualLine = actual.getLinesDiffData().get(i);
+            assertEquals(expectedLine.getLineId(), actualLine.getLineId());
+            assertEquals(expectedLine.getpDelta1(), actualLine.getpDelta1());
+            assertEquals(expectedLine.getiDelta2(), actualLine.getiDelta2());
+            assertEquals(expectedLine.getqDelta1Perc(), actualLine.getqDelta1Perc());
+            assertEquals(expectedLine.getqDelta2Perc(), actualLine.getqDelta2Perc());
+        }
+    }
+
+    @Test
+    public void testDiffCodec() throws IOException {
+        String diff = getDiffString();
+        byte[] raw = DiffCodec.raw().encode(diff);
+        assertTrue(raw.length < diff.getBytes(StandardCharsets.UTF_8).length / 2);
+        checkColorsLevelsDiffData(DiffCodec.decodeColorsLevelsDiffData(raw, false));
+        checkSameDiffData2(DiffData2.parseData(diff), DiffCodec.decodeDiffData2(raw));
+
+        //the deltas of the test diff are multiples of the quantum, they are decoded exactly
+        byte[] quantised = DiffCodec.quantised(1.0 / 1024).encode(diff);
+        assertTrue(quantised.length < raw.length);
+        checkColorsLevelsDiffData(DiffCodec.decodeColorsLevelsDiffData(quantised, false));
+        checkSameDiffData2(DiffData2.parseData(diff), DiffCodec.decodeDiffData2(quantised));
+
+        try (InputStream is = getDiffStream()) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            DiffCodec.raw().encode(is, os);
+            assertTrue(Arrays.equals(raw, os.toByteArray()));
+        }
+        try {
+            DiffCodec.decodeDiffData2(diff.getBytes(StandardCharsets.UTF_8));
+            fail();
+        } catch (PowsyblException ignored) {
+            //not a binary diff
+        }
+    }
+}
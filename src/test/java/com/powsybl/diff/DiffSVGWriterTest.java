@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import static com.powsybl.sld.svg.DiagramStyles.ARROW_ACTIVE_CLASS;
+import static com.powsybl.sld.svg.DiagramStyles.ARROW_REACTIVE_CLASS;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.powsybl.iidm.network.Branch;
+import com.powsybl.iidm.network.Country;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.SwitchKind;
+import com.powsybl.iidm.network.TopologyKind;
+import com.powsybl.iidm.network.VoltageLevel;
+import com.powsybl.sld.NetworkGraphBuilder;
+import com.powsybl.sld.VoltageLevelDiagram;
+import com.powsybl.sld.layout.LayoutParameters;
+import com.powsybl.sld.layout.PositionVoltageLevelLayoutFactory;
+import com.powsybl.sld.library.ComponentLibrary;
+import com.powsybl.sld.model.FeederNode;
+import com.powsybl.sld.model.VoltageLevelGraph;
+import com.powsybl.sld.svg.DefaultSVGWriter;
+import com.powsybl.sld.svg.DiagramLabelProvider;
+import com.powsybl.sld.svg.DiagramStyleProvider;
+import com.powsybl.sld.svg.GraphMetadata;
+
+/**
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public class DiffSVGWriterTest {
+
+    private static final String VL_ID = "v1";
+
+    /**
+     * The writer used before arrows restyling was restricted to the current feeder: every group of the document
+     * was restyled, for each feeder.
+     */
+    private static class FullDocumentDiffSVGWriter extends DefaultSVGWriter {
+
+        private final ExtendedDiagramStyleProvider styleProvider;
+
+        FullDocumentDiffSVGWriter(ComponentLibrary componentLibrary, LayoutParameters layoutParameters, ExtendedDiagramStyleProvider styleProvider) {
+            super(componentLibrary, layoutParameters);
+            this.styleProvider = styleProvider;
+        }
+
+        @Override
+        protected void insertArrowsAndLabels(String prefixId, String wireId, List<Double> points, Element root, FeederNode feederNode,
+                                             GraphMetadata metadata, DiagramLabelProvider initProvider, boolean feederArrowSymmetry) {
+            super.insertArrowsAndLabels(prefixId, wireId, points, root, feederNode, metadata, initProvider, feederArrowSymmetry);
+            for (int i = 0; i < root.getElementsByTagName(GROUP).getLength(); i++) {
+                Node gNode = root.getElementsByTagName(GROUP).item(i);
+                if (gNode instanceof Element) {
+                    List<String> classesList = Arrays.asList(((Element) gNode).getAttribute(CLASS).split(" "));
+                    Collections.replaceAll(classesList, ARROW_ACTIVE_CLASS, styleProvider.getArrowsActiveStyle(feederNode, componentLibrary));
+                    Collections.replaceAll(classesList, ARROW_REACTIVE_CLASS, styleProvider.getArrowsReactiveStyle(feederNode, componentLibrary));
+                    ((Element) gNode).setAttribute(CLASS, String.join(" ", classesList));
+                }
+            }
+        }
+
+        @Override
+        protected void addStyle(Document document, DiagramStyleProvider styleProvider, DiagramLabelProvider labelProvider,
+                                List<VoltageLevelGraph> graphs, Set<String> listUsedComponentSVG) {
+            super.addStyle(document, styleProvider, labelProvider, graphs, listUsedComponentSVG);
+            Node styleNode = document.getElementsByTagName(STYLE).item(0);
+            Node oldCDataNode = styleNode.getFirstChild();
+            styleNode.replaceChild(document.createCDATASection(oldCDataNode.getNodeValue() + "\n" + this.styleProvider.getCss() + "\n"), oldCDataNode);
+        }
+    }
+
+    /**
+     * Creates a voltage level with the given number of feeders, cycling over loads, lines and two windings transformers:
+     * the lines and the transformers are connected by their side ONE to the voltage level.
+     */
+    static Network createNetwork(int feeders) {
+        Network network = Network.create("test" + feeders, "test");
+        Substation substation = network.newSubstation().setId("s1").setCountry(Country.FR).add();
+        VoltageLevel vl = substation.newVoltageLevel().setId(VL_ID).setTopologyKind(TopologyKind.NODE_BREAKER).setNominalV(380.0).add();
+        vl.getNodeBreakerView().newBusbarSection().setId("1.1").setNode(0).add();
+        VoltageLevel vl2 = substation.newVoltageLevel().setId("v2").setTopologyKind(TopologyKind.NODE_BREAKER).setNominalV(225.0).add();
+        vl2.getNodeBreakerView().newBusbarSection().setId("2.1").setNode(0).add();
+        for (int i = 0; i < feeders; i++) {
+            int node = 1 + 2 * i;
+            vl.getNodeBreakerView().newSwitch().setId("d" + i).setKind(SwitchKind.DISCONNECTOR).setRetained(false)
+                    .setOpen(false).setNode1(0).setNode2(node).add();
+            vl.getNodeBreakerView().newSwitch().setId("b" + i).setKind(SwitchKind.BREAKER).setRetained(false)
+                    .setOpen(false).setNode1(node).setNode2(node + 1).add();
+            String feederId = getFeederId(i);
+            if (feederId.startsWith("load")) {
+                vl.newLoad().setId(feederId).setNode(node + 1).setP0(10.0).setQ0(5.0).add()
+                        .getTerminal().setP(10.0).setQ(5.0);
+                continue;
+            }
+            vl2.getNodeBreakerView().newSwitch().setId("v2d" + i).setKind(SwitchKind.DISCONNECTOR).setRetained(false)
+                    .setOpen(false).setNode1(0).setNode2(1 + i).add();
+            Branch<?> branch;
+            if (feederId.startsWith("line")) {
+                branch = network.newLine().setId(feederId).setVoltageLevel1(VL_ID).setNode1(node + 1).setVoltageLevel2("v2").setNode2(1 + i)
+                        .setR(1.0).setX(10.0).setG1(0.0).setB1(0.0).setG2(0.0).setB2(0.0).add();
+            } else {
+                branch = substation.newTwoWindingsTransformer().setId(feederId).setVoltageLevel1(VL_ID).setNode1(node + 1)
+                        .setVoltageLevel2("v2").setNode2(1 + i).setRatedU1(380.0).setRatedU2(225.0)
+                        .setR(0.5).setX(20.0).setG(0.0).setB(0.0).add();
+            }
+            branch.getTerminal1().setP(100.0).setQ(20.0);
+            branch.getTerminal2().setP(-99.0).setQ(-18.0);
+        }
+        return network;
+    }
+
+    private static String getFeederId(int feeder) {
+        switch (feeder % 3) {
+            case 0:
+                return "load" + feeder;
+            case 1:
+                return "line" + feeder;
+            default:
+                return "twt" + feeder;
+        }
+    }
+
+    //the level of the P delta of side ONE of the branch of the feeder, among the levels of createLevelsData(): 0 to 3
+    private static int getActiveLevel(int feeder) {
+        return (feeder / 3 + feeder % 3) % 4;
+    }
+
+    //the level of the Q delta of side ONE of the branch of the feeder, never the active one
+    private static int getReactiveLevel(int feeder) {
+        return 3 - getActiveLevel(feeder);
+    }
+
+    //the percent deltas of side ONE of the branches land on the levels given by getActiveLevel and getReactiveLevel
+    private static ColorsLevelsDiffData createDiffData(int feeders) throws IOException {
+        StringBuilder branches = new StringBuilder();
+        for (int i = 0; i < feeders; i++) {
+            String feederId = getFeederId(i);
+            if (feederId.startsWith("load")) {
+                continue;
+            }
+            branches.append(branches.length() == 0 ? "" : ", ")
+                    .append("{ \"branch.branchId1\" : \"").append(feederId).append("\", \"branch.branchId2\" : \"").append(feederId).append('"')
+                    .append(", \"branch.terminal1.p-delta-percent\" : ").append(5.0 + 10.0 * getActiveLevel(i))
+                    .append(", \"branch.terminal1.q-delta-percent\" : ").append(5.0 + 10.0 * getReactiveLevel(i))
+                    .append(", \"branch.terminal1.i-delta-percent\" : 0.0")
+                    .append(", \"branch.terminal2.p-delta-percent\" : 0.0")
+                    .append(", \"branch.terminal2.q-delta-percent\" : 0.0")
+                    .append(", \"branch.terminal2.i-delta-percent\" : 0.0 }");
+        }
+        String json = "{ \"network1\" : \"test\", \"network2\" : \"test\", \"diff.VoltageLevels\" : [ ], \"diff.Branches\" : [ " + branches + " ] }";
+        return ColorsLevelsDiffData.parseData(new StringReader(json));
+    }
+
+    private static LevelsData createLevelsData() {
+        return LevelsData.parseData("{ \"levels\": [{\"id\": 1, \"i\": 10.0, \"v\": 10.0, \"c\": \"green\" },"
+                + " {\"id\": 2, \"i\": 20.0, \"v\": 20.0, \"c\": \"orange\" },"
+                + " {\"id\": 3, \"i\": 30.0, \"v\": 30.0, \"c\": \"red\" }]}");
+    }
+
+    private static VoltageLevelDiagram buildDiagram(Network network) {
+        return VoltageLevelDiagram.build(new NetworkGraphBuilder(network), VL_ID, new PositionVoltageLevelLayoutFactory(), false);
+    }
+
+    /**
+     * @return the SVG and the metadata of the diagram
+     */
+    private static String[] writeSvg(Network network, VoltageLevelDiagram diagram, int feeders, boolean fullDocumentRestyling) throws IOException {
+        ComponentLibrary componentLibrary = NetworkDiffRenderer.getDefaultComponentLibrary();
+        LayoutParameters layoutParameters = NetworkDiffRenderer.createDefaultLayoutParameters();
+        ExtendedDiagramStyleProvider styleProvider = new MultipleColorsLevelsDiffStyleProvider(createDiffData(feeders), createLevelsData(), true);
+        DefaultSVGWriter svgWriter = fullDocumentRestyling
+                ? new FullDocumentDiffSVGWriter(componentLibrary, layoutParameters, styleProvider)
+                : new DiffSVGWriter(componentLibrary, layoutParameters, styleProvider, true, false);
+        try (StringWriter writer = new StringWriter(); StringWriter metadataWriter = new StringWriter()) {
+            diagram.writeSvg("", svgWriter, new DiffDiagramLabelProvider(network, componentLibrary, layoutParameters),
+                    styleProvider, writer, metadataWriter);
+            return new String[] {writer.toString(), metadataWriter.toString()};
+        }
+    }
+
+    /**
+     * @return the arrows classes with the given prefix, by id of the feeder the arrows belong to
+     */
+    private static Map<String, Set<String>> getArrowsClasses(String svg, String metadataJson, Set<String> feederIds, String classPrefix) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(svg)));
+        Map<String, Element> groupsById = new HashMap<>();
+        NodeList groups = document.getElementsByTagName("g");
+        for (int i = 0; i < groups.getLength(); i++) {
+            Element group = (Element) groups.item(i);
+            groupsById.put(group.getAttribute("id"), group);
+        }
+        GraphMetadata metadata = GraphMetadata.parseJson(new StringReader(metadataJson));
+        Map<String, Set<String>> classes = new HashMap<>();
+        for (GraphMetadata.ArrowMetadata arrowMetadata : metadata.getArrowMetadata()) {
+            GraphMetadata.WireMetadata wireMetadata = metadata.getWireMetadata(arrowMetadata.getWireId());
+            String equipmentId = null;
+            for (String nodeId : Arrays.asList(wireMetadata.getNodeId1(), wireMetadata.getNodeId2())) {
+                GraphMetadata.NodeMetadata nodeMetadata = metadata.getNodeMetadata(nodeId);
+                if (nodeMetadata != null && feederIds.contains(nodeMetadata.getEquipmentId())) {
+                    equipmentId = nodeMetadata.getEquipmentId();
+                }
+            }
+            Set<String> feederClasses = classes.computeIfAbsent(equipmentId, id -> new HashSet<>());
+            Element arrow = groupsById.get(arrowMetadata.getId());
+            addClasses(arrow, classPrefix, feederClasses);
+            NodeList arrowGroups = arrow.getElementsByTagName("g");
+            for (int i = 0; i < arrowGroups.getLength(); i++) {
+                addClasses((Element) arrowGroups.item(i), classPrefix, feederClasses);
+            }
+        }
+        return classes;
+    }
+
+    private static void addClasses(Element element, String classPrefix, Set<String> classes) {
+        for (String elementClass : element.getAttribute("class").split(" ")) {
+            if (elementClass.startsWith(classPrefix)) {
+                classes.add(elementClass);
+            }
+        }
+    }
+
+    @Test
+    public void testSameArrowsClasses() throws Exception {
+        int feeders = 24;
+        Network network = createNetwork(feeders);
+        String[] svg = writeSvg(network, buildDiagram(network), feeders, false);
+        //the full document restyling also added an empty class attribute to groups without classes
+        String expectedSvg = writeSvg(network, buildDiagram(network), feeders, true)[0].replace(" class=\"\"", "");
+        assertEquals(expectedSvg, svg[0].replace(" class=\"\"", ""));
+
+        //each feeder has the arrows classes of its own delta levels
+        Set<String> feederIds = new HashSet<>();
+        for (int i = 0; i < feeders; i++) {
+            feederIds.add(getFeederId(i));
+        }
+        Map<String, Set<String>> activeClasses = getArrowsClasses(svg[0], svg[1], feederIds, ARROW_ACTIVE_CLASS);
+        Map<String, Set<String>> reactiveClasses = getArrowsClasses(svg[0], svg[1], feederIds, ARROW_REACTIVE_CLASS);
+        Set<String> activeLevels = new HashSet<>();
+        for (int i = 0; i < feeders; i++) {
+            String feederId = getFeederId(i);
+            boolean load = feederId.startsWith("load");
+            String activeSuffix = MultipleColorsLevelsDiffStyleProvider.LEVEL_PREFIX + (load ? 0 : getActiveLevel(i));
+            String reactiveSuffix = MultipleColorsLevelsDiffStyleProvider.LEVEL_PREFIX + (load ? 0 : getReactiveLevel(i));
+            assertEquals(feederId, Collections.singleton(ARROW_ACTIVE_CLASS + activeSuffix), activeClasses.get(feederId));
+            assertEquals(feederId, Collections.singleton(ARROW_REACTIVE_CLASS + reactiveSuffix), reactiveClasses.get(feederId));
+            activeLevels.add(activeSuffix);
+        }
+        assertEquals(4, activeLevels.size());
+        assertEquals(feeders, activeClasses.size());
+    }
+}
@@ -6,11 +6,45 @@
  */
 package com.powsybl.diff;
 
+import com.powsybl.commons.PowsyblException;
+import com.powsybl.iidm.diff.NetworkDiffResults;
 import com.powsybl.iidm.network.*;
+import com.powsybl.sld.NetworkGraphBuilder;
+import com.powsybl.sld.library.ComponentLibrary;
+import com.powsybl.sld.model.Edge;
+import com.powsybl.sld.model.Node;
+import com.powsybl.sld.model.VoltageLevelGraph;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static com.powsybl.sld.svg.DiagramStyles.CONSTANT_COLOR_CLASS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
  */
@@ -126,4 +160,607 @@ public class NetworkDiffTest {
         String diffSvg = nd.getSubstationSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData);
         assert diffSvg != null && diffSvg.length() > 0;
     }
+
+    @Test
+    public void testBatchSubstations() {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        AtomicInteger progress = new AtomicInteger();
+        DiffBatchRenderer batchRenderer = new DiffBatchRenderer(new NetworkDiffRenderer(n1, n2));
+        DiffBatchResult result = batchRenderer.getSubstationsSvgDiff(Arrays.asList("s1", "unknown"), 0.0, 0.0, levelsData, true, false);
+        assertEquals(Collections.singleton("s1"), result.getSvgs().keySet());
+        assertTrue(result.getSvgs().get("s1").length() > 0);
+        assertEquals(Collections.singleton("unknown"), result.getFailures().keySet());
+
+        batchRenderer.renderVoltageLevels(null, 0.0, 0.0, levelsData, false, false, new DiffBatchListener() {
+            @Override
+            public void onProgress(int completed, int total) {
+                progress.incrementAndGet();
+                assertEquals(2, total);
+            }
+        });
+        assertEquals(2, progress.get());
+    }
+
+    @Test
+    public void testDiffIndex() {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        NetworkDiffRenderer renderer = new NetworkDiffRenderer(n1, n2);
+        NetworkDiffIndex diffIndex = renderer.diffIndex(0.0, 0.0);
+        assertEquals(Collections.singletonList("v2bload"), diffIndex.getDiffData().getSwitchesDiff());
+        assertEquals(Collections.singletonList("v2bload"), diffIndex.sliceVoltageLevel("v2").getSwitchesDiff());
+        assertTrue(diffIndex.sliceVoltageLevel("v1").getSwitchesDiff().isEmpty());
+        assertEquals(Collections.singletonList("v2bload"), diffIndex.sliceSubstation("s1").getSwitchesDiff());
+
+        String diffSvg = renderer.getSubstationSvgDiff(diffIndex, "s1", levelsData);
+        assertEquals(renderer.getSubstationSvgDiff("s1", 0.0, 0.0, levelsData), diffSvg);
+    }
+
+    @Test
+    public void testDiffCache() {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        LruDiffCache diffCache = LruDiffCache.ofMaximumSize(10);
+        NetworkDiffUtil nd = new NetworkDiffUtil(diffCache);
+        String diffSvg = nd.getVoltageLevelMergedSvgDiff(n1, n2, "v2", 0.0, 0.0, levelsData, false);
+        String diffSvgCurrent = nd.getVoltageLevelMergedSvgDiff(n1, n2, "v2", 0.0, 0.0, levelsData, true);
+        assertTrue(diffSvg.length() > 0 && diffSvgCurrent.length() > 0);
+        assertEquals(1, diffCache.getStats().missCount());
+        assertEquals(1, diffCache.getStats().hitCount());
+
+        nd.diffVoltageLevel(n1, n2, "v2", 0.1, 0.0);
+        assertEquals(2, diffCache.size());
+        diffCache.invalidate("other");
+        assertEquals(2, diffCache.size());
+        diffCache.invalidate(n2.getId());
+        assertEquals(0, diffCache.size());
+
+        //watching twice registers a single listener
+        diffCache.watch(n2);
+        diffCache.watch(n2);
+        nd.diffVoltageLevel(n1, n2, "v2", 0.0, 0.0);
+        assertEquals(1, diffCache.size());
+        long missCount = diffCache.getStats().missCount();
+        n2.getSwitch("v2bload").setOpen(false);
+        //the modified network diffs are discarded on the next get
+        assertEquals(1, diffCache.size());
+        nd.diffVoltageLevel(n1, n2, "v2", 0.0, 0.0);
+        assertEquals(missCount + 1, diffCache.getStats().missCount());
+
+        //the updates of a variant not cached are ignored
+        n2.getVariantManager().cloneVariant(VariantManagerConstants.INITIAL_VARIANT_ID, "v");
+        n2.getVariantManager().setWorkingVariant("v");
+        n2.getSwitch("v2bload").setOpen(true);
+        n2.getVariantManager().setWorkingVariant(VariantManagerConstants.INITIAL_VARIANT_ID);
+        nd.diffVoltageLevel(n1, n2, "v2", 0.0, 0.0);
+        assertEquals(missCount + 1, diffCache.getStats().missCount());
+
+        //a diff computed while its network is modified is not kept
+        NetworkDiffResults results = new NetworkDiffRenderer(n1, n2).diffVoltageLevelResults("v2", 0.5, 0.0);
+        DiffCacheKey key = DiffCacheKey.of(n1, n2, 0.5, 0.0, Collections.singletonList("v2"), Collections.emptyList());
+        diffCache.get(key, () -> {
+            n2.getSwitch("v2bload").setOpen(!n2.getSwitch("v2bload").isOpen());
+            return results;
+        });
+        assertEquals(0, diffCache.size());
+
+        //networks are identified by their ids
+        try {
+            diffCache.watch(createNetwork1());
+            fail();
+        } catch (PowsyblException ignored) {
+            //ignore
+        }
+
+        diffCache.unwatch(n2);
+        n2.getSwitch("v2bload").setOpen(true);
+        nd.diffVoltageLevel(n1, n2, "v2", 0.0, 0.0);
+        assertEquals(missCount + 1, diffCache.getStats().missCount());
+    }
+
+    @Test
+    public void testParallelBatch() throws InterruptedException {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(8).setVoltageLevels(3).setBays(6).setSeed(1);
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+        Network n2 = generator.createPerturbed(0.5);
+
+        //the breakers switched after the creation leave the bus views of the first network to be built again
+        Network sequential = generator.create();
+        SyntheticNetworkGenerator.perturb(sequential, 0.5, 0.0, 0.0, 3);
+        DiffBatchResult expected = new DiffBatchRenderer(new NetworkDiffRenderer(sequential, n2), Runnable::run)
+                .getSubstationsSvgDiff(null, 0.0, 0.0, levelsData, true, true);
+        assertEquals(8, expected.getSvgs().size());
+
+        Network parallel = generator.create();
+        SyntheticNetworkGenerator.perturb(parallel, 0.5, 0.0, 0.0, 3);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DiffBatchResult result = new DiffBatchRenderer(new NetworkDiffRenderer(parallel, n2), executor)
+                    .getSubstationsSvgDiff(null, 0.0, 0.0, levelsData, true, true);
+            assertTrue(result.getFailures().isEmpty());
+            assertEquals(expected.getSvgs(), result.getSvgs());
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+
+    @Test
+    public void testSvgCache() {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        LruSvgCache svgCache = LruSvgCache.ofMaximumBytes(10_000_000);
+        NetworkDiffUtil nd = new NetworkDiffUtil(DiffCache.NONE, svgCache);
+        String diffSvg = nd.getSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, false);
+        assertEquals(diffSvg, nd.getSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, false));
+        assertEquals(1, svgCache.getStats().hitCount());
+        nd.getSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true);
+        nd.getVoltageLevelSvgDiff(n1, n2, "v1", 0.0, 0.0, levelsData);
+        assertEquals(3, svgCache.size());
+
+        //watching twice registers a single listener
+        svgCache.watch(n1);
+        svgCache.watch(n1);
+        n1.getLoad("v1load").setP0(10.0);
+        //the SVGs of the modified voltage level and substation are discarded on the next get
+        assertEquals(3, svgCache.size());
+        nd.getVoltageLevelSvgDiff(n1, n2, "v2", 0.0, 0.0, levelsData);
+        assertEquals(1, svgCache.size());
+
+        svgCache.unwatch(n1);
+        n1.getLoad("v1load").setP0(20.0);
+        nd.getVoltageLevelSvgDiff(n1, n2, "v1", 0.0, 0.0, levelsData);
+        assertEquals(2, svgCache.size());
+    }
+
+    @Test
+    public void testSvgCacheKeys() {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        Network n1 = generator.create();
+        Network n2 = generator.createPerturbed(0.5);
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        //the batch diagrams are keyed on their own slice of the batch diff, as the diagrams rendered alone
+        LruSvgCache svgCache = LruSvgCache.ofMaximumBytes(10_000_000);
+        NetworkDiffRenderer renderer = new NetworkDiffRenderer(n1, n2, DiffCache.NONE, svgCache);
+        DiffBatchResult result = new DiffBatchRenderer(renderer).getSubstationsSvgDiff(null, 0.0, 0.0, levelsData, true, false);
+        assertEquals(3, result.getSvgs().size());
+        String substationId = SyntheticNetworkGenerator.substationId(1);
+        assertEquals(result.getSvgs().get(substationId), renderer.getSubstationMergedSvgDiff(substationId, 0.0, 0.0, levelsData, false));
+        assertEquals(1, svgCache.getStats().hitCount());
+
+        //the SVGs of watched networks are looked up before diffing
+        LruDiffCache diffCache = LruDiffCache.ofMaximumSize(10);
+        LruSvgCache watchingSvgCache = LruSvgCache.ofMaximumBytes(10_000_000);
+        watchingSvgCache.watch(n1);
+        NetworkDiffRenderer watchingRenderer = new NetworkDiffRenderer(n1, n1, diffCache, watchingSvgCache);
+        String vlId = SyntheticNetworkGenerator.voltageLevelId(0, 0);
+        String svg = watchingRenderer.getVoltageLevelSvgDiff(vlId, 0.0, 0.0, levelsData);
+        assertEquals(svg, watchingRenderer.getVoltageLevelSvgDiff(vlId, 0.0, 0.0, levelsData));
+        assertEquals(1, watchingSvgCache.getStats().hitCount());
+        assertEquals(1, diffCache.getStats().requestCount());
+        n1.getVoltageLevel(vlId).getSwitches().iterator().next().setOpen(true);
+        watchingRenderer.getVoltageLevelSvgDiff(vlId, 0.0, 0.0, levelsData);
+        assertEquals(1, watchingSvgCache.getStats().hitCount());
+        assertEquals(2, diffCache.getStats().requestCount());
+    }
+
+    @Test
+    public void testWriteSvg() throws IOException {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        NetworkDiffUtil nd = new NetworkDiffUtil();
+        String diffSvg = nd.getSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true);
+
+        StringWriter writer = new StringWriter();
+        nd.writeSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true, writer);
+        assertEquals(diffSvg, writer.toString());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        nd.writeSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true, outputStream, false);
+        assertEquals(diffSvg, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream gzipOutputStream = new ByteArrayOutputStream();
+        nd.writeSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true, gzipOutputStream, true);
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(gzipOutputStream.toByteArray()))) {
+            assertEquals(diffSvg, new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testRenderOptions() {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        NetworkDiffUtil nd = new NetworkDiffUtil();
+        String diffSvg = nd.getSubstationMergedSvgDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true);
+
+        DiffRenderResult all = nd.renderSubstationDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true, true, RenderOptions.ALL);
+        assertEquals(diffSvg, all.getSvg().orElseThrow());
+        assertTrue(all.getMetadata().isPresent());
+        assertTrue(all.getGraphJson().isPresent());
+
+        DiffRenderResult svgOnly = nd.renderSubstationDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true, true, RenderOptions.SVG_ONLY);
+        assertEquals(diffSvg, svgOnly.getSvg().orElseThrow());
+        assertFalse(svgOnly.getMetadata().isPresent());
+        assertFalse(svgOnly.getGraphJson().isPresent());
+
+        DiffRenderResult metadataOnly = nd.renderVoltageLevelDiff(n1, n2, "v1", 0.0, 0.0, levelsData, false, false,
+                RenderOptions.of(false, true, false));
+        assertFalse(metadataOnly.getSvg().isPresent());
+        assertTrue(metadataOnly.getMetadata().isPresent());
+        assertFalse(metadataOnly.getGraphJson().isPresent());
+
+        LevelsStylesheet stylesheet = LevelsStylesheet.of(levelsData);
+        assertTrue(diffSvg.contains(".sld-constant-color-level-0 {stroke: black; fill: none}"));
+        DiffRenderResult external = nd.renderSubstationDiff(n1, n2, "s1", 0.0, 0.0, levelsData, true, true,
+                RenderOptions.SVG_ONLY.withExternalStylesheet("/styles"));
+        String externalSvg = external.getSvg().orElseThrow();
+        assertTrue(externalSvg.contains("@import url(\"/styles/" + stylesheet.getFileName() + "\");"));
+        assertFalse(externalSvg.contains(".sld-constant-color-level-0 {stroke: black; fill: none}"));
+        assertTrue(stylesheet == external.getStylesheet().orElseThrow());
+        assertFalse(all.getStylesheet().isPresent());
+    }
+
+    @Test
+    public void testIncrementalDiff() {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        NetworkDiffRenderer renderer = new NetworkDiffRenderer(n1, n2);
+        try (IncrementalNetworkDiff diff = new IncrementalNetworkDiff(renderer, 0.0, 0.0)) {
+            assertFalse(diff.update());
+            assertEquals(Collections.singletonList("v2bload"), diff.getSubstationDiffData("s1").getSwitchesDiff());
+            assertTrue(diff.getVoltageLevelDiffData("v1").getSwitchesDiff().isEmpty());
+
+            n2.getSwitch("v1b1").setOpen(true);
+            n2.getSwitch("v2bload").setOpen(false);
+            assertTrue(diff.update());
+            assertFalse(diff.update());
+            assertEquals(Collections.singletonList("v1b1"), diff.getVoltageLevelDiffData("v1").getSwitchesDiff());
+            assertTrue(diff.getVoltageLevelDiffData("v2").getSwitchesDiff().isEmpty());
+            assertEquals(renderer.diffIndex(0.0, 0.0).getDiffData().getSwitchesDiff(), diff.getDiffData().getSwitchesDiff());
+            assertEquals(renderer.getSubstationSvgDiff(renderer.diffIndex(0.0, 0.0), "s1", levelsData), diff.getSubstationSvgDiff("s1", levelsData));
+        }
+    }
+
+    @Test
+    public void testVariantsDiff() {
+        Network n = createNetwork1();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+        n.getVariantManager().cloneVariant(VariantManagerConstants.INITIAL_VARIANT_ID, "v");
+        n.getVariantManager().setWorkingVariant("v");
+        n.getSwitch("v2bload").setOpen(true);
+        n.getVariantManager().setWorkingVariant(VariantManagerConstants.INITIAL_VARIANT_ID);
+
+        NetworkDiffUtil nd = new NetworkDiffUtil();
+        String diff = nd.diffNetworks(n, VariantManagerConstants.INITIAL_VARIANT_ID, "v", Arrays.asList("v1", "v2"), Collections.emptyList(), 0.0, 0.0);
+        assertTrue(diff.contains("\"v2bload\""));
+        assertFalse(diff.contains("\"v1b1\""));
+        assertEquals(VariantManagerConstants.INITIAL_VARIANT_ID, n.getVariantManager().getWorkingVariantId());
+
+        VariantsDiff variantsDiff = new VariantsDiff(new NetworkDiffRenderer(n, n), VariantManagerConstants.INITIAL_VARIANT_ID, "v", 0.0, 0.0);
+        assertEquals(Collections.singletonList("v2bload"), variantsDiff.diffData(Arrays.asList("v1", "v2"), Collections.emptyList()).getSwitchesDiff());
+        assertTrue(nd.getVoltageLevelSvgDiff(n, VariantManagerConstants.INITIAL_VARIANT_ID, "v", "v2", 0.0, 0.0, levelsData).length() > 0);
+        assertTrue(nd.getSubstationMergedSvgDiff(n, VariantManagerConstants.INITIAL_VARIANT_ID, "v", "s1", 0.0, 0.0, levelsData, true).length() > 0);
+        assertEquals(VariantManagerConstants.INITIAL_VARIANT_ID, n.getVariantManager().getWorkingVariantId());
+    }
+
+    @Test
+    public void testSnapshotDiff() {
+        Network n = createNetwork1();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+        NetworkStateSnapshot snapshot = NetworkStateSnapshot.capture(n);
+        assertEquals(n.getId(), snapshot.getNetworkId());
+        assertEquals(VariantManagerConstants.INITIAL_VARIANT_ID, snapshot.getVariantId());
+        n.getSwitch("v2bload").setOpen(true);
+
+        NetworkDiffUtil nd = new NetworkDiffUtil();
+        for (boolean compress : new boolean[] {false, true}) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            snapshot.write(os, compress);
+            NetworkStateSnapshot snapshot2 = NetworkStateSnapshot.read(new ByteArrayInputStream(os.toByteArray()));
+            assertEquals(snapshot.getVoltageLevelIds(), snapshot2.getVoltageLevelIds());
+            assertEquals(snapshot.getBranchIds(), snapshot2.getBranchIds());
+            String diff = nd.diffNetworks(snapshot2, n, Arrays.asList("v1", "v2"), Collections.emptyList(), 0.0, 0.0);
+            assertTrue(diff.contains("\"v2bload\""));
+            assertFalse(diff.contains("\"v1b1\""));
+        }
+        assertTrue(nd.getVoltageLevelSvgDiff(snapshot, n, "v2", 0.0, 0.0, levelsData).length() > 0);
+        assertTrue(nd.getSubstationMergedSvgDiff(snapshot, n, "s1", 0.0, 0.0, levelsData, true).length() > 0);
+    }
+
+    @Test
+    public void testStatesDiffMatchesNetworkDiff() throws IOException {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        //a flow going from NaN to a value is a delta too
+        Network n1 = generator.create();
+        n1.getLine("L0_0").getTerminal1().setP(Double.NaN);
+        List<String> vls = n1.getVoltageLevelStream().map(Identifiable::getId).collect(Collectors.toList());
+        List<String> branches = n1.getBranchStream().map(Identifiable::getId).collect(Collectors.toList());
+        //voltages going from NaN to a value give NaN deltas, from zero to a value infinite deltas percent
+        setVoltages(n1, vls.get(0), Double.NaN);
+        setVoltages(n1, vls.get(1), 0.0);
+        Network n2 = generator.create();
+        SyntheticNetworkGenerator.perturb(n2, 0.3, 0.5, 0.5, 2);
+        ColorsLevelsDiffData expected = new NetworkDiffRenderer(n1, n2).diffIndex(0.0, 0.0).getDiffData();
+        assertTrue(expected.getBranchesSideDiffs().indexOf("L0_0", Branch.Side.ONE) >= 0);
+        DiffData2 expectedData2 = DiffData2.parseData(new NetworkDiffRenderer(n1, n2).diffNetworks(vls, branches, 0.0, 0.0));
+        assertEquals("Nan", expectedData2.getVlDiffData().get(vls.get(0)).getMinVDelta());
+        assertEquals("Nan", expectedData2.getVlDiffData().get(vls.get(0)).getMaxVDeltaPerc());
+        assertEquals("Infinity", expectedData2.getVlDiffData().get(vls.get(1)).getMinVDeltaPerc());
+        assertEquals("Infinity", expectedData2.getVlDiffData().get(vls.get(1)).getMaxVDeltaPerc());
+
+        Network n = generator.create();
+        n.getVariantManager().cloneVariant(VariantManagerConstants.INITIAL_VARIANT_ID, "v");
+        n.getVariantManager().setWorkingVariant("v");
+        SyntheticNetworkGenerator.perturb(n, 0.3, 0.5, 0.5, 2);
+        n.getVariantManager().setWorkingVariant(VariantManagerConstants.INITIAL_VARIANT_ID);
+        n.getLine("L0_0").getTerminal1().setP(Double.NaN);
+        setVoltages(n, vls.get(0), Double.NaN);
+        setVoltages(n, vls.get(1), 0.0);
+        VariantsDiff variantsDiff = new VariantsDiff(new NetworkDiffRenderer(n, n), VariantManagerConstants.INITIAL_VARIANT_ID, "v", 0.0, 0.0);
+        assertSameDiffData(expected, variantsDiff.diffData(vls, branches));
+        assertSameVlDiffData(expectedData2, DiffData2.parseData(variantsDiff.diff(vls, branches)));
+
+        SnapshotDiff snapshotDiff = new SnapshotDiff(new NetworkDiffRenderer(n2, n2), NetworkStateSnapshot.capture(n1), 0.0, 0.0);
+        assertSameDiffData(expected, snapshotDiff.diffData(vls, branches));
+        assertSameVlDiffData(expectedData2, DiffData2.parseData(snapshotDiff.diff(vls, branches)));
+    }
+
+    private static void setVoltages(Network network, String vlId, double v) {
+        network.getVoltageLevel(vlId).getBusView().getBuses().forEach(bus -> bus.setV(v));
+    }
+
+    //the min/max voltages deltas, as displayed: missing voltage levels have zero deltas
+    private static void assertSameVlDiffData(DiffData2 expected, DiffData2 actual) {
+        Set<String> vlIds = new HashSet<>(expected.getVlDiffData().keySet());
+        vlIds.addAll(actual.getVlDiffData().keySet());
+        VlDiffData noDelta = new VlDiffData(null, "0.000", "0.000", "0.00", "0.00");
+        for (String vlId : vlIds) {
+            VlDiffData expectedVl = expected.getVlDiffData().getOrDefault(vlId, noDelta);
+            VlDiffData actualVl = actual.getVlDiffData().getOrDefault(vlId, noDelta);
+            assertEquals(vlId, expectedVl.getMinVDelta(), actualVl.getMinVDelta());
+            assertEquals(vlId, expectedVl.getMaxVDelta(), actualVl.getMaxVDelta());
+            assertEquals(vlId + " %", expectedVl.getMinVDeltaPerc(), actualVl.getMinVDeltaPerc());
+            assertEquals(vlId + " %", expectedVl.getMaxVDeltaPerc(), actualVl.getMaxVDeltaPerc());
+        }
+    }
+
+    //the data of the states diffs only store the deltas, missing deltas are zero deltas
+    private static void assertSameDiffData(ColorsLevelsDiffData expected, ColorsLevelsDiffData actual) {
+        assertEquals(new HashSet<>(expected.getSwitchesDiff()), new HashSet<>(actual.getSwitchesDiff()));
+
+        BranchSidesDiffs expectedSides = expected.getBranchesSideDiffs();
+        BranchSidesDiffs actualSides = actual.getBranchesSideDiffs();
+        Set<String> branchIds = new HashSet<>();
+        for (int index = 0; index < expectedSides.size(); index++) {
+            branchIds.add(expectedSides.getBranchId(index));
+        }
+        for (int index = 0; index < actualSides.size(); index++) {
+            branchIds.add(actualSides.getBranchId(index));
+        }
+        for (String branchId : branchIds) {
+            for (Branch.Side side : Branch.Side.values()) {
+                int expectedIndex = expectedSides.indexOf(branchId, side);
+                int actualIndex = actualSides.indexOf(branchId, side);
+                for (boolean percentage : new boolean[] {false, true}) {
+                    String message = branchId + " " + side + (percentage ? " %" : "");
+                    assertEquals(message, expectedIndex < 0 ? 0 : expectedSides.getpDelta(expectedIndex, percentage),
+                            actualIndex < 0 ? 0 : actualSides.getpDelta(actualIndex, percentage), 1e-9);
+                    assertEquals(message, expectedIndex < 0 ? 0 : expectedSides.getqDelta(expectedIndex, percentage),
+                            actualIndex < 0 ? 0 : actualSides.getqDelta(actualIndex, percentage), 1e-9);
+                    assertEquals(message, expectedIndex < 0 ? 0 : expectedSides.getiDelta(expectedIndex, percentage),
+                            actualIndex < 0 ? 0 : actualSides.getiDelta(actualIndex, percentage), 1e-9);
+                }
+            }
+        }
+
+        BusbarsDiffs expectedBusbars = expected.getBusbarsDiffs();
+        BusbarsDiffs actualBusbars = actual.getBusbarsDiffs();
+        Set<String> busbarIds = new HashSet<>();
+        for (int index = 0; index < expectedBusbars.size(); index++) {
+            busbarIds.add(expectedBusbars.getBusbarId(index));
+        }
+        for (int index = 0; index < actualBusbars.size(); index++) {
+            busbarIds.add(actualBusbars.getBusbarId(index));
+        }
+        for (String busbarId : busbarIds) {
+            int expectedIndex = expectedBusbars.indexOf(busbarId);
+            int actualIndex = actualBusbars.indexOf(busbarId);
+            for (boolean percentage : new boolean[] {false, true}) {
+                double expectedDelta = expectedIndex >= 0 && expectedBusbars.hasDelta(expectedIndex, percentage)
+                        ? expectedBusbars.getDelta(expectedIndex, percentage) : 0;
+                double actualDelta = actualIndex >= 0 && actualBusbars.hasDelta(actualIndex, percentage)
+                        ? actualBusbars.getDelta(actualIndex, percentage) : 0;
+                assertEquals(busbarId + (percentage ? " %" : ""), expectedDelta, actualDelta, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiCaseDiff() {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        Network base = generator.create();
+        Network case1 = generator.create();
+        Network case2 = generator.create();
+        SyntheticNetworkGenerator.perturb(case2, 0.0, 1.0, 0.0, 2);
+        Network case3 = generator.create();
+        SyntheticNetworkGenerator.perturb(case3, 1.0, 0.0, 0.0, 3);
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+
+        MultiCaseDiff diff = MultiCaseDiff.ofNetworks(base, Arrays.asList(case1, case2, case3));
+        assertEquals(3, diff.getCaseCount());
+        String branchId = diff.getBranchIds().get(0);
+        double[] deltas = diff.getBranchDeltas(branchId, TerminalValue.P1);
+        assertEquals(3, deltas.length);
+        assertEquals(0.0, deltas[0], 0.0);
+        assertEquals(case2.getBranch(branchId).getTerminal1().getP() - base.getBranch(branchId).getTerminal1().getP(), deltas[1], 0.0);
+        assertEquals(deltas[1], diff.getBranchDelta(1, branchId, TerminalValue.P1), 0.0);
+        assertEquals(0.0, deltas[2], 0.0);
+
+        assertTrue(diff.getSwitchesDiff(0).isEmpty());
+        assertTrue(diff.getSwitchesDiff(1).isEmpty());
+        assertEquals(new NetworkDiffRenderer(base, case3).diffIndex(0.0, 0.0).getDiffData().getSwitchesDiff().size(), diff.getSwitchesDiff(2).size());
+        assertEquals(diff.getSwitchesDiff(2).size(), diff.getDiffData(2, 0.0, 0.0).getSwitchesDiff().size());
+        assertTrue(diff.getSubstationSvgDiff(2, SyntheticNetworkGenerator.substationId(0), 0.0, 0.0, levelsData).length() > 0);
+
+        //variants of a same network
+        Network n = createNetwork1();
+        n.getVariantManager().cloneVariant(VariantManagerConstants.INITIAL_VARIANT_ID, Arrays.asList("c1", "c2"));
+        n.getVariantManager().setWorkingVariant("c2");
+        n.getSwitch("v2bload").setOpen(true);
+        n.getVariantManager().setWorkingVariant(VariantManagerConstants.INITIAL_VARIANT_ID);
+        MultiCaseDiff variantsDiff = MultiCaseDiff.ofVariants(n, VariantManagerConstants.INITIAL_VARIANT_ID, Arrays.asList("c1", "c2"));
+        assertEquals("c2", variantsDiff.getCaseId(1));
+        assertTrue(variantsDiff.getSwitchesDiff(0).isEmpty());
+        assertEquals(Collections.singletonList("v2bload"), variantsDiff.getSwitchesDiff(1));
+        assertTrue(variantsDiff.getVoltageLevelMergedSvgDiff(1, "v2", 0.0, 0.0, levelsData, true).length() > 0);
+        assertEquals(VariantManagerConstants.INITIAL_VARIANT_ID, n.getVariantManager().getWorkingVariantId());
+    }
+
+    @Test
+    public void testTimeSeriesDiff() {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        Network reference = generator.create();
+        Network state1 = generator.create();
+        SyntheticNetworkGenerator.perturb(state1, 0.0, 1.0, 1.0, 2);
+        Network state2 = generator.create();
+        SyntheticNetworkGenerator.perturb(state2, 0.0, 1.0, 1.0, 3);
+
+        Instant t0 = Instant.parse("2021-03-01T00:00:00Z");
+        TimeSeriesDiff diff = new TimeSeriesDiff(NetworkStateSnapshot.capture(reference))
+                .add(t0, reference)
+                .add(t0.plusSeconds(900), NetworkStateSnapshot.capture(state1))
+                .add(t0.plusSeconds(1800), state2);
+        assertEquals(3, diff.getTimestamps().size());
+
+        String branchId = diff.getBranchIds().get(0);
+        double[] deltas = diff.getBranchDeltas(branchId, TerminalValue.I1);
+        assertEquals(3, deltas.length);
+        assertEquals(0.0, deltas[0], 0.0);
+        assertEquals(state2.getBranch(branchId).getTerminal1().getI() - reference.getBranch(branchId).getTerminal1().getI(), deltas[2], 0.0);
+        double max = Math.max(Math.abs(deltas[1]), Math.abs(deltas[2]));
+        assertEquals(max, diff.getMaxAbsBranchDelta(branchId, TerminalValue.I1), 0.0);
+        assertEquals(max, diff.getMaxAbsBranchDeltas(TerminalValue.I1).get(branchId), 0.0);
+        assertEquals(Math.abs(deltas[1]) >= Math.abs(deltas[2]) ? t0.plusSeconds(900) : t0.plusSeconds(1800),
+                     diff.getMaxAbsBranchDeltaTimestamp(branchId, TerminalValue.I1));
+        assertEquals(diff.getBranchIds().size(), diff.getMaxAbsBranchDeltas(TerminalValue.P2).size());
+        assertTrue(diff.getSwitchesDiff(1).isEmpty());
+
+        try {
+            diff.add(t0, reference);
+            fail();
+        } catch (PowsyblException ignored) {
+            //timestamps must increase
+        }
+    }
+
+    @Test
+    public void testDiffQueryFilters() {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        Network n1 = generator.create();
+        Network n2 = generator.createPerturbed(1.0);
+        DiffQuery query = new DiffQuery(new NetworkDiffRenderer(n1, n2).diffIndex(0.0, 0.0).getDiffData(), n1);
+        String substationId = SyntheticNetworkGenerator.substationId(0);
+        List<DiffQuery.Entry> top = query.inSubstations(Collections.singletonList(substationId)).topBranches(3, DiffQuery.Quantity.I, false);
+        assertTrue(top.size() <= 3);
+        for (DiffQuery.Entry entry : top) {
+            Branch<?> branch = n1.getBranch(entry.getId());
+            assertTrue(branch.getTerminal1().getVoltageLevel().getSubstation().getId().equals(substationId)
+                    || branch.getTerminal2().getVoltageLevel().getSubstation().getId().equals(substationId));
+        }
+        for (int k = 1; k < top.size(); k++) {
+            assertTrue(Math.abs(top.get(k - 1).getDelta()) >= Math.abs(top.get(k).getDelta()));
+        }
+        assertTrue(query.inCountries(Collections.emptyList()).topBusbars(10, false).isEmpty());
+    }
+
+    @Test
+    public void testDiffArchive() throws IOException {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        Network n1 = generator.create();
+        Network n2 = generator.createPerturbed(1.0);
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+        NetworkDiffRenderer renderer = new NetworkDiffRenderer(n1, n2);
+        List<String> voltageLevels = n1.getVoltageLevelStream().map(Identifiable::getId).collect(Collectors.toList());
+        List<String> branches = n1.getBranchStream().map(Identifiable::getId).collect(Collectors.toList());
+        NetworkDiffIndex diffIndex = renderer.diffIndex(0.0, 0.0);
+
+        Path file = Files.createTempFile("diff", ".bin");
+        try {
+            DiffArchive.write(file, n1, renderer.diffNetworks(voltageLevels, branches, 0.0, 0.0), DiffCodec.raw());
+            try (DiffArchive archive = DiffArchive.open(file)) {
+                String substationId = SyntheticNetworkGenerator.substationId(0);
+                assertTrue(archive.containsSubstation(substationId));
+                ColorsLevelsDiffData substationDiffData = archive.getSubstationDiffData(substationId);
+                assertEquals(new HashSet<>(diffIndex.sliceSubstation(substationId).getSwitchesDiff()), new HashSet<>(substationDiffData.getSwitchesDiff()));
+                assertEquals(diffIndex.sliceSubstation(substationId).getBranchesSideDiffs().size(), substationDiffData.getBranchesSideDiffs().size());
+                assertEquals(renderer.getSubstationSvgDiff(diffIndex, substationId, levelsData), archive.getSubstationSvgDiff(renderer, substationId, levelsData));
+
+                String vlId = SyntheticNetworkGenerator.voltageLevelId(0, 0);
+                assertEquals(new HashSet<>(diffIndex.sliceVoltageLevel(vlId).getSwitchesDiff()),
+                             new HashSet<>(archive.getVoltageLevelDiffData2(vlId).getSwitchesIds()));
+                assertTrue(archive.getVoltageLevelMergedSvgDiff(renderer, vlId, levelsData, true).length() > 0);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSyntheticNetworks() {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator().setSubstations(3).setVoltageLevels(3).setBays(4).setSeed(1);
+        Network n1 = generator.create();
+        assertEquals(3, n1.getSubstationCount());
+        assertEquals(9, n1.getVoltageLevelCount());
+        assertEquals(6, n1.getLineCount());
+        assertEquals(6, n1.getTwoWindingsTransformerCount());
+        assertEquals(3, n1.getThreeWindingsTransformerCount());
+
+        //all the breakers are switched, no flow nor voltage is changed
+        Network n2 = generator.create();
+        SyntheticNetworkGenerator.perturb(n2, 1.0, 0.0, 0.0, 2);
+        NetworkDiffIndex diffIndex = new NetworkDiffRenderer(n1, n2).diffIndex(0.0, 0.0);
+        long breakers = n1.getSwitchStream().filter(sw -> sw.getKind() == SwitchKind.BREAKER).count();
+        assertEquals(breakers, diffIndex.getDiffData().getSwitchesDiff().size());
+
+        Network n3 = generator.createPerturbed(0.0);
+        assertTrue(new NetworkDiffRenderer(n1, n3).diffIndex(0.0, 0.0).getDiffData().getSwitchesDiff().isEmpty());
+    }
+
+    @Test
+    public void testStyleIndex() throws IOException {
+        Network n1 = createNetwork1();
+        Network n2 = createNetwork2();
+        LevelsData levelsData = LevelsData.parseData(createLevelsData());
+        ColorsLevelsDiffData diffData = new ColorsLevelsDiffData(new NetworkDiffRenderer(n1, n2).diffVoltageLevelResults("v2", 0.0, 0.0), true);
+        MultipleColorsLevelsDiffStyleProvider styleProvider = new MultipleColorsLevelsDiffStyleProvider(diffData, levelsData, true);
+        ComponentLibrary componentLibrary = NetworkDiffRenderer.getDefaultComponentLibrary();
+        VoltageLevelGraph graph = new NetworkGraphBuilder(n1).buildVoltageLevelGraph("v2", false, true);
+        for (Node node : graph.getNodes()) {
+            List<String> styles = styleProvider.getSvgNodeStyles(node, componentLibrary, false);
+            assertFalse(styles.contains(CONSTANT_COLOR_CLASS));
+            assertEquals(styles, styleProvider.getSvgNodeStyles(node, componentLibrary, false));
+            if ("v2bload".equals(node.getId())) {
+                assertFalse(styles.contains(CONSTANT_COLOR_CLASS + MultipleColorsLevelsDiffStyleProvider.LEVEL_0_SUFFIX));
+            }
+        }
+        for (Edge edge : graph.getEdges()) {
+            assertFalse(styleProvider.getSvgWireStyles(edge, false).contains(CONSTANT_COLOR_CLASS));
+        }
+    }
 }
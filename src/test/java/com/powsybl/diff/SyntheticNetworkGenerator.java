@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2021, RTE (http://www.rte-france.com)
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.powsybl.diff;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.powsybl.iidm.network.Bus;
+import com.powsybl.iidm.network.Country;
+import com.powsybl.iidm.network.EnergySource;
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.Substation;
+import com.powsybl.iidm.network.SwitchKind;
+import com.powsybl.iidm.network.Terminal;
+import com.powsybl.iidm.network.TopologyKind;
+import com.powsybl.iidm.network.VoltageLevel;
+
+/**
+ * Generates node breaker networks of any size, for scaling tests and benchmarks.
+ * <p>
+ * Each substation has voltage levels of decreasing nominal voltages, each one with two busbar sections linked by a coupling bay,
+ * and bays alternately connected to them: a bay is a disconnector and a breaker, from a busbar section to a load, a generator or a branch.
+ * The voltage levels of a substation are linked by two windings transformers, the three first ones also by a three windings transformer;
+ * the two first voltage levels of the substations are linked in a ring by lines.
+ * Flows and voltages are drawn from the seed: a generator always creates the same network.
+ * A second network of a diff is generated with the same seed, then {@link #perturb perturbed}.
+ *
+ * @author Christian Biasuzzi <christian.biasuzzi@techrain.eu>
+ */
+public class SyntheticNetworkGenerator {
+
+    private static final double[] NOMINAL_VOLTAGES = {400.0, 225.0, 90.0, 63.0, 20.0};
+
+    private int substations = 10;
+    private int voltageLevels = 2;
+    private int bays = 8;
+    private long seed;
+
+    //next free node of each voltage level, while generating
+    private final Map<String, Integer> nextNodes = new HashMap<>();
+
+    public SyntheticNetworkGenerator setSubstations(int substations) {
+        this.substations = substations;
+        return this;
+    }
+
+    /**
+     * @param voltageLevels the number of voltage levels of each substation
+     */
+    public SyntheticNetworkGenerator setVoltageLevels(int voltageLevels) {
+        this.voltageLevels = voltageLevels;
+        return this;
+    }
+
+    /**
+     * @param bays the number of load and generator bays of each voltage level
+     */
+    public SyntheticNetworkGenerator setBays(int bays) {
+        this.bays = bays;
+        return this;
+    }
+
+    public SyntheticNetworkGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public static String substationId(int s) {
+        return "S" + s;
+    }
+
+    public static String voltageLevelId(int s, int v) {
+        return substationId(s) + "_VL" + v;
+    }
+
+    public Network create() {
+        if (substations < 1 || voltageLevels < 1 || voltageLevels > NOMINAL_VOLTAGES.length || bays < 0) {
+            throw new IllegalArgumentException("Invalid network size: " + substations + " substations, " + voltageLevels
+                    + " voltage levels, " + bays + " bays");
+        }
+        nextNodes.clear();
+        Random random = new Random(seed);
+        Network network = Network.create("synthetic-" + substations + "-" + voltageLevels + "-" + bays + "-" + seed, "synthetic");
+        for (int s = 0; s < substations; s++) {
+            createSubstation(network, s, random);
+        }
+        //the two first voltage levels of the substations are linked in a ring
+        for (int v = 0; v < Math.min(voltageLevels, 2) && substations > 1; v++) {
+            for (int s = 0; s < substations; s++) {
+                VoltageLevel vl1 = network.getVoltageLevel(voltageLevelId(s, v));
+                VoltageLevel vl2 = network.getVoltageLevel(voltageLevelId((s + 1) % substations, v));
+                double p = 50.0 + 200.0 * random.nextDouble();
+                network.newLine().setId("L" + s + "_" + v)
+                        .setVoltageLevel1(vl1.getId()).setNode1(newBay(vl1))
+                        .setVoltageLevel2(vl2.getId()).setNode2(newBay(vl2))
+                        .setR(1.0).setX(10.0).setG1(0.0).setB1(0.0).setG2(0.0).setB2(0.0).add();
+                setFlows(network.getLine("L" + s + "_" + v).getTerminal1(), network.getLine("L" + s + "_" + v).getTerminal2(), p, random);
+            }
+        }
+        for (Bus bus : network.getBusView().getBuses()) {
+            bus.setV(bus.getVoltageLevel().getNominalV() * (0.95 + 0.1 * random.nextDouble()))
+                    .setAngle(-10.0 + 20.0 * random.nextDouble());
+        }
+        return network;
+    }
+
+    /**
+     * @return a network generated with the same seed, then perturbed with the given ratio of changes
+     */
+    public Network createPerturbed(double changeRatio) {
+        Network network = create();
+        perturb(network, changeRatio, seed + 1);
+        return network;
+    }
+
+    private void createSubstation(Network network, int s, Random random) {
+        Substation substation = network.newSubstation().setId(substationId(s)).setCountry(Country.FR).add();
+        for (int v = 0; v < voltageLevels; v++) {
+            VoltageLevel vl = substation.newVoltageLevel().setId(voltageLevelId(s, v)).setNominalV(NOMINAL_VOLTAGES[v])
+                    .setTopologyKind(TopologyKind.NODE_BREAKER).add();
+            createBusbarSections(vl);
+            for (int b = 0; b < bays; b++) {
+                createFeeder(vl, b, random);
+            }
+        }
+        for (int v = 0; v + 1 < voltageLevels; v++) {
+            VoltageLevel vl1 = network.getVoltageLevel(voltageLevelId(s, v));
+            VoltageLevel vl2 = network.getVoltageLevel(voltageLevelId(s, v + 1));
+            String id = substation.getId() + "_T" + v;
+            substation.newTwoWindingsTransformer().setId(id)
+                    .setVoltageLevel1(vl1.getId()).setNode1(newBay(vl1))
+                    .setVoltageLevel2(vl2.getId()).setNode2(newBay(vl2))
+                    .setRatedU1(vl1.getNominalV()).setRatedU2(vl2.getNominalV())
+                    .setR(0.5).setX(10.0).setG(0.0).setB(0.0).add();
+            setFlows(network.getTwoWindingsTransformer(id).getTerminal1(), network.getTwoWindingsTransformer(id).getTerminal2(),
+                    20.0 + 100.0 * random.nextDouble(), random);
+        }
+        if (voltageLevels >= 3) {
+            VoltageLevel vl1 = network.getVoltageLevel(voltageLevelId(s, 0));
+            VoltageLevel vl2 = network.getVoltageLevel(voltageLevelId(s, 1));
+            VoltageLevel vl3 = network.getVoltageLevel(voltageLevelId(s, 2));
+            String id = substation.getId() + "_3T";
+            substation.newThreeWindingsTransformer().setId(id).setRatedU0(vl1.getNominalV())
+                    .newLeg1().setVoltageLevel(vl1.getId()).setNode(newBay(vl1)).setRatedU(vl1.getNominalV())
+                    .setR(0.5).setX(10.0).setG(0.0).setB(0.0).add()
+                    .newLeg2().setVoltageLevel(vl2.getId()).setNode(newBay(vl2)).setRatedU(vl2.getNominalV())
+                    .setR(0.5).setX(10.0).setG(0.0).setB(0.0).add()
+                    .newLeg3().setVoltageLevel(vl3.getId()).setNode(newBay(vl3)).setRatedU(vl3.getNominalV())
+                    .setR(0.5).setX(10.0).setG(0.0).setB(0.0).add()
+                    .add();
+            double p = 20.0 + 100.0 * random.nextDouble();
+            network.getThreeWindingsTransformer(id).getLeg1().getTerminal().setP(p).setQ(0.1 * p);
+            network.getThreeWindingsTransformer(id).getLeg2().getTerminal().setP(-0.6 * p).setQ(-0.06 * p);
+            network.getThreeWindingsTransformer(id).getLeg3().getTerminal().setP(-0.39 * p).setQ(-0.039 * p);
+        }
+    }
+
+    //two busbar sections, linked by a disconnector, a breaker and a disconnector
+    private void createBusbarSections(VoltageLevel vl) {
+        VoltageLevel.NodeBreakerView view = vl.getNodeBreakerView();
+        view.newBusbarSection().setId(vl.getId() + "_BBS1").setNode(0).add();
+        view.newBusbarSection().setId(vl.getId() + "_BBS2").setNode(1).add();
+        view.newSwitch().setId(vl.getId() + "_COUPLER_D1").setKind(SwitchKind.DISCONNECTOR).setRetained(false).setOpen(false)
+                .setNode1(0).setNode2(2).add();
+        view.newSwitch().setId(vl.getId() + "_COUPLER_B").setKind(SwitchKind.BREAKER).setRetained(false).setOpen(false)
+                .setNode1(2).setNode2(3).add();
+        view.newSwitch().setId(vl.getId() + "_COUPLER_D2").setKind(SwitchKind.DISCONNECTOR).setRetained(false).setOpen(false)
+                .setNode1(3).setNode2(1).add();
+        nextNodes.put(vl.getId(), 4);
+    }
+
+    private void createFeeder(VoltageLevel vl, int b, Random random) {
+        int node = newBay(vl);
+        if (b % 3 == 2) {
+            double p = 50.0 + 500.0 * random.nextDouble();
+            vl.newGenerator().setId(vl.getId() + "_G" + b).setNode(node).setEnergySource(EnergySource.THERMAL)
+                    .setMinP(0.0).setMaxP(1000.0).setTargetP(p).setVoltageRegulatorOn(false).setTargetQ(0.1 * p).add()
+                    .getTerminal().setP(-p).setQ(-0.1 * p);
+        } else {
+            double p = 10.0 + 100.0 * random.nextDouble();
+            double q = 0.2 * p * random.nextDouble();
+            vl.newLoad().setId(vl.getId() + "_LD" + b).setNode(node).setP0(p).setQ0(q).add()
+                    .getTerminal().setP(p).setQ(q);
+        }
+    }
+
+    //disconnector from a busbar section, alternately the first and the second one, then breaker: returns the node of the equipment
+    private int newBay(VoltageLevel vl) {
+        int node = nextNodes.get(vl.getId());
+        nextNodes.put(vl.getId(), node + 2);
+        int bay = (node - 4) / 2;
+        VoltageLevel.NodeBreakerView view = vl.getNodeBreakerView();
+        view.newSwitch().setId(vl.getId() + "_D" + bay).setKind(SwitchKind.DISCONNECTOR).setRetained(false).setOpen(false)
+                .setNode1(bay % 2).setNode2(node).add();
+        view.newSwitch().setId(vl.getId() + "_B" + bay).setKind(SwitchKind.BREAKER).setRetained(false).setOpen(false)
+                .setNode1(node).setNode2(node + 1).add();
+        return node + 1;
+    }
+
+    //the flow on side 2 is the opposite of the flow on side 1, minus losses
+    private static void setFlows(Terminal terminal1, Terminal terminal2, double p, Random random) {
+        double q = 0.1 * p * random.nextDouble();
+        terminal1.setP(p).setQ(q);
+        terminal2.setP(-0.99 * p).setQ(-0.9 * q);
+    }
+
+    /**
+     * Changes the given ratio of the breakers states, of the terminals flows and of the buses voltages.
+     */
+    public static void perturb(Network network, double changeRatio, long seed) {
+        perturb(network, changeRatio, changeRatio, changeRatio, seed);
+    }
+
+    /**
+     * Changes the given ratios of the breakers states, of the terminals flows and of the buses voltages:
+     * a ratio of 1 changes all of them, a ratio of 0 none of them.
+     */
+    public static void perturb(Network network, double switchesRatio, double flowsRatio, double voltagesRatio, long seed) {
+        Random random = new Random(seed);
+        network.getSwitchStream()
+                .filter(sw -> sw.getKind() == SwitchKind.BREAKER)
+                .filter(sw -> random.nextDouble() < switchesRatio)
+                .forEach(sw -> sw.setOpen(!sw.isOpen()));
+        network.getConnectableStream().forEach(connectable -> connectable.getTerminals().forEach(t -> {
+            if (random.nextDouble() < flowsRatio) {
+                Terminal terminal = (Terminal) t;
+                double factor = 1.0 + 0.05 + 0.45 * random.nextDouble();
+                terminal.setP(terminal.getP() * factor).setQ(terminal.getQ() * factor);
+            }
+        }));
+        for (Bus bus : network.getBusView().getBuses()) {
+            if (random.nextDouble() < voltagesRatio) {
+                bus.setV(bus.getV() * (1.01 + 0.04 * random.nextDouble()));
+            }
+        }
+    }
+}